@@ -0,0 +1,37 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the JMH benchmarks once per thread count in the {@code jmh.threads}
+ * system property, writing the results of each run as JSON to
+ * {@code target/jmh/results-<threads>-threads.json} so runs of different
+ * versions can be compared by tools. The arguments are regular JMH options.
+ */
+public final class BenchmarkRunner {
+
+	private BenchmarkRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+		Path results = Path.of("target", "jmh");
+		Files.createDirectories(results);
+		for (String threads : System.getProperty("jmh.threads", "1").split(",")) {
+			Options options = new OptionsBuilder()
+				.parent(commandLine)
+				.threads(Integer.parseInt(threads.trim()))
+				.resultFormat(ResultFormatType.JSON)
+				.result(results.resolve("results-" + threads.trim() + "-threads.json").toString())
+				.build();
+			new Runner(options).run();
+		}
+	}
+}
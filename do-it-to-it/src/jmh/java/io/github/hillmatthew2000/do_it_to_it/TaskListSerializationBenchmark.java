@@ -0,0 +1,115 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * The cost of the GET /api/todos response for {@code size} tasks: Jackson
+ * serialization of a ready list, the list copy plus serialization, and the
+ * whole request through Spring MVC, and a response cache hit. MockMvc
+ * copies the response body a byte at a time, so the cache's gain shows in
+ * {@link #cachedList} rather than in the endpoint benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TaskListSerializationBenchmark {
+
+	private static final int FILL_BATCH = 10_000;
+	// Large enough to hold the list of a million tasks
+	private static final long CACHE_BYTES = 1L << 30;
+
+	@Param({"1000", "100000", "1000000"})
+	int size;
+
+	// Configured like the ObjectMapper Spring Boot gives the controller
+	private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+	private ToDoManager manager;
+	private List<Task> tasks;
+	private TaskEventBroadcaster events;
+	private TodoMetrics metrics;
+	private TaskPartitions partitions;
+	private TaskResponseCache responses;
+	private MockMvc mvc;
+
+	@Setup(Level.Trial)
+	public void fill() {
+		SingletonToDoManager.configure(null, FsyncPolicy.BATCHED, TaskLayout.OBJECTS);
+		manager = SingletonToDoManager.getInstance();
+		manager.clearAllTasks();
+		List<String> descriptions = new ArrayList<>(FILL_BATCH);
+		for (int i = 0; i < size; i += FILL_BATCH) {
+			descriptions.clear();
+			for (int j = i; j < Math.min(size, i + FILL_BATCH); j++) {
+				descriptions.add("benchmark task number " + j);
+			}
+			manager.addTasks(descriptions);
+		}
+		tasks = manager.getAllTasks();
+		events = new TaskEventBroadcaster(mapper);
+		metrics = new TodoMetrics(new SimpleMeterRegistry());
+		partitions = new TaskPartitions(manager, events, null, FsyncPolicy.BATCHED, TaskLayout.OBJECTS, 1, metrics, mapper);
+		mvc = MockMvcBuilders.standaloneSetup(new TodoController(partitions, metrics,
+				new TaskResponseCache(0, mapper, new SimpleMeterRegistry())))
+			.setCustomArgumentResolvers(new TaskPartitionResolver(partitions))
+			.build();
+		responses = new TaskResponseCache(CACHE_BYTES, mapper, new SimpleMeterRegistry());
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		partitions.close();
+		events.close();
+		metrics.close();
+	}
+
+	@Benchmark
+	public void serializeList() throws IOException {
+		mapper.writeValue(OutputStream.nullOutputStream(), tasks);
+	}
+
+	@Benchmark
+	public void copyAndSerializeList() throws IOException {
+		mapper.writeValue(OutputStream.nullOutputStream(), manager.getAllTasks());
+	}
+
+	@Benchmark
+	public MvcResult getAllTasksEndpoint() throws Exception {
+		return mvc.perform(get("/api/todos")).andReturn();
+	}
+
+	@Benchmark
+	public void cachedList() throws IOException {
+		OutputStream.nullOutputStream().write(responses.get(manager, "list", manager.getVersion(), manager::getAllTasks));
+	}
+}
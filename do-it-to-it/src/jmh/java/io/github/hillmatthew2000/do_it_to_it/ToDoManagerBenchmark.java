@@ -0,0 +1,134 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Hot paths of an in-memory {@link ToDoManager} holding {@code size} tasks,
+ * a third of them completed.
+ *
+ * The live tasks always have the consecutive IDs from {@code oldest} up to
+ * the ID counter, so lookups and updates pick random IDs from that window.
+ * Added tasks are trimmed off after every iteration, and {@link #deleteTask}
+ * adds a task for each one it deletes, so the store stays at its size.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ToDoManagerBenchmark {
+
+	private static final int FILL_BATCH = 10_000;
+	private static final String[] STATUSES = {"Pending", "In Progress"};
+
+	@Param({"1000", "100000", "1000000", "10000000"})
+	int size;
+
+	@Param({"OBJECTS", "COMPACT", "TIERED", "VERSIONED"})
+	TaskLayout layout;
+
+	private ToDoManager manager;
+	private final AtomicInteger oldest = new AtomicInteger();
+
+	@Setup(Level.Trial)
+	public void fill() {
+		manager = new ToDoManager(layout);
+		List<String> descriptions = new ArrayList<>(FILL_BATCH);
+		for (int i = 0; i < size; i += FILL_BATCH) {
+			descriptions.clear();
+			for (int j = i; j < Math.min(size, i + FILL_BATCH); j++) {
+				descriptions.add("benchmark task number " + j);
+			}
+			int[] ids = manager.addTasks(descriptions);
+			if (i == 0) {
+				oldest.set(ids[0]);
+			}
+			for (int j = 0; j < ids.length; j += 3) {
+				manager.markTaskCompleted(ids[j]);
+			}
+		}
+	}
+
+	@TearDown(Level.Iteration)
+	public void trim() {
+		while (manager.getTaskCount() > size) {
+			manager.deleteTask(oldest.getAndIncrement());
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		manager.close();
+	}
+
+	@Benchmark
+	public int addTask() {
+		return manager.addTask("added task");
+	}
+
+	@Benchmark
+	public Task findTaskById() {
+		return manager.findTaskById(randomId());
+	}
+
+	@Benchmark
+	public boolean updateTaskStatus() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		return manager.updateTaskStatus(randomId(), STATUSES[random.nextInt(STATUSES.length)]);
+	}
+
+	/**
+	 * Deletes the oldest task and adds one in its place; subtract
+	 * {@link #addTask} for the cost of the delete alone.
+	 */
+	@Benchmark
+	public boolean deleteTask() {
+		boolean deleted = manager.deleteTask(oldest.getAndIncrement());
+		manager.addTask("replacement task");
+		return deleted;
+	}
+
+	@Benchmark
+	public List<Task> getAllTasks() {
+		return manager.getAllTasks();
+	}
+
+	@Benchmark
+	public TaskView getTaskView() {
+		return manager.getTaskView();
+	}
+
+	/**
+	 * The figures behind GET /api/todos/stats.
+	 */
+	@Benchmark
+	public void stats(Blackhole blackhole) {
+		blackhole.consume(manager.getTaskCount());
+		blackhole.consume(manager.getCompletedTaskCount());
+		blackhole.consume(manager.getTaskCountsByStatus());
+	}
+
+	private int randomId() {
+		return ThreadLocalRandom.current().nextInt(oldest.get(), manager.getNextId());
+	}
+}
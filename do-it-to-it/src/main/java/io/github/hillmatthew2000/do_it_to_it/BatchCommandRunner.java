@@ -0,0 +1,152 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Runs console commands read from a script or a pipe, one per line, without
+ * prompts or menus:
+ * <pre>
+ * add &lt;description&gt;            prints the new task's ID
+ * list                         prints every task
+ * update &lt;id&gt; &lt;description&gt;
+ * status &lt;id&gt; &lt;status&gt;
+ * complete &lt;id&gt;
+ * delete &lt;id&gt;
+ * purge                        deletes the completed tasks and prints how many
+ * </pre>
+ * Blank lines and lines starting with {@code #} are skipped. Commands that
+ * fail are reported on the error writer as {@code line <n>: <reason>} and do
+ * not stop the run.
+ *
+ * Commands run in chunks of {@value #CHUNK_SIZE} lines inside
+ * {@link ToDoManager#runBatch}, so a persistent manager waits for its log
+ * once per chunk rather than once per command. Output goes to the writers
+ * given, which should be buffered; they are flushed at the end of the run.
+ */
+class BatchCommandRunner {
+    static final int CHUNK_SIZE = 1000;
+
+    private final ToDoManager manager;
+    private final PrintWriter out;
+    private final PrintWriter err;
+    private int lineNumber;
+    private int failures;
+
+    /**
+     * @param manager The manager to run the commands against
+     * @param out Receives the output of add, list and purge
+     * @param err Receives a line for each command that failed
+     */
+    BatchCommandRunner(ToDoManager manager, PrintWriter out, PrintWriter err) {
+        this.manager = manager;
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * Runs every command read from {@code in}.
+     *
+     * @param in The commands, one per line
+     * @return The number of commands that failed
+     * @throws IOException if the commands cannot be read
+     */
+    int run(BufferedReader in) throws IOException {
+        String[] chunk = new String[CHUNK_SIZE];
+        int size;
+        do {
+            size = 0;
+            String line;
+            while (size < CHUNK_SIZE && (line = in.readLine()) != null) {
+                chunk[size++] = line;
+            }
+            int count = size;
+            manager.runBatch(() -> {
+                for (int i = 0; i < count; i++) {
+                    lineNumber++;
+                    execute(chunk[i].strip());
+                }
+            });
+        } while (size == CHUNK_SIZE);
+        out.flush();
+        err.flush();
+        return failures;
+    }
+
+    private void execute(String line) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        int space = line.indexOf(' ');
+        String command = (space < 0 ? line : line.substring(0, space)).toLowerCase(Locale.ROOT);
+        String argument = space < 0 ? "" : line.substring(space + 1).strip();
+        try {
+            switch (command) {
+                case "add" -> out.println(manager.addTask(requireText(argument, "add <description>")));
+                case "list" -> manager.forEachTask(out::println);
+                case "update" -> {
+                    String[] parts = splitIdAndText(argument, "update <id> <description>");
+                    int id = parseId(parts[0]);
+                    found(id, manager.updateTaskDescription(id, parts[1]));
+                }
+                case "status" -> {
+                    String[] parts = splitIdAndText(argument, "status <id> <status>");
+                    int id = parseId(parts[0]);
+                    found(id, manager.updateTaskStatus(id, parts[1]));
+                }
+                case "complete" -> {
+                    int id = parseId(argument);
+                    found(id, manager.markTaskCompleted(id));
+                }
+                case "delete" -> {
+                    int id = parseId(argument);
+                    found(id, manager.deleteTask(id));
+                }
+                case "purge" -> out.println(manager.purgeCompletedTasks());
+                default -> throw new IllegalArgumentException("Unknown command '" + command + "'");
+            }
+        } catch (IllegalArgumentException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private void found(int id, boolean applied) {
+        if (!applied) {
+            fail("Task " + id + " not found");
+        }
+    }
+
+    private void fail(String reason) {
+        failures++;
+        err.println("line " + lineNumber + ": " + reason);
+    }
+
+    private static String requireText(String text, String usage) {
+        if (text.isEmpty()) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return text;
+    }
+
+    private static String[] splitIdAndText(String argument, String usage) {
+        int space = argument.indexOf(' ');
+        if (space < 0) {
+            throw new IllegalArgumentException("Usage: " + usage);
+        }
+        return new String[] {argument.substring(0, space), argument.substring(space + 1).strip()};
+    }
+
+    private static int parseId(String text) {
+        try {
+            int id = Integer.parseInt(text);
+            if (id > 0) {
+                return id;
+            }
+        } catch (NumberFormatException e) {
+            // reported below
+        }
+        throw new IllegalArgumentException("Task ID must be a positive number: '" + text + "'");
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * The outcome of one item of a batch request.
+ *
+ * @param index The position of the item in the request body
+ * @param taskId The ID of the task the item created or referred to, or null if the item had none
+ * @param success true if the item was applied
+ * @param error Why the item was not applied, or null if it succeeded
+ */
+public record BatchItemResult(int index, Integer taskId, boolean success, String error) {
+
+    static BatchItemResult succeeded(int index, int taskId) {
+        return new BatchItemResult(index, taskId, true, null);
+    }
+
+    static BatchItemResult failed(int index, Integer taskId, String error) {
+        return new BatchItemResult(index, taskId, false, error);
+    }
+}
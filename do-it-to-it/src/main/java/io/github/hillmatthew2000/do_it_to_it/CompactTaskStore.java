@@ -0,0 +1,438 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * Column-oriented {@link TaskStore} for very large task counts.
+ *
+ * Task IDs are dense, so they index primitive columns directly, in pages of
+ * 65,536 IDs like {@link TaskIdSet}. Each task costs 46 bytes of columns plus
+ * the UTF-8 bytes of its description:
+ * <ul>
+ * <li>a {@code short} status code into a {@link TaskStatusCodes} dictionary
+ *     of the statuses in use, with 0 marking an absent task;</li>
+ * <li>a {@code long} reference into a byte arena holding every description,
+ *     and an {@code int} description length;</li>
+ * <li>a {@code long} task version;</li>
+ * <li>{@code long} created, updated and due times.</li>
+ * </ul>
+ * No object is kept per task; {@link Task} objects are created on every read.
+ *
+ * IDs are spread over lock stripes. Writers take their stripe's write lock,
+ * while readers use an optimistic read that only falls back to the read lock
+ * if a writer got in the way. Each stripe appends descriptions to its own
+ * arena chunk, and arena bytes are never overwritten, so a reader can copy a
+ * description after validating its reference.
+ *
+ * Bytes of replaced or removed descriptions are not reused in place. A
+ * {@link #compact} pass reclaims them a page of IDs at a time: it fixes the
+ * chunks that exist when it starts, moves the descriptions still in them to
+ * new chunks under the stripe locks, and drops the old chunks once every page
+ * has been swept. Each chunk table is copied rather than modified, so a reader
+ * still holding a reference into an old chunk also holds the table that
+ * contains it.
+ */
+final class CompactTaskStore implements TaskStore {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int STRIPES = 64;
+    private static final int CHUNK_BYTES = 64 * 1024;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Page[] pages = new Page[0];
+
+    // Arena chunks, indexed by the upper half of a description reference
+    private final Object chunkLock = new Object();
+    private volatile byte[][] chunks = new byte[16][];
+    private int chunkCount;
+    // Appends never go to chunks below this index; raised when a compaction pass starts
+    private volatile int minimumChunk;
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong garbageBytes = new AtomicLong();
+
+    // Compaction pass; guarded by compactionLock, with passBoundary -1 between passes
+    private final Object compactionLock = new Object();
+    private volatile int passBoundary = -1;
+    private int passPage;
+    private long passGarbage;
+
+    // One reference per stored task; code 0 is reserved for "no task"
+    private final TaskStatusCodes statusCodes = new TaskStatusCodes(0xFFFF);
+
+    /**
+     * Creates an empty store.
+     */
+    CompactTaskStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(i);
+        }
+    }
+
+    @Override
+    public Task get(int id) {
+        int slot = id & (PAGE_SIZE - 1);
+        StampedLock lock = stripe(id).lock;
+        long stamp = lock.tryOptimisticRead();
+        Page page = page(id, false);
+        short status = page != null ? page.statuses[slot] : 0;
+        long description = page != null ? page.descriptions[slot] : 0;
+        int length = page != null ? page.lengths[slot] : 0;
+        long version = page != null ? page.versions[slot] : 0;
+        long createdAt = page != null ? page.createdAt[slot] : 0;
+        long updatedAt = page != null ? page.updatedAt[slot] : 0;
+        long dueAt = page != null ? page.dueAt[slot] : 0;
+        byte[][] arena = chunks;
+        // Resolved before validating, since a freed code may be handed to another status
+        String statusName = statusCodes.name(status);
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                page = page(id, false);
+                status = page != null ? page.statuses[slot] : 0;
+                description = page != null ? page.descriptions[slot] : 0;
+                length = page != null ? page.lengths[slot] : 0;
+                version = page != null ? page.versions[slot] : 0;
+                createdAt = page != null ? page.createdAt[slot] : 0;
+                updatedAt = page != null ? page.updatedAt[slot] : 0;
+                dueAt = page != null ? page.dueAt[slot] : 0;
+                arena = chunks;
+                statusName = statusCodes.name(status);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+        if (status == 0) {
+            return null;
+        }
+        return new Task(id, decode(arena, description, length), statusName, version,
+            createdAt, updatedAt, dueAt);
+    }
+
+    @Override
+    public Task put(Task task) {
+        int id = task.getId();
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Page page = page(id, true);
+            int slot = id & (PAGE_SIZE - 1);
+            short status = statusCodes.acquire(task.getStatus());
+            Task previous = read(page, slot, id);
+            if (previous != null) {
+                statusCodes.release(page.statuses[slot]);
+                discard(page.descriptions[slot], page.lengths[slot]);
+            }
+            byte[] bytes = task.getDescription().getBytes(StandardCharsets.UTF_8);
+            page.descriptions[slot] = stripe.append(bytes);
+            page.lengths[slot] = bytes.length;
+            page.statuses[slot] = status;
+            page.versions[slot] = task.getVersion();
+            setTimes(page, slot, task);
+            liveBytes.addAndGet(bytes.length);
+            if (previous == null) {
+                size.incrementAndGet();
+            }
+            return previous;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Task remove(int id) {
+        return removeIf(id, task -> true);
+    }
+
+    @Override
+    public Task removeIf(int id, Predicate<? super Task> condition) {
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Page page = page(id, false);
+            int slot = id & (PAGE_SIZE - 1);
+            Task removed = read(page, slot, id);
+            if (removed == null || !condition.test(removed)) {
+                return null;
+            }
+            discard(page.descriptions[slot], page.lengths[slot]);
+            statusCodes.release(page.statuses[slot]);
+            page.statuses[slot] = 0;
+            page.descriptions[slot] = 0;
+            page.lengths[slot] = 0;
+            page.versions[slot] = 0;
+            page.createdAt[slot] = 0;
+            page.updatedAt[slot] = 0;
+            page.dueAt[slot] = 0;
+            size.decrementAndGet();
+            return removed;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public Task computeIfPresent(int id, UnaryOperator<Task> update) {
+        Stripe stripe = stripe(id);
+        long stamp = stripe.lock.writeLock();
+        try {
+            Page page = page(id, false);
+            int slot = id & (PAGE_SIZE - 1);
+            Task current = read(page, slot, id);
+            if (current == null) {
+                return null;
+            }
+            String oldDescription = current.getDescription();
+            Task updated = update.apply(current);
+            if (!updated.getStatus().equals(current.getStatus())) {
+                short status = statusCodes.acquire(updated.getStatus());
+                statusCodes.release(page.statuses[slot]);
+                page.statuses[slot] = status;
+            }
+            if (!updated.getDescription().equals(oldDescription)) {
+                discard(page.descriptions[slot], page.lengths[slot]);
+                byte[] bytes = updated.getDescription().getBytes(StandardCharsets.UTF_8);
+                page.descriptions[slot] = stripe.append(bytes);
+                page.lengths[slot] = bytes.length;
+                liveBytes.addAndGet(bytes.length);
+            }
+            page.versions[slot] = updated.getVersion();
+            setTimes(page, slot, updated);
+            return updated;
+        } finally {
+            stripe.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        synchronized (compactionLock) {
+            long[] stamps = new long[STRIPES];
+            for (int i = 0; i < STRIPES; i++) {
+                stamps[i] = stripes[i].lock.writeLock();
+            }
+            try {
+                pages = new Page[0];
+                statusCodes.clear();
+                synchronized (chunkLock) {
+                    // Fresh chunks, so readers that captured the old arena keep valid bytes
+                    chunks = new byte[16][];
+                    chunkCount = 0;
+                }
+                for (Stripe stripe : stripes) {
+                    stripe.chunk = null;
+                }
+                minimumChunk = 0;
+                passBoundary = -1;
+                liveBytes.set(0);
+                garbageBytes.set(0);
+                size.set(0);
+            } finally {
+                for (int i = STRIPES - 1; i >= 0; i--) {
+                    stripes[i].lock.unlockWrite(stamps[i]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public long garbageBytes() {
+        return garbageBytes.get();
+    }
+
+    @Override
+    public long liveBytes() {
+        return liveBytes.get();
+    }
+
+    @Override
+    public boolean compact() {
+        synchronized (compactionLock) {
+            if (passBoundary < 0) {
+                synchronized (chunkLock) {
+                    passBoundary = chunkCount;
+                }
+                // From here on every append, including the moves below, lands at or above the boundary
+                minimumChunk = passBoundary;
+                passGarbage = garbageBytes.get();
+                passPage = 0;
+            }
+            Page[] current = pages;
+            if (passPage < current.length) {
+                if (current[passPage] != null) {
+                    sweep(current[passPage]);
+                }
+                passPage++;
+                return true;
+            }
+            synchronized (chunkLock) {
+                byte[][] table = chunks.clone();
+                Arrays.fill(table, 0, passBoundary, null);
+                chunks = table;
+            }
+            garbageBytes.addAndGet(-passGarbage);
+            passBoundary = -1;
+            return false;
+        }
+    }
+
+    /**
+     * Moves the descriptions of a page that are still in chunks below the
+     * pass boundary; the caller holds the compaction lock.
+     */
+    private void sweep(Page page) {
+        for (Stripe stripe : stripes) {
+            long stamp = stripe.lock.writeLock();
+            try {
+                // Pages start at a multiple of STRIPES, so a slot's stripe is its low bits
+                for (int slot = stripe.index; slot < PAGE_SIZE; slot += STRIPES) {
+                    long description = page.descriptions[slot];
+                    if (page.statuses[slot] != 0 && (int) (description >>> 32) < passBoundary) {
+                        byte[] bytes = Arrays.copyOfRange(chunks[(int) (description >>> 32)],
+                            (int) description, (int) description + page.lengths[slot]);
+                        page.descriptions[slot] = stripe.append(bytes);
+                    }
+                }
+            } finally {
+                stripe.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Accounts for a description that is no longer referenced. Bytes in chunks
+     * that the running compaction pass will drop are not counted.
+     */
+    private void discard(long reference, int length) {
+        liveBytes.addAndGet(-length);
+        int boundary = passBoundary;
+        if (boundary < 0 || (int) (reference >>> 32) >= boundary) {
+            garbageBytes.addAndGet(length);
+        }
+    }
+
+    /**
+     * Decodes the task in a slot, or returns null if it is empty; the caller
+     * holds the stripe's write lock.
+     */
+    private Task read(Page page, int slot, int id) {
+        if (page == null) {
+            return null;
+        }
+        short status = page.statuses[slot];
+        if (status == 0) {
+            return null;
+        }
+        return new Task(id, decode(chunks, page.descriptions[slot], page.lengths[slot]),
+            statusCodes.name(status), page.versions[slot],
+            page.createdAt[slot], page.updatedAt[slot], page.dueAt[slot]);
+    }
+
+    private static void setTimes(Page page, int slot, Task task) {
+        page.createdAt[slot] = task.getCreatedAt();
+        page.updatedAt[slot] = task.getUpdatedAt();
+        page.dueAt[slot] = task.getDueAt();
+    }
+
+    private static String decode(byte[][] arena, long reference, int length) {
+        byte[] chunk = arena[(int) (reference >>> 32)];
+        return new String(chunk, (int) reference, length, StandardCharsets.UTF_8);
+    }
+
+    private int registerChunk(byte[] chunk) {
+        synchronized (chunkLock) {
+            byte[][] table = chunks;
+            if (chunkCount == table.length) {
+                table = Arrays.copyOf(table, table.length * 2);
+            }
+            table[chunkCount] = chunk;
+            chunks = table;
+            return chunkCount++;
+        }
+    }
+
+    private Stripe stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+
+    private Page page(int id, boolean create) {
+        int pageIndex = id >>> PAGE_BITS;
+        Page[] snapshot = pages;
+        if (pageIndex < snapshot.length && snapshot[pageIndex] != null) {
+            return snapshot[pageIndex];
+        }
+        return create ? createPage(pageIndex) : null;
+    }
+
+    private synchronized Page createPage(int pageIndex) {
+        Page[] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        // Copy-on-write so readers always see a fully initialized directory
+        Page[] grown = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        grown[pageIndex] = new Page();
+        pages = grown;
+        return grown[pageIndex];
+    }
+
+    /**
+     * The columns for 65,536 consecutive IDs.
+     */
+    private static final class Page {
+        final short[] statuses = new short[PAGE_SIZE];
+        final long[] descriptions = new long[PAGE_SIZE];
+        final int[] lengths = new int[PAGE_SIZE];
+        final long[] versions = new long[PAGE_SIZE];
+        final long[] createdAt = new long[PAGE_SIZE];
+        final long[] updatedAt = new long[PAGE_SIZE];
+        final long[] dueAt = new long[PAGE_SIZE];
+    }
+
+    /**
+     * A lock stripe and the arena chunk its writers append to.
+     */
+    private final class Stripe {
+        final StampedLock lock = new StampedLock();
+        final int index;
+        byte[] chunk;
+        int chunkIndex;
+        int position;
+
+        Stripe(int index) {
+            this.index = index;
+        }
+
+        /**
+         * Copies description bytes into the arena; the caller holds the write lock.
+         *
+         * @return The reference to the copied bytes
+         */
+        long append(byte[] bytes) {
+            if (bytes.length > CHUNK_BYTES) {
+                // Large descriptions get a chunk of their own
+                return (long) registerChunk(bytes) << 32;
+            }
+            if (chunk == null || position + bytes.length > CHUNK_BYTES || chunkIndex < minimumChunk) {
+                chunk = new byte[CHUNK_BYTES];
+                chunkIndex = registerChunk(chunk);
+                position = 0;
+            }
+            System.arraycopy(bytes, 0, chunk, position, bytes.length);
+            long reference = (long) chunkIndex << 32 | position;
+            position += bytes.length;
+            return reference;
+        }
+    }
+}
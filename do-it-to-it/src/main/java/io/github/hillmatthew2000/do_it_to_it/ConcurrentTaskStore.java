@@ -0,0 +1,66 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link TaskStore} holding {@link Task} objects in a {@link ConcurrentHashMap}.
+ * Updates run inside {@code computeIfPresent}, which only locks the hash bin
+ * holding the task.
+ */
+final class ConcurrentTaskStore implements TaskStore {
+    private final ConcurrentHashMap<Integer, Task> tasks;
+
+    /**
+     * Creates an empty store sized for the given number of tasks.
+     *
+     * @param initialCapacity The expected number of tasks
+     */
+    ConcurrentTaskStore(int initialCapacity) {
+        this.tasks = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    @Override
+    public Task get(int id) {
+        return tasks.get(id);
+    }
+
+    @Override
+    public Task put(Task task) {
+        return tasks.put(task.getId(), task);
+    }
+
+    @Override
+    public Task remove(int id) {
+        return tasks.remove(id);
+    }
+
+    @Override
+    public Task removeIf(int id, Predicate<? super Task> condition) {
+        Task[] removed = new Task[1];
+        tasks.computeIfPresent(id, (taskId, task) -> {
+            if (!condition.test(task)) {
+                return task;
+            }
+            removed[0] = task;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public Task computeIfPresent(int id, UnaryOperator<Task> update) {
+        return tasks.computeIfPresent(id, (taskId, task) -> update.apply(task));
+    }
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void clear() {
+        tasks.clear();
+    }
+}
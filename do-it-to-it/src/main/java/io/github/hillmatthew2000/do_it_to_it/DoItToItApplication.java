@@ -1,18 +1,51 @@
 package io.github.hillmatthew2000.do_it_to_it;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.InputMismatchException;
 import java.util.List;
 import java.util.Scanner;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
 
 /**
  * Main application class for the Java To-Do console application.
  * Provides a command-line interface for managing tasks.
+ * 
+ * Tasks are persisted in the directory given by {@code --todo.storage.directory=<dir>}
+ * (default {@value #DEFAULT_STORAGE_DIRECTORY}); pass an empty value to keep them in memory.
+ * {@code --todo.storage.fsync=<policy>} selects the {@link FsyncPolicy} and
+ * {@code --todo.storage.layout=<layout>} the in-memory {@link TaskLayout}.
+ * 
+ * With {@code --spring}, adding {@code --spring.threads.virtual.enabled=true}
+ * serves every request on its own virtual thread, so requests blocked on the
+ * write-ahead log no longer hold one of Tomcat's platform threads.
+ * 
+ * With {@code --batch}, console commands are read from standard input or
+ * {@code --batch.file=<path>} and run without prompts; see {@link BatchCommandRunner}.
+ * 
+ * With {@code --load}, a {@link LoadGenerator} sends a mixed workload to the
+ * REST API and prints the latency percentiles; see {@link #runLoadTest}.
  */
 @SpringBootApplication
 public class DoItToItApplication {
+    private static final String DEFAULT_STORAGE_DIRECTORY = "data";
+    private static final int BATCH_BUFFER_SIZE = 64 * 1024;
+    
     private static ToDoManager todoManager;
     private static Scanner scanner;
     
@@ -20,16 +53,27 @@ public class DoItToItApplication {
         // Check if running in Spring Boot context or console mode
         if (args.length > 0 && args[0].equals("--spring")) {
             SpringApplication.run(DoItToItApplication.class, args);
+        } else if (args.length > 0 && args[0].equals("--load")) {
+            runLoadTest(args);
+        } else if (args.length > 0 && args[0].equals("--batch")) {
+            runBatchCommands(args);
         } else {
-            runConsoleApplication();
+            runConsoleApplication(args);
         }
     }
     
     /**
      * Runs the console-based to-do application.
+     * 
+     * @param args The command-line arguments
      */
-    private static void runConsoleApplication() {
-        todoManager = new ToDoManager();
+    private static void runConsoleApplication(String[] args) {
+        try {
+            todoManager = openManager(args);
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Could not open task storage: " + e.getMessage());
+            return;
+        }
         scanner = new Scanner(System.in);
         
         System.out.println("Welcome to the Java To-Do App!");
@@ -48,9 +92,158 @@ public class DoItToItApplication {
         }
         
         scanner.close();
+        todoManager.close();
         System.out.println("Exiting the application. Goodbye!");
     }
     
+    /**
+     * Runs console commands from {@code --batch.file=<path>}, or from standard
+     * input if no file is given, without prompts or menus. Output is buffered
+     * and written when the run ends. Exits with status 1 if any command failed.
+     * 
+     * @param args The command-line arguments
+     */
+    private static void runBatchCommands(String[] args) {
+        try {
+            todoManager = openManager(args);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Could not open task storage: " + e.getMessage());
+            System.exit(2);
+            return;
+        }
+        String file = getOption(args, "batch.file", "");
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out), BATCH_BUFFER_SIZE));
+        PrintWriter err = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.err), BATCH_BUFFER_SIZE));
+        int failures;
+        try (BufferedReader in = file.isBlank()
+                ? new BufferedReader(new InputStreamReader(System.in), BATCH_BUFFER_SIZE)
+                : Files.newBufferedReader(Path.of(file))) {
+            failures = new BatchCommandRunner(todoManager, out, err).run(in);
+        } catch (IOException e) {
+            err.println("Could not read commands: " + e.getMessage());
+            err.flush();
+            failures = 1;
+        } finally {
+            out.flush();
+            todoManager.close();
+        }
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Sends a {@link LoadProfile} to a web instance and prints the latencies.
+     * {@code --load.rate=<requests/s>}, {@code --load.warmup=<seconds>},
+     * {@code --load.duration=<seconds>} and {@code --load.mix=<operation:weight,...>}
+     * shape the load. Without {@code --load.target=<url>}, an in-process web
+     * instance is started on a free port, in memory unless a storage
+     * directory is given. With {@code --load.p50=<ms>} or {@code --load.p99=<ms>},
+     * exits with status 1 if the latency percentile exceeds the limit.
+     * 
+     * @param args The command-line arguments
+     */
+    private static void runLoadTest(String[] args) {
+        LoadProfile profile;
+        Duration p50Limit;
+        Duration p99Limit;
+        try {
+            String mix = getOption(args, "load.mix", "");
+            profile = new LoadProfile(
+                Double.parseDouble(getOption(args, "load.rate", "100")),
+                Duration.ofSeconds(Long.parseLong(getOption(args, "load.warmup", "5"))),
+                Duration.ofSeconds(Long.parseLong(getOption(args, "load.duration", "30"))),
+                mix.isBlank() ? LoadProfile.DEFAULT_MIX : LoadProfile.parseMix(mix));
+            p50Limit = Duration.ofMillis(Long.parseLong(getOption(args, "load.p50", String.valueOf(Long.MAX_VALUE))));
+            p99Limit = Duration.ofMillis(Long.parseLong(getOption(args, "load.p99", String.valueOf(Long.MAX_VALUE))));
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid load test options: " + e.getMessage());
+            return;
+        }
+        
+        String target = getOption(args, "load.target", "");
+        ConfigurableApplicationContext context = null;
+        List<String> violations;
+        try {
+            if (target.isBlank()) {
+                context = SpringApplication.run(DoItToItApplication.class, inProcessArguments(args));
+                target = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+            }
+            System.out.println("Sending load to " + target + " ...");
+            LoadReport report = new LoadGenerator(URI.create(target), profile).run();
+            System.out.print(report.summary());
+            violations = report.latencyViolations(p50Limit, p99Limit);
+            violations.forEach(System.out::println);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } finally {
+            if (context != null) {
+                SpringApplication.exit(context);
+            }
+        }
+        if (!violations.isEmpty()) {
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Adds the options for an in-process load test instance, unless given:
+     * free ports for the API and metrics, and in-memory storage.
+     * 
+     * @param args The command-line arguments
+     * @return The arguments for the in-process instance
+     */
+    private static String[] inProcessArguments(String[] args) {
+        List<String> arguments = new ArrayList<>(List.of(args));
+        for (String port : List.of("server.port", "management.server.port")) {
+            if (getOption(args, port, null) == null) {
+                arguments.add("--" + port + "=0");
+            }
+        }
+        if (getOption(args, "todo.storage.directory", null) == null) {
+            arguments.add("--todo.storage.directory=");
+        }
+        return arguments.toArray(new String[0]);
+    }
+    
+    /**
+     * Creates the task manager, persistent unless the storage directory is empty.
+     * 
+     * @param args The command-line arguments
+     * @return The task manager
+     * @throws IOException if the storage directory cannot be opened
+     */
+    private static ToDoManager openManager(String[] args) throws IOException {
+        String directory = getOption(args, "todo.storage.directory", DEFAULT_STORAGE_DIRECTORY);
+        TaskLayout layout = TaskLayout.valueOf(
+            getOption(args, "todo.storage.layout", TaskLayout.OBJECTS.name()).trim().toUpperCase());
+        if (directory.isBlank()) {
+            return new ToDoManager(layout);
+        }
+        FsyncPolicy fsyncPolicy = FsyncPolicy.valueOf(
+            getOption(args, "todo.storage.fsync", FsyncPolicy.BATCHED.name()).trim().toUpperCase());
+        return ToDoManager.open(Path.of(directory), fsyncPolicy, ToDoManager.DEFAULT_SNAPSHOT_THRESHOLD, layout);
+    }
+    
+    /**
+     * Reads a {@code --name=value} command-line option.
+     * 
+     * @param args The command-line arguments
+     * @param name The option name
+     * @param defaultValue The value to use when the option is absent
+     * @return The option value
+     */
+    private static String getOption(String[] args, String name, String defaultValue) {
+        String prefix = "--" + name + "=";
+        for (String arg : args) {
+            if (arg.startsWith(prefix)) {
+                return arg.substring(prefix.length());
+            }
+        }
+        return defaultValue;
+    }
+    
     /**
      * Displays the main menu options to the user.
      */
@@ -125,9 +318,14 @@ public class DoItToItApplication {
             return;
         }
         
+        System.out.print("Enter due date (e.g. 2025-12-31T17:00:00Z), or leave empty for none: ");
+        String due = scanner.nextLine().trim();
+        
         try {
-            int taskId = todoManager.addTask(description);
+            int taskId = todoManager.addTask(description, due.isEmpty() ? null : Instant.parse(due));
             System.out.println("Task added with ID " + taskId + ".");
+        } catch (DateTimeParseException e) {
+            System.out.println("Error: Invalid due date: " + due);
         } catch (IllegalArgumentException e) {
             System.out.println("Error: " + e.getMessage());
         }
@@ -137,6 +335,8 @@ public class DoItToItApplication {
      * Handles listing all tasks.
      */
     private static void listTasks() {
+        // Nothing ticks in the console, so due dates are checked on every listing
+        todoManager.expireOverdueTasks();
         List<Task> tasks = todoManager.getAllTasks();
         
         if (tasks.isEmpty()) {
@@ -0,0 +1,26 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * Controls when the write-ahead log forces appended records to disk.
+ */
+public enum FsyncPolicy {
+    /**
+     * Every record is written and fsynced on its own before the mutation returns.
+     * Strongest durability, lowest throughput.
+     */
+    EVERY_WRITE,
+
+    /**
+     * Group commit: records appended while a flush is in progress are written
+     * together and covered by a single fsync. A mutation still returns only
+     * once its record is on disk.
+     */
+    BATCHED,
+
+    /**
+     * Records are written to the file but never explicitly fsynced; the
+     * operating system decides when they reach the disk. Survives a process
+     * crash but not a power loss.
+     */
+    OS_MANAGED
+}
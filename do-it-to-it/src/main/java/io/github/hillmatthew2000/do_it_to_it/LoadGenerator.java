@@ -0,0 +1,225 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import io.github.hillmatthew2000.do_it_to_it.LoadProfile.Operation;
+
+/**
+ * Sends a {@link LoadProfile} to the REST API of a running instance and
+ * records the latency of every request in an HdrHistogram.
+ *
+ * The load is open-loop: request {@code n} is due {@code n / rate} seconds
+ * after the start and is sent then, however many earlier requests are still
+ * waiting for a response. Latency is measured from when a request was due,
+ * not from when it was sent, so a server that stalls is charged for the
+ * requests queued behind the stall as well and the percentiles do not suffer
+ * from coordinated omission.
+ *
+ * Reads, updates, completions and deletes pick a task created earlier in the
+ * run; until one exists they are sent as creates instead.
+ */
+public class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final Pattern TASK_ID = Pattern.compile("\"taskId\"\\s*:\\s*(\\d+)");
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    private final URI todos;
+    private final LoadProfile profile;
+    private final HttpClient client;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final TaskIds taskIds = new TaskIds();
+
+    /**
+     * Creates a load generator for the instance at {@code baseUri}.
+     *
+     * @param baseUri The root of the instance, e.g. {@code http://localhost:8080}
+     * @param profile The load to send
+     */
+    public LoadGenerator(URI baseUri, LoadProfile profile) {
+        this.todos = baseUri.resolve("/api/todos");
+        this.profile = profile;
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+        Map<Operation, Integer> mix = new EnumMap<>(profile.mix());
+        mix.values().removeIf(weight -> weight == 0);
+        operations = mix.keySet().toArray(new Operation[0]);
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    /**
+     * Sends the load, waits for every response, and reports the latencies of
+     * the requests due after the warmup.
+     *
+     * @return The latencies and outcomes of the measured requests
+     * @throws InterruptedException if interrupted while sending or waiting
+     */
+    public LoadReport run() throws InterruptedException {
+        Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(SIGNIFICANT_DIGITS));
+        }
+        LongAdder failures = new LongAdder();
+        LongAdder notFound = new LongAdder();
+        Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        SplittableRandom random = new SplittableRandom();
+
+        double nanosPerRequest = 1_000_000_000 / profile.requestsPerSecond();
+        long start = System.nanoTime();
+        long measureFrom = start + profile.warmup().toNanos();
+        long end = measureFrom + profile.duration().toNanos();
+        for (long n = 0; ; n++) {
+            long due = start + (long) (n * nanosPerRequest);
+            if (due - end >= 0) {
+                break;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            boolean measured = due - measureFrom >= 0;
+            Operation operation = pickOperation(random);
+            int taskId = 0;
+            if (operation != Operation.CREATE) {
+                taskId = operation == Operation.DELETE ? taskIds.take(random) : taskIds.pick(random);
+                if (taskId == 0) {
+                    operation = Operation.CREATE;
+                }
+            }
+            Operation sent = operation;
+            CompletableFuture<?> response = client.sendAsync(request(operation, taskId, n), HttpResponse.BodyHandlers.ofString())
+                .handle((result, error) -> {
+                    long latency = System.nanoTime() - due;
+                    if (error == null && sent == Operation.CREATE && result.statusCode() == 200) {
+                        Matcher matcher = TASK_ID.matcher(result.body());
+                        if (matcher.find()) {
+                            taskIds.add(Integer.parseInt(matcher.group(1)));
+                        }
+                    }
+                    if (measured) {
+                        recorders.get(sent).recordValue(latency);
+                        if (error == null && result.statusCode() == 404) {
+                            notFound.increment();
+                        } else if (error != null || result.statusCode() / 100 != 2) {
+                            failures.increment();
+                        }
+                    }
+                    return null;
+                });
+            pending.add(response);
+            response.whenComplete((result, error) -> pending.remove(response));
+        }
+
+        CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0])).join();
+        Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+        recorders.forEach((operation, recorder) -> latencies.put(operation, recorder.getIntervalHistogram()));
+        return new LoadReport(profile, latencies, failures.sum(), notFound.sum());
+    }
+
+    /**
+     * Picks an operation at random in proportion to the profile's weights.
+     *
+     * @param random The random source
+     * @return The operation
+     */
+    private Operation pickOperation(SplittableRandom random) {
+        int ticket = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int i = 0;
+        while (ticket >= cumulativeWeights[i]) {
+            i++;
+        }
+        return operations[i];
+    }
+
+    /**
+     * Builds the request for one operation.
+     *
+     * @param operation The operation
+     * @param taskId The task to operate on; ignored for creates
+     * @param n The request's sequence number, used in descriptions
+     * @return The request
+     */
+    private HttpRequest request(Operation operation, int taskId, long n) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder().timeout(REQUEST_TIMEOUT);
+        URI task = URI.create(todos + "/" + taskId);
+        return switch (operation) {
+            case CREATE -> builder.uri(todos)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"description\": \"load task " + n + "\"}"))
+                .build();
+            case READ -> builder.uri(task).GET().build();
+            case UPDATE -> builder.uri(task)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString("{\"description\": \"load task " + n + " updated\"}"))
+                .build();
+            case COMPLETE -> builder.uri(URI.create(task + "/complete"))
+                .method("PATCH", HttpRequest.BodyPublishers.noBody())
+                .build();
+            case DELETE -> builder.uri(task).DELETE().build();
+        };
+    }
+
+    /**
+     * The IDs of the tasks created during a run and not yet deleted by it.
+     */
+    private static final class TaskIds {
+        private int[] ids = new int[1024];
+        private int size;
+
+        synchronized void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+
+        /**
+         * Returns a random ID, or 0 if there are none.
+         */
+        synchronized int pick(SplittableRandom random) {
+            return size == 0 ? 0 : ids[random.nextInt(size)];
+        }
+
+        /**
+         * Removes and returns a random ID, or 0 if there are none, so no two
+         * deletes are sent for the same task.
+         */
+        synchronized int take(SplittableRandom random) {
+            if (size == 0) {
+                return 0;
+            }
+            int i = random.nextInt(size);
+            int id = ids[i];
+            ids[i] = ids[--size];
+            return id;
+        }
+    }
+}
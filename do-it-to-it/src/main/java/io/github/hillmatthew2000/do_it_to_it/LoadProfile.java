@@ -0,0 +1,88 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The workload a {@link LoadGenerator} sends: requests started at a fixed
+ * rate, each one an operation picked at random in proportion to its weight.
+ *
+ * @param requestsPerSecond How many requests to start per second
+ * @param warmup How long to send requests before recording their latencies
+ * @param duration How long to record latencies for after the warmup
+ * @param mix The weight of each operation; operations that are absent or weighted 0 are never sent
+ */
+public record LoadProfile(double requestsPerSecond, Duration warmup, Duration duration, Map<Operation, Integer> mix) {
+
+    /** Mostly reads, with a steady flow of tasks created, changed and deleted. */
+    public static final Map<Operation, Integer> DEFAULT_MIX = Map.of(
+        Operation.CREATE, 2,
+        Operation.READ, 5,
+        Operation.UPDATE, 1,
+        Operation.COMPLETE, 1,
+        Operation.DELETE, 1);
+
+    /**
+     * The requests a load generator sends to {@code /api/todos}.
+     */
+    public enum Operation {
+        /** POST /api/todos */
+        CREATE,
+        /** GET /api/todos/{id} */
+        READ,
+        /** PUT /api/todos/{id} */
+        UPDATE,
+        /** PATCH /api/todos/{id}/complete */
+        COMPLETE,
+        /** DELETE /api/todos/{id} */
+        DELETE
+    }
+
+    public LoadProfile {
+        if (!(requestsPerSecond > 0) || Double.isInfinite(requestsPerSecond)) {
+            throw new IllegalArgumentException("Request rate must be positive: " + requestsPerSecond);
+        }
+        if (warmup.isNegative()) {
+            throw new IllegalArgumentException("Warmup must not be negative: " + warmup);
+        }
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("Duration must be positive: " + duration);
+        }
+        int total = 0;
+        for (int weight : mix.values()) {
+            if (weight < 0) {
+                throw new IllegalArgumentException("Operation weights must not be negative: " + mix);
+            }
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("At least one operation needs a positive weight");
+        }
+        mix = Map.copyOf(mix);
+    }
+
+    /**
+     * Parses an operation mix such as {@code create:2,read:5,delete:1}.
+     *
+     * @param spec Comma-separated operation names and weights
+     * @return The weight of each operation named
+     * @throws IllegalArgumentException if an entry is not an operation and a weight
+     */
+    public static Map<Operation, Integer> parseMix(String spec) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Expected operation:weight but got '" + entry.trim() + "'");
+            }
+            try {
+                mix.put(Operation.valueOf(parts[0].trim().toUpperCase(Locale.ROOT)), Integer.parseInt(parts[1].trim()));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Expected operation:weight but got '" + entry.trim() + "'", e);
+            }
+        }
+        return mix;
+    }
+}
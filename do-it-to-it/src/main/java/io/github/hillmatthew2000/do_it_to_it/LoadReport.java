@@ -0,0 +1,107 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.HdrHistogram.Histogram;
+
+import io.github.hillmatthew2000.do_it_to_it.LoadProfile.Operation;
+
+/**
+ * The outcome of a {@link LoadGenerator} run: the latency of every request
+ * due after the warmup, in nanoseconds from when it was due until its response
+ * arrived.
+ *
+ * @param profile The load that was sent
+ * @param latencies The latencies of each operation's requests
+ * @param failures Requests that failed or were answered with a status other than 2xx or 404
+ * @param notFound Requests answered with 404, e.g. a read of a task deleted while the read was in flight
+ */
+public record LoadReport(LoadProfile profile, Map<Operation, Histogram> latencies, long failures, long notFound) {
+
+    /**
+     * Returns the latencies of all measured requests together.
+     *
+     * @return A histogram of every latency, in nanoseconds
+     */
+    public Histogram allLatencies() {
+        Histogram all = new Histogram(3);
+        latencies.values().forEach(all::add);
+        return all;
+    }
+
+    /**
+     * Returns the number of measured requests.
+     *
+     * @return The number of requests due after the warmup
+     */
+    public long requests() {
+        return latencies.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    /**
+     * Returns a latency percentile over all measured requests.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The latency at that percentile, or zero if nothing was measured
+     */
+    public Duration percentile(double percentile) {
+        return Duration.ofNanos(allLatencies().getValueAtPercentile(percentile));
+    }
+
+    /**
+     * Compares the median and 99th percentile latencies with their limits.
+     *
+     * @param p50Limit The highest acceptable median latency
+     * @param p99Limit The highest acceptable 99th percentile latency
+     * @return A message for each limit exceeded; empty if the run met both
+     */
+    public List<String> latencyViolations(Duration p50Limit, Duration p99Limit) {
+        Histogram all = allLatencies();
+        List<String> violations = new ArrayList<>();
+        checkLimit(violations, "p50", all.getValueAtPercentile(50), p50Limit);
+        checkLimit(violations, "p99", all.getValueAtPercentile(99), p99Limit);
+        return violations;
+    }
+
+    /**
+     * Formats a table of request counts and latency percentiles per operation.
+     *
+     * @return The summary, one line per operation that was sent plus a total
+     */
+    public String summary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+            "%.0f requests/s for %ds after %ds warmup: %d requests, %d failed, %d not found%n",
+            profile.requestsPerSecond(), profile.duration().toSeconds(), profile.warmup().toSeconds(),
+            requests(), failures, notFound));
+        summary.append(String.format(Locale.ROOT, "%-9s %8s %9s %9s %9s %9s %9s%n",
+            "operation", "count", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<Operation, Histogram> entry : latencies.entrySet()) {
+            if (entry.getValue().getTotalCount() > 0) {
+                appendRow(summary, entry.getKey().name().toLowerCase(Locale.ROOT), entry.getValue());
+            }
+        }
+        appendRow(summary, "all", allLatencies());
+        return summary.toString();
+    }
+
+    private static void checkLimit(List<String> violations, String name, long nanos, Duration limit) {
+        if (Duration.ofNanos(nanos).compareTo(limit) > 0) {
+            violations.add(String.format(Locale.ROOT, "%s latency %.1f ms exceeds %d ms",
+                name, nanos / 1e6, limit.toMillis()));
+        }
+    }
+
+    private static void appendRow(StringBuilder summary, String name, Histogram histogram) {
+        summary.append(String.format(Locale.ROOT, "%-9s %8d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+            name, histogram.getTotalCount(),
+            histogram.getValueAtPercentile(50) / 1e6,
+            histogram.getValueAtPercentile(90) / 1e6,
+            histogram.getValueAtPercentile(99) / 1e6,
+            histogram.getValueAtPercentile(99.9) / 1e6,
+            histogram.getMaxValue() / 1e6));
+    }
+}
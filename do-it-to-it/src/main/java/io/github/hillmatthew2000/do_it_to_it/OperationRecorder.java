@@ -0,0 +1,24 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * Receives the duration of every {@link TaskOperation} a {@link ToDoManager}
+ * performs, including operations that fail.
+ *
+ * Called on the thread performing the operation after it has finished, so
+ * implementations must be thread-safe and should not allocate.
+ */
+@FunctionalInterface
+public interface OperationRecorder {
+
+    /** Recorder that ignores every operation; the manager does not read the clock for it. */
+    OperationRecorder NONE = (operation, nanos) -> {
+    };
+
+    /**
+     * Records one operation.
+     *
+     * @param operation The operation performed
+     * @param nanos How long it took, in nanoseconds
+     */
+    void record(TaskOperation operation, long nanos);
+}
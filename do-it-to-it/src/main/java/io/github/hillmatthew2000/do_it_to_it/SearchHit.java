@@ -0,0 +1,10 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * A task matching a full-text search.
+ * 
+ * @param task The matching task
+ * @param score How well the task matches; higher is better
+ */
+public record SearchHit(Task task, double score) {
+}
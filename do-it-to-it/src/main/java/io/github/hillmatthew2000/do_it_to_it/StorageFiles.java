@@ -0,0 +1,30 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * File system helpers shared by the write-ahead log and snapshots.
+ */
+final class StorageFiles {
+
+    private StorageFiles() {
+    }
+
+    /**
+     * Fsyncs a directory so that files created or renamed in it survive a crash.
+     * Some platforms (notably Windows) cannot open a directory for syncing;
+     * there the call is a no-op.
+     *
+     * @param directory The directory to sync
+     */
+    static void forceDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not supported on this platform; file contents are still synced
+        }
+    }
+}
@@ -1,41 +1,76 @@
 package io.github.hillmatthew2000.do_it_to_it;
 
+import java.time.Instant;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 /**
  * Represents a task in the To-Do application.
- * Each task has a unique ID, description, and status.
+ * Each task has an ID that is unique within its {@link ToDoManager}, a
+ * description and a status, plus a version that
+ * starts at 1 and increases with every change to the task.
+ * Tasks created through {@link ToDoManager} also record when they were
+ * created and last updated, and can have a due date; all three are epoch
+ * milliseconds, and 0 when not known or not set.
+ * Tasks are immutable: every update through {@link ToDoManager} stores a
+ * new task with the next version, so a task read from the manager is a
+ * consistent view of one version, and changes cannot bypass the manager's
+ * version checks, log, indexes or events.
  */
 public class Task {
-    private int id;
-    private String description;
-    private String status;
+    private final int id;
+    private final String description;
+    private final String status;
+    private final long version;
+    private final long createdAt;
+    private final long updatedAt;
+    private final long dueAt;
     
-    // Static counter to auto-generate unique IDs
-    private static int nextId = 1;
+    /**
+     * Constructor to create a task with specific ID, description, and status.
+     * Used for updating existing tasks.
+     * 
+     * @param id The task ID
+     * @param description The task description
+     * @param status The task status
+     */
+    public Task(int id, String description, String status) {
+        this(id, description, status, 1);
+    }
     
     /**
-     * Constructor to create a new task with a description.
-     * The task is assigned a unique ID and default status of "Pending".
+     * Constructor to create a task with specific ID, description, status and version.
+     * Used for restoring persisted tasks.
      * 
-     * @param description The description of the task
+     * @param id The task ID
+     * @param description The task description
+     * @param status The task status
+     * @param version The task version
      */
-    public Task(String description) {
-        this.id = nextId++;
-        this.description = description;
-        this.status = "Pending";
+    public Task(int id, String description, String status, long version) {
+        this(id, description, status, version, 0, 0, 0);
     }
     
     /**
-     * Constructor to create a task with specific ID, description, and status.
-     * Used for updating existing tasks.
+     * Constructor to create a task with every field, including its timestamps.
      * 
      * @param id The task ID
      * @param description The task description
      * @param status The task status
+     * @param version The task version
+     * @param createdAt When the task was created, in epoch milliseconds, or 0 if not known
+     * @param updatedAt When the task last changed, in epoch milliseconds, or 0 if not known
+     * @param dueAt When the task is due, in epoch milliseconds, or 0 for no due date
      */
-    public Task(int id, String description, String status) {
+    public Task(int id, String description, String status, long version,
+                long createdAt, long updatedAt, long dueAt) {
         this.id = id;
         this.description = description;
         this.status = status;
+        this.version = version;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.dueAt = dueAt;
     }
     
     // Getter methods
@@ -51,48 +86,33 @@ public class Task {
         return status;
     }
     
-    // Setter methods
-    public void setDescription(String description) {
-        this.description = description;
+    public long getVersion() {
+        return version;
     }
     
-    public void setStatus(String status) {
-        this.status = status;
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getCreatedAt() {
+        return createdAt;
     }
     
-    /**
-     * Marks the task as completed.
-     */
-    public void markCompleted() {
-        this.status = "Completed";
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    @JsonInclude(JsonInclude.Include.NON_DEFAULT)
+    public long getDueAt() {
+        return dueAt;
     }
     
     /**
      * Returns a string representation of the task.
      * 
-     * @return Formatted string with ID, description, and status
+     * @return Formatted string with ID, description, status and, if set, due date
      */
     @Override
     public String toString() {
-        return String.format("ID: %d | Description: %s | Status: %s", id, description, status);
-    }
-    
-    /**
-     * Static method to set the next ID counter.
-     * Useful when loading tasks from storage to avoid ID conflicts.
-     * 
-     * @param nextId The next ID to use
-     */
-    public static void setNextId(int nextId) {
-        Task.nextId = nextId;
-    }
-    
-    /**
-     * Static method to get the current next ID value.
-     * 
-     * @return The next ID that will be assigned
-     */
-    public static int getNextId() {
-        return nextId;
+        String task = String.format("ID: %d | Description: %s | Status: %s", id, description, status);
+        return dueAt == 0 ? task : task + " | Due: " + Instant.ofEpochMilli(dueAt);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,293 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Off-heap task records, indexed by ID; the archive tier of
+ * {@link TieredTaskStore}.
+ *
+ * Each task is one record in direct byte buffers outside the Java heap:
+ * <pre>
+ * long version | long created | long updated | long due | int status length | int description length
+ * | status UTF-8 | description UTF-8
+ * </pre>
+ * The only heap the archive takes per task is the 8-byte reference to its
+ * record, in pages of 65,536 IDs like {@link CompactTaskStore}, so archived
+ * tasks add no objects for the garbage collector to trace. {@link Task}
+ * objects are created on every read. The manager's indexes still hold
+ * archived tasks on the heap; {@link TieredTaskStore} lists what they cost.
+ *
+ * Records are appended and never overwritten, so a reader that has read a
+ * reference can decode its record without locking; writers are serialized by
+ * the archive's monitor. Space of replaced or removed records is reclaimed by
+ * {@link #compact} passes, which move the live records out of the chunks that
+ * exist when the pass starts, {@value #SWEEP_SLOTS} IDs per step, and then
+ * drop those chunks from a copy of the chunk table. A reader that finds its
+ * record's chunk dropped reads the reference again, which by then points to
+ * the moved record. The buffers count towards {@code -XX:MaxDirectMemorySize}.
+ */
+final class TaskArchive {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int CHUNK_BYTES = 1 << 20;
+    private static final int LENGTHS = 4 * Long.BYTES;
+    private static final int HEADER_BYTES = LENGTHS + 2 * Integer.BYTES;
+    private static final int SWEEP_SLOTS = 4096;
+
+    private volatile AtomicLongArray[] pages = new AtomicLongArray[0];
+    // Chunk i is referenced as i + 1, so that reference 0 means "no record"
+    private volatile ByteBuffer[] chunks = new ByteBuffer[16];
+    private int chunkCount;
+    // The chunk small records are appended to, and its number in references
+    private ByteBuffer chunk;
+    private int chunkNumber;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private final AtomicLong garbageBytes = new AtomicLong();
+
+    // Compaction pass: chunks numbered up to passBoundary are being emptied; 0 between passes
+    private int passBoundary;
+    private int passSlot;
+    private long passGarbage;
+
+    /**
+     * Returns the archived task with the given ID.
+     *
+     * @param id The task ID
+     * @return A copy of the task, or null if it is not archived
+     */
+    Task get(int id) {
+        while (true) {
+            long reference = reference(id);
+            if (reference == 0) {
+                return null;
+            }
+            ByteBuffer buffer = chunks[(int) (reference >>> 32) - 1];
+            if (buffer != null) {
+                return decode(id, buffer, (int) reference);
+            }
+            // Dropped by compaction after the record was moved
+        }
+    }
+
+    /**
+     * Archives a task, replacing any archived task with the same ID.
+     *
+     * @param task The task to archive
+     * @return True if a task with the same ID was replaced
+     */
+    synchronized boolean put(Task task) {
+        byte[] status = task.getStatus().getBytes(StandardCharsets.UTF_8);
+        byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_BYTES + status.length + description.length;
+        long reference = allocate(length);
+        ByteBuffer buffer = chunks[(int) (reference >>> 32) - 1];
+        int offset = (int) reference;
+        buffer.putLong(offset, task.getVersion());
+        buffer.putLong(offset + Long.BYTES, task.getCreatedAt());
+        buffer.putLong(offset + 2 * Long.BYTES, task.getUpdatedAt());
+        buffer.putLong(offset + 3 * Long.BYTES, task.getDueAt());
+        buffer.putInt(offset + LENGTHS, status.length);
+        buffer.putInt(offset + LENGTHS + Integer.BYTES, description.length);
+        buffer.put(offset + HEADER_BYTES, status);
+        buffer.put(offset + HEADER_BYTES + status.length, description);
+        liveBytes.addAndGet(length);
+        // Publishing the reference makes the record visible to readers
+        long previous = page(task.getId(), true).getAndSet(task.getId() & (PAGE_SIZE - 1), reference);
+        if (previous != 0) {
+            discard(previous);
+            return true;
+        }
+        size.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Removes the archived task with the given ID.
+     *
+     * @param id The task ID
+     * @return True if the task was archived
+     */
+    synchronized boolean remove(int id) {
+        AtomicLongArray page = page(id, false);
+        if (page == null) {
+            return false;
+        }
+        long current = page.getAndSet(id & (PAGE_SIZE - 1), 0);
+        if (current == 0) {
+            return false;
+        }
+        discard(current);
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns the number of archived tasks.
+     *
+     * @return The task count
+     */
+    int size() {
+        return size.get();
+    }
+
+    /**
+     * Returns the off-heap bytes of replaced and removed records that
+     * compaction can reclaim.
+     *
+     * @return The reclaimable bytes
+     */
+    long garbageBytes() {
+        return garbageBytes.get();
+    }
+
+    /**
+     * Returns the off-heap bytes of the records of archived tasks.
+     *
+     * @return The bytes of live records
+     */
+    long liveBytes() {
+        return liveBytes.get();
+    }
+
+    /**
+     * Takes one step of a compaction pass, moving the live records of up to
+     * {@value #SWEEP_SLOTS} IDs out of the chunks being emptied.
+     *
+     * @return True if the pass needs more steps
+     */
+    synchronized boolean compact() {
+        if (passBoundary == 0) {
+            if (chunkCount == 0) {
+                return false;
+            }
+            passBoundary = chunkCount;
+            passGarbage = garbageBytes.get();
+            passSlot = 0;
+            // New records, including the moved ones, go to a chunk above the boundary
+            chunk = null;
+        }
+        AtomicLongArray[] current = pages;
+        if ((long) passSlot < (long) current.length << PAGE_BITS) {
+            AtomicLongArray page = current[passSlot >>> PAGE_BITS];
+            if (page != null) {
+                int end = (passSlot & (PAGE_SIZE - 1)) + SWEEP_SLOTS;
+                for (int slot = passSlot & (PAGE_SIZE - 1); slot < end; slot++) {
+                    long reference = page.get(slot);
+                    if (reference != 0 && (int) (reference >>> 32) <= passBoundary) {
+                        page.set(slot, move(reference));
+                    }
+                }
+            }
+            passSlot += SWEEP_SLOTS;
+            return true;
+        }
+        ByteBuffer[] table = chunks.clone();
+        Arrays.fill(table, 0, passBoundary, null);
+        chunks = table;
+        garbageBytes.addAndGet(-passGarbage);
+        passBoundary = 0;
+        return false;
+    }
+
+    private long move(long reference) {
+        ByteBuffer from = chunks[(int) (reference >>> 32) - 1];
+        int offset = (int) reference;
+        int length = recordLength(from, offset);
+        long moved = allocate(length);
+        ByteBuffer to = chunks[(int) (moved >>> 32) - 1];
+        to.put((int) moved, from, offset, length);
+        return moved;
+    }
+
+    /**
+     * Accounts for a record that is no longer referenced; the caller holds
+     * the monitor. Records in chunks that the running pass will drop are not
+     * counted as garbage.
+     */
+    private void discard(long reference) {
+        int length = recordLength(chunks[(int) (reference >>> 32) - 1], (int) reference);
+        liveBytes.addAndGet(-length);
+        if ((int) (reference >>> 32) > passBoundary) {
+            garbageBytes.addAndGet(length);
+        }
+    }
+
+    private long reference(int id) {
+        AtomicLongArray page = page(id, false);
+        return page == null ? 0 : page.get(id & (PAGE_SIZE - 1));
+    }
+
+    private static Task decode(int id, ByteBuffer buffer, int offset) {
+        long version = buffer.getLong(offset);
+        byte[] status = new byte[buffer.getInt(offset + LENGTHS)];
+        byte[] description = new byte[buffer.getInt(offset + LENGTHS + Integer.BYTES)];
+        buffer.get(offset + HEADER_BYTES, status);
+        buffer.get(offset + HEADER_BYTES + status.length, description);
+        return new Task(id, new String(description, StandardCharsets.UTF_8),
+            new String(status, StandardCharsets.UTF_8), version, buffer.getLong(offset + Long.BYTES),
+            buffer.getLong(offset + 2 * Long.BYTES), buffer.getLong(offset + 3 * Long.BYTES));
+    }
+
+    private static int recordLength(ByteBuffer buffer, int offset) {
+        return HEADER_BYTES + buffer.getInt(offset + LENGTHS) + buffer.getInt(offset + LENGTHS + Integer.BYTES);
+    }
+
+    /**
+     * Reserves space for a record; the caller holds the monitor.
+     *
+     * @return The reference to the reserved space
+     */
+    private long allocate(int length) {
+        if (length > CHUNK_BYTES) {
+            // Large records get a chunk of their own
+            return (long) addChunk(ByteBuffer.allocateDirect(length)) << 32;
+        }
+        if (chunk == null || chunk.remaining() < length) {
+            chunk = ByteBuffer.allocateDirect(CHUNK_BYTES);
+            chunkNumber = addChunk(chunk);
+        }
+        long reference = (long) chunkNumber << 32 | chunk.position();
+        chunk.position(chunk.position() + length);
+        return reference;
+    }
+
+    /**
+     * Adds a chunk to the table and returns its number in references.
+     */
+    private int addChunk(ByteBuffer buffer) {
+        ByteBuffer[] table = chunks;
+        if (chunkCount == table.length) {
+            table = Arrays.copyOf(table, table.length * 2);
+        }
+        table[chunkCount++] = buffer;
+        chunks = table;
+        return chunkCount;
+    }
+
+    private AtomicLongArray page(int id, boolean create) {
+        int pageIndex = id >>> PAGE_BITS;
+        AtomicLongArray[] snapshot = pages;
+        if (pageIndex < snapshot.length && snapshot[pageIndex] != null) {
+            return snapshot[pageIndex];
+        }
+        return create ? createPage(pageIndex) : null;
+    }
+
+    private synchronized AtomicLongArray createPage(int pageIndex) {
+        AtomicLongArray[] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        // Copy-on-write so readers always see a fully initialized directory
+        AtomicLongArray[] grown = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        grown[pageIndex] = new AtomicLongArray(PAGE_SIZE);
+        pages = grown;
+        return grown[pageIndex];
+    }
+}
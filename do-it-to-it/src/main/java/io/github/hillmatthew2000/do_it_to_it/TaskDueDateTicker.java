@@ -0,0 +1,57 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Marks overdue tasks in the web application: every
+ * {@code todo.due.tick-millis} a background thread calls
+ * {@link ToDoManager#expireOverdueTasks()} on every partition. A call that
+ * finds no passed due date costs one step of each partition's timing wheel,
+ * so the ticks cost next to nothing while no task is due. The console
+ * application has no ticker; there, tasks are checked when listed.
+ */
+@Component
+class TaskDueDateTicker {
+    private static final System.Logger LOGGER = System.getLogger(TaskDueDateTicker.class.getName());
+
+    private final TaskPartitions partitions;
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-due-dates");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    TaskDueDateTicker(TaskPartitions partitions, @Value("${todo.due.tick-millis:1000}") long tickMillis) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("todo.due.tick-millis must be at least 1");
+        }
+        this.partitions = partitions;
+        ticker.scheduleWithFixedDelay(this::tick, tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Expires the passed due dates of every partition.
+     */
+    void tick() {
+        for (ToDoManager manager : partitions.all().values()) {
+            try {
+                manager.expireOverdueTasks();
+            } catch (RuntimeException e) {
+                // Keep ticking; a failure must not cancel the schedule
+                LOGGER.log(System.Logger.Level.WARNING, "Expiring overdue tasks failed", e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        ticker.shutdownNow();
+    }
+}
@@ -0,0 +1,287 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel of task due dates, used by {@link ToDoManager}
+ * to find overdue tasks without scanning the open ones.
+ *
+ * Time moves in ticks of a fixed number of milliseconds, and a due date fires
+ * at the first tick at or after it, so it never fires early and at most one
+ * tick late. There are {@value #LEVELS} wheels of {@value #SLOTS} slots; a
+ * slot of level {@code n} spans 64<sup>n</sup> ticks. A due date goes into
+ * the lowest level whose slot span separates it from the current tick, and
+ * when the current tick enters a slot of a higher level, that slot's entries
+ * move down to the level that now separates them. Scheduling, cancelling and
+ * firing an entry are constant time, and each entry moves down at most
+ * {@value #LEVELS} times however far away it is due. Due dates beyond the
+ * top level, about 2,000 years at a one-second tick, wait in an overflow
+ * list that is revisited once per turn of the top level. A bitmap of the
+ * occupied slots of each level tells {@link #advance} the next tick at which
+ * any slot is due, so it jumps over empty ticks instead of visiting them.
+ *
+ * Each task has at most one entry, found by ID, so memory follows the number
+ * of scheduled tasks and a cancelled entry is unlinked rather than left to
+ * expire. The wheel starts at the clock's current tick on first use.
+ */
+final class TaskDueScheduler {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int LEVELS = 6;
+
+    /**
+     * A due date that has passed.
+     *
+     * @param id The task ID
+     * @param dueAt The due date it was scheduled for, in epoch milliseconds
+     */
+    record Expiry(int id, long dueAt) {
+    }
+
+    private static final class Node {
+        final int id;
+        final long dueAt;
+        // The tick the entry fires at
+        long tick;
+        Node previous;
+        Node next;
+        // Slot heads are indexed level * SLOTS + slot; -1 is the overflow list
+        int bucket;
+
+        Node(int id, long dueAt) {
+            this.id = id;
+            this.dueAt = dueAt;
+        }
+    }
+
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final Node[] slots = new Node[LEVELS * SLOTS];
+    // Bit i of occupied[level] is set while slot i of the level has entries
+    private final long[] occupied = new long[LEVELS];
+    private Node overflow;
+    private final HashMap<Integer, Node> nodes = new HashMap<>();
+    private long currentTick;
+    private boolean started;
+
+    /**
+     * Creates an empty wheel.
+     *
+     * @param tickMillis The length of a tick in milliseconds
+     * @param clock Supplies the current time in epoch milliseconds when the wheel starts
+     */
+    TaskDueScheduler(long tickMillis, LongSupplier clock) {
+        if (tickMillis < 1) {
+            throw new IllegalArgumentException("Tick must be at least 1 ms");
+        }
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+    }
+
+    /**
+     * Schedules a task's due date, replacing any due date scheduled for it.
+     * A due date that has already passed fires on the next tick.
+     *
+     * @param id The task ID
+     * @param dueAt The due date in epoch milliseconds
+     */
+    synchronized void schedule(int id, long dueAt) {
+        start();
+        Node previous = nodes.get(id);
+        if (previous != null) {
+            if (previous.dueAt == dueAt) {
+                return;
+            }
+            unlink(previous);
+        }
+        Node node = new Node(id, dueAt);
+        node.tick = firstTick(dueAt);
+        nodes.put(id, node);
+        place(node);
+    }
+
+    /**
+     * Cancels a task's due date, if one is scheduled.
+     *
+     * @param id The task ID
+     */
+    synchronized void cancel(int id) {
+        Node node = nodes.remove(id);
+        if (node != null) {
+            unlink(node);
+        }
+    }
+
+    /**
+     * Moves the wheel forward to the given time and removes the due dates
+     * that have passed.
+     *
+     * @param now The current time in epoch milliseconds
+     * @return The due dates that fired, in due order to within a tick
+     */
+    synchronized List<Expiry> advance(long now) {
+        start();
+        long target = Math.floorDiv(now, tickMillis);
+        List<Expiry> expired = new ArrayList<>();
+        while (currentTick < target) {
+            long tick = nextDueTick();
+            if (tick > target) {
+                currentTick = target;
+                break;
+            }
+            currentTick = tick;
+            // Cascade from the top, so entries land in lower slots before those are visited
+            if ((tick & ((1L << SLOT_BITS * LEVELS) - 1)) == 0) {
+                cascade(takeOverflow());
+            }
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((tick & ((1L << SLOT_BITS * level) - 1)) == 0) {
+                    cascade(take(level * SLOTS + slot(tick, level)));
+                }
+            }
+            for (Node node = take(slot(tick, 0)); node != null; node = node.next) {
+                nodes.remove(node.id);
+                expired.add(new Expiry(node.id, node.dueAt));
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the number of scheduled due dates.
+     *
+     * @return The entry count
+     */
+    synchronized int size() {
+        return nodes.size();
+    }
+
+    /**
+     * Moves the wheel to the clock's current tick, which may be earlier than
+     * the wheel's, keeping every scheduled due date. Used when the clock is
+     * replaced; it takes time in proportion to the number of due dates.
+     */
+    synchronized void restart() {
+        Arrays.fill(slots, null);
+        Arrays.fill(occupied, 0);
+        overflow = null;
+        started = false;
+        start();
+        for (Node node : nodes.values()) {
+            node.tick = firstTick(node.dueAt);
+            place(node);
+        }
+    }
+
+    /**
+     * Cancels every scheduled due date.
+     */
+    synchronized void clear() {
+        nodes.clear();
+        Arrays.fill(slots, null);
+        Arrays.fill(occupied, 0);
+        overflow = null;
+    }
+
+    /**
+     * Returns the first tick after the current one at which an occupied slot
+     * is cascaded or fired. Every entry is in a slot ahead of the current
+     * tick's digit at its level.
+     */
+    private long nextDueTick() {
+        long next = overflow == null ? Long.MAX_VALUE : ((currentTick >>> SLOT_BITS * LEVELS) + 1) << SLOT_BITS * LEVELS;
+        for (int level = 0; level < LEVELS; level++) {
+            long ahead = occupied[level] & (-2L << slot(currentTick, level));
+            if (ahead != 0) {
+                int span = SLOT_BITS * (level + 1);
+                long tick = currentTick >>> span << span | (long) Long.numberOfTrailingZeros(ahead) << SLOT_BITS * level;
+                next = Math.min(next, tick);
+            }
+        }
+        return next;
+    }
+
+    private void start() {
+        if (!started) {
+            currentTick = Math.floorDiv(clock.getAsLong(), tickMillis);
+            started = true;
+        }
+    }
+
+    /**
+     * Returns the first tick at or after a due date, or the next tick if
+     * that has passed.
+     */
+    private long firstTick(long dueAt) {
+        return Math.max(Math.ceilDiv(dueAt, tickMillis), currentTick + 1);
+    }
+
+    private void cascade(Node node) {
+        while (node != null) {
+            Node next = node.next;
+            place(node);
+            node = next;
+        }
+    }
+
+    /**
+     * Links a node into the slot of the lowest level whose span separates
+     * its tick from the current tick.
+     */
+    private void place(Node node) {
+        long distance = node.tick ^ currentTick;
+        int level = distance == 0 ? 0 : (Long.SIZE - 1 - Long.numberOfLeadingZeros(distance)) / SLOT_BITS;
+        node.previous = null;
+        if (level >= LEVELS) {
+            node.bucket = -1;
+            node.next = overflow;
+            overflow = node;
+        } else {
+            // The tick's digit at this level is above the current one, so the slot is still ahead
+            node.bucket = level * SLOTS + slot(node.tick, level);
+            node.next = slots[node.bucket];
+            slots[node.bucket] = node;
+            occupied[level] |= 1L << slot(node.tick, level);
+        }
+        if (node.next != null) {
+            node.next.previous = node;
+        }
+    }
+
+    private void unlink(Node node) {
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else if (node.bucket < 0) {
+            overflow = node.next;
+        } else {
+            slots[node.bucket] = node.next;
+            if (node.next == null) {
+                occupied[node.bucket / SLOTS] &= ~(1L << node.bucket % SLOTS);
+            }
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        }
+    }
+
+    private Node take(int bucket) {
+        Node head = slots[bucket];
+        slots[bucket] = null;
+        occupied[bucket / SLOTS] &= ~(1L << bucket % SLOTS);
+        return head;
+    }
+
+    private Node takeOverflow() {
+        Node head = overflow;
+        overflow = null;
+        return head;
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) (tick >>> SLOT_BITS * level) & (SLOTS - 1);
+    }
+}
@@ -0,0 +1,22 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * A change published by {@link ToDoManager} to its change listeners.
+ * 
+ * @param sequence Increases with every published event; events for the same task are published in sequence order
+ * @param type What happened
+ * @param taskId The ID of the changed task, or 0 for {@link Type#CLEARED}
+ * @param task The task after the change, or null if it was deleted or cleared
+ */
+public record TaskEvent(long sequence, Type type, int taskId, Task task) {
+    
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED,
+        CLEARED
+    }
+}
@@ -0,0 +1,250 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Streams {@link TaskEvent}s from the {@link ToDoManager} to server-sent-event
+ * subscribers.
+ *
+ * An idle subscriber holds only its emitter and an empty queue; no thread
+ * waits on it. Each event is offered to every subscriber's bounded queue,
+ * which a virtual thread drains while it is non-empty, so a slow client only
+ * ever blocks its own sender. The manager calls the broadcaster while it
+ * holds the lock on the changed task, so an event is only serialized by the
+ * first sender to reach it, once for all subscribers. One shared thread sends
+ * the heartbeats of every broadcaster. When a queue
+ * overflows its events are discarded and the subscriber is sent a
+ * {@code resync} event instead, telling it to reload the full list.
+ *
+ * A new subscriber first receives a {@code ready} event. Clients should load
+ * the task list once it arrives and apply the events received after it on
+ * top; events carry the full task state, so applying one the list already
+ * reflects is harmless.
+ */
+@Component
+@DependsOn("singletonToDoManager")
+class TaskEventBroadcaster {
+    /** Events buffered per subscriber before it is told to resynchronize. */
+    static final int QUEUE_CAPACITY = 1024;
+
+    private static final long HEARTBEAT_SECONDS = 15;
+    private static final System.Logger LOGGER = System.getLogger(TaskEventBroadcaster.class.getName());
+    private static final ScheduledThreadPoolExecutor HEARTBEAT = heartbeatExecutor();
+
+    private final ToDoManager manager;
+    private final ObjectMapper mapper;
+    private final Consumer<TaskEvent> listener = this::broadcast;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledFuture<?> heartbeat;
+
+    @Autowired
+    TaskEventBroadcaster(ObjectMapper mapper) {
+        this(SingletonToDoManager.getInstance(), mapper);
+    }
+
+    TaskEventBroadcaster(ToDoManager manager, ObjectMapper mapper) {
+        this.manager = manager;
+        this.mapper = mapper;
+        manager.addChangeListener(listener);
+        // Comments keep proxies from closing idle streams and reveal dead connections
+        heartbeat = HEARTBEAT.scheduleAtFixedRate(
+            () -> subscribers.forEach(subscriber -> subscriber.offer(Message.HEARTBEAT)),
+            HEARTBEAT_SECONDS, HEARTBEAT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    private static ScheduledThreadPoolExecutor heartbeatExecutor() {
+        ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "todo-sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Closed broadcasters leave nothing behind in the queue
+        executor.setRemoveOnCancelPolicy(true);
+        return executor;
+    }
+
+    /**
+     * Opens a new event stream.
+     *
+     * @return The emitter to return from the request handler
+     */
+    SseEmitter subscribe() {
+        // No timeout; closed connections are detected when a heartbeat fails
+        return subscribe(new SseEmitter(0L));
+    }
+
+    /**
+     * Attaches an emitter to the event stream.
+     *
+     * @param emitter The emitter to send events to
+     * @return The same emitter
+     */
+    SseEmitter subscribe(SseEmitter emitter) {
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(error -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        subscriber.offer(new Message("ready", manager.getEventSequence(), "{}"));
+        return emitter;
+    }
+
+    /**
+     * Returns the number of open event streams.
+     *
+     * @return The subscriber count
+     */
+    int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @PreDestroy
+    void close() {
+        manager.removeChangeListener(listener);
+        heartbeat.cancel(false);
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+        senders.shutdown();
+    }
+
+    private void broadcast(TaskEvent event) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        Message message = new Message(event.type().name().toLowerCase(), event.sequence(), event, mapper);
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(message);
+        }
+    }
+
+    /**
+     * An event to send, serialized when it is first sent; a null name marks
+     * a heartbeat comment.
+     */
+    private static final class Message {
+        static final Message HEARTBEAT = new Message(null, 0, null, null);
+
+        private final String name;
+        private final long id;
+        private final ObjectMapper mapper;
+        // Guarded by this; the event is dropped once serialized
+        private TaskEvent event;
+        private String data;
+
+        Message(String name, long id, TaskEvent event, ObjectMapper mapper) {
+            this.name = name;
+            this.id = id;
+            this.event = event;
+            this.mapper = mapper;
+        }
+
+        Message(String name, long id, String data) {
+            this(name, id, null, null);
+            this.data = data;
+        }
+
+        /**
+         * Builds the event, or returns null if it cannot be serialized.
+         */
+        SseEmitter.SseEventBuilder toEvent() {
+            if (name == null) {
+                return SseEmitter.event().comment("heartbeat");
+            }
+            String serialized = data();
+            return serialized == null ? null : SseEmitter.event().name(name).id(Long.toString(id)).data(serialized);
+        }
+
+        private synchronized String data() {
+            if (event != null) {
+                try {
+                    data = mapper.writeValueAsString(event);
+                } catch (JsonProcessingException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Could not serialize task event", e);
+                }
+                event = null;
+            }
+            return data;
+        }
+    }
+
+    /**
+     * One open stream with its bounded queue of unsent events.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final ArrayBlockingQueue<Message> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile boolean overflowed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void offer(Message message) {
+            if (!queue.offer(message)) {
+                // The client cannot keep up; drop the backlog and make it reload instead
+                overflowed = true;
+                queue.clear();
+            }
+            if (sending.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this::drain);
+                } catch (RejectedExecutionException e) {
+                    sending.set(false); // shutting down
+                }
+            }
+        }
+
+        private void drain() {
+            do {
+                try {
+                    while (true) {
+                        if (overflowed) {
+                            overflowed = false;
+                            queue.clear();
+                            emitter.send(SseEmitter.event().name("resync")
+                                .id(Long.toString(manager.getEventSequence())).data("{}"));
+                        }
+                        Message message = queue.poll();
+                        if (message == null) {
+                            break;
+                        }
+                        SseEmitter.SseEventBuilder event = message.toEvent();
+                        if (event != null) {
+                            emitter.send(event);
+                        }
+                    }
+                } catch (IOException | IllegalStateException e) {
+                    // The client went away; the emitter's callbacks may not fire for a dead connection
+                    subscribers.remove(this);
+                    emitter.completeWithError(e);
+                    return;
+                }
+                sending.set(false);
+                // Pick up anything offered between the last poll and releasing the flag
+            } while ((!queue.isEmpty() || overflowed) && sending.compareAndSet(false, true));
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free allocator for task IDs.
+ * IDs are handed out from a single atomic counter with one fetch-and-add per
+ * allocation, so concurrent callers never receive the same ID. Callers that
+ * need many IDs at once can reserve a contiguous range in a single step.
+ */
+final class TaskIdAllocator {
+    private final AtomicLong next;
+
+    /**
+     * Creates an allocator whose first ID is {@code firstId}.
+     *
+     * @param firstId The first ID to hand out
+     */
+    TaskIdAllocator(int firstId) {
+        this.next = new AtomicLong(firstId);
+    }
+
+    /**
+     * Allocates a single ID.
+     *
+     * @return A new, never previously allocated ID
+     */
+    int next() {
+        return reserve(1);
+    }
+
+    /**
+     * Reserves a contiguous range of IDs.
+     *
+     * @param count The number of IDs to reserve
+     * @return The first ID of the range; the range ends at {@code first + count - 1}
+     * @throws IllegalStateException if the ID space is exhausted
+     */
+    int reserve(int count) {
+        if (count <= 0) {
+            throw new IllegalArgumentException("ID count must be positive");
+        }
+        // A long counter cannot wrap, so an exhausted allocator stays exhausted
+        long first = next.getAndAdd(count);
+        if (first + count - 1 > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Task ID space exhausted");
+        }
+        return (int) first;
+    }
+
+    /**
+     * Moves the counter forward so the next ID is at least {@code nextId}.
+     * The counter never moves backwards, so this is safe to call while other
+     * threads are allocating.
+     *
+     * @param nextId The lowest ID the allocator may hand out next
+     */
+    void advanceTo(int nextId) {
+        next.accumulateAndGet(nextId, Math::max);
+    }
+
+    /**
+     * Sets the counter to an exact value.
+     *
+     * @param nextId The next ID to hand out
+     */
+    void set(int nextId) {
+        next.set(nextId);
+    }
+
+    /**
+     * Returns the next ID that will be handed out.
+     *
+     * @return The next ID
+     */
+    int peek() {
+        return (int) Math.min(next.get(), Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,157 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Concurrent ordered set of task IDs backed by a paged bitmap.
+ * Task IDs are small, dense, increasing integers, so one bit per ID is enough
+ * to answer "which IDs are live, in order" for cursor-based listings.
+ * Adds and removes are single atomic bit operations; walking to the next live
+ * ID skips 64 absent IDs per step.
+ */
+final class TaskIdSet {
+    private static final VarHandle WORDS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int PAGE_BITS = 16; // 65,536 IDs (8 KB) per page
+    private static final int WORDS_PER_PAGE = 1 << (PAGE_BITS - 6);
+
+    private volatile long[][] pages = new long[0][];
+
+    /**
+     * Adds an ID to the set.
+     *
+     * @param id The ID to add; must be positive
+     */
+    void add(int id) {
+        long[] page = page(id >>> PAGE_BITS, true);
+        WORDS.getAndBitwiseOr(page, wordIndex(id), 1L << id);
+    }
+
+    /**
+     * Removes an ID from the set.
+     *
+     * @param id The ID to remove
+     */
+    void remove(int id) {
+        long[] page = page(id >>> PAGE_BITS, false);
+        if (page != null) {
+            WORDS.getAndBitwiseAnd(page, wordIndex(id), ~(1L << id));
+        }
+    }
+
+    /**
+     * Checks whether an ID is in the set.
+     *
+     * @param id The ID to check
+     * @return true if the ID is present
+     */
+    boolean contains(int id) {
+        long[] page = page(id >>> PAGE_BITS, false);
+        return page != null && (word(page, wordIndex(id)) & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns the smallest ID in the set that is greater than or equal to {@code from}.
+     *
+     * @param from The ID to start searching from
+     * @return The next ID, or -1 if there is none
+     */
+    int next(int from) {
+        if (from < 0) {
+            from = 0;
+        }
+        long[][] snapshot = pages;
+        int pageIndex = from >>> PAGE_BITS;
+        int wordIndex = wordIndex(from);
+        long mask = -1L << from;
+        while (pageIndex < snapshot.length) {
+            long[] page = snapshot[pageIndex];
+            if (page != null) {
+                for (; wordIndex < WORDS_PER_PAGE; wordIndex++) {
+                    long bits = word(page, wordIndex) & mask;
+                    if (bits != 0) {
+                        return (pageIndex << PAGE_BITS) | (wordIndex << 6) | Long.numberOfTrailingZeros(bits);
+                    }
+                    mask = -1L;
+                }
+            }
+            pageIndex++;
+            wordIndex = 0;
+            mask = -1L;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the largest ID in the set that is less than or equal to {@code from}.
+     *
+     * @param from The ID to start searching from
+     * @return The previous ID, or -1 if there is none
+     */
+    int previous(int from) {
+        if (from < 0) {
+            return -1;
+        }
+        long[][] snapshot = pages;
+        int pageIndex = from >>> PAGE_BITS;
+        int wordIndex = wordIndex(from);
+        long mask = -1L >>> (63 - (from & 63));
+        if (pageIndex >= snapshot.length) {
+            pageIndex = snapshot.length - 1;
+            wordIndex = WORDS_PER_PAGE - 1;
+            mask = -1L;
+        }
+        while (pageIndex >= 0) {
+            long[] page = snapshot[pageIndex];
+            if (page != null) {
+                for (; wordIndex >= 0; wordIndex--) {
+                    long bits = word(page, wordIndex) & mask;
+                    if (bits != 0) {
+                        return (pageIndex << PAGE_BITS) | (wordIndex << 6) | (63 - Long.numberOfLeadingZeros(bits));
+                    }
+                    mask = -1L;
+                }
+            }
+            pageIndex--;
+            wordIndex = WORDS_PER_PAGE - 1;
+            mask = -1L;
+        }
+        return -1;
+    }
+
+    /**
+     * Removes every ID from the set.
+     */
+    synchronized void clear() {
+        pages = new long[0][];
+    }
+
+    private long[] page(int pageIndex, boolean create) {
+        long[][] snapshot = pages;
+        if (pageIndex < snapshot.length && snapshot[pageIndex] != null) {
+            return snapshot[pageIndex];
+        }
+        return create ? createPage(pageIndex) : null;
+    }
+
+    private synchronized long[] createPage(int pageIndex) {
+        long[][] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        // Copy-on-write so readers always see a fully initialized directory
+        long[][] grown = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        grown[pageIndex] = new long[WORDS_PER_PAGE];
+        pages = grown;
+        return grown[pageIndex];
+    }
+
+    private static int wordIndex(int id) {
+        return (id >>> 6) & (WORDS_PER_PAGE - 1);
+    }
+
+    private static long word(long[] page, int wordIndex) {
+        return (long) WORDS.getAcquire(page, wordIndex);
+    }
+}
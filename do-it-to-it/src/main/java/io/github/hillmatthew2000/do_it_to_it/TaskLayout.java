@@ -0,0 +1,36 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * How {@link ToDoManager} keeps tasks in memory.
+ */
+public enum TaskLayout {
+    /**
+     * Every task is a {@link Task} object in a concurrent hash map.
+     * Reads return the stored object without copying.
+     */
+    OBJECTS,
+
+    /**
+     * Tasks are stored column-wise in primitive arrays indexed by ID, with
+     * statuses as dictionary codes and descriptions in a shared byte arena.
+     * Uses a fraction of the heap of {@link #OBJECTS}; {@link Task} objects
+     * are created on every read.
+     */
+    COMPACT,
+
+    /**
+     * Pending and in-progress tasks are {@link Task} objects in a concurrent
+     * hash map, while completed tasks are moved in the background to records
+     * outside the heap. Heap use and garbage collection grow with the open
+     * tasks only; archived tasks are decoded into new objects on every read.
+     */
+    TIERED,
+
+    /**
+     * Every task is a {@link Task} object in a persistent trie that each
+     * change replaces by a new version. Listings, exports and snapshots read
+     * one version, a consistent view taken in constant time, at the cost of
+     * copying a few small trie nodes on every change.
+     */
+    VERSIONED
+}
@@ -0,0 +1,41 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * The {@link ToDoManager} operations whose durations are reported to an
+ * {@link OperationRecorder}.
+ */
+public enum TaskOperation {
+    ADD_TASK("addTask"),
+    ADD_TASKS("addTasks"),
+    GET_ALL_TASKS("getAllTasks"),
+    FOR_EACH_TASK("forEachTask"),
+    GET_TASK_VIEW("getTaskView"),
+    GET_TASKS("getTasks"),
+    FIND_TASK_BY_ID("findTaskById"),
+    SEARCH_TASKS("searchTasks"),
+    UPDATE_TASK_DESCRIPTION("updateTaskDescription"),
+    UPDATE_TASK_STATUS("updateTaskStatus"),
+    MARK_TASK_COMPLETED("markTaskCompleted"),
+    MARK_TASKS_COMPLETED("markTasksCompleted"),
+    DELETE_TASK("deleteTask"),
+    DELETE_TASKS("deleteTasks"),
+    SET_TASK_DUE_DATE("setTaskDueDate"),
+    PURGE_COMPLETED_TASKS("purgeCompletedTasks"),
+    EXPIRE_OVERDUE_TASKS("expireOverdueTasks"),
+    CLEAR_ALL_TASKS("clearAllTasks");
+
+    private final String methodName;
+
+    TaskOperation(String methodName) {
+        this.methodName = methodName;
+    }
+
+    /**
+     * Returns the name of the manager method performing the operation.
+     *
+     * @return The method name
+     */
+    public String methodName() {
+        return methodName;
+    }
+}
@@ -0,0 +1,12 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.List;
+
+/**
+ * One page of a task listing.
+ * 
+ * @param tasks The tasks on this page, in the requested order
+ * @param nextCursor The cursor to pass to fetch the next page, or null if this is the last page
+ */
+public record TaskPage(List<Task> tasks, Integer nextCursor) {
+}
@@ -0,0 +1,65 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * REST Controller listing and creating the task partitions. The tasks of
+ * each partition are served by {@link TodoController}.
+ */
+@RestController
+@RequestMapping("/api/partitions")
+@CrossOrigin(origins = "*")
+public class TaskPartitionController {
+
+    private final TaskPartitions partitions;
+
+    TaskPartitionController(TaskPartitions partitions) {
+        this.partitions = partitions;
+    }
+
+    /**
+     * List every partition with its task counts, ordered by name
+     * GET /api/partitions
+     */
+    @GetMapping
+    public List<Map<String, Object>> getPartitions() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        partitions.all().forEach((name, manager) -> result.add(Map.of(
+            "name", name,
+            "totalTasks", manager.getTaskCount(),
+            "completedTasks", manager.getCompletedTaskCount()
+        )));
+        return result;
+    }
+
+    /**
+     * Create a partition, if it does not exist yet
+     * PUT /api/partitions/{name}
+     */
+    @PutMapping("/{name}")
+    public ResponseEntity<Map<String, Object>> createPartition(@PathVariable String name) {
+        try {
+            boolean existed = partitions.find(name) != null;
+            ToDoManager manager = partitions.get(name);
+            return ResponseEntity.status(existed ? HttpStatus.OK : HttpStatus.CREATED).body(Map.of(
+                "name", TaskPartitions.canonicalName(name),
+                "totalTasks", manager.getTaskCount(),
+                "completedTasks", manager.getCompletedTaskCount()
+            ));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import jakarta.servlet.http.HttpServletResponse;
+
+/**
+ * Passes request handlers the {@link ToDoManager} of the partition a request
+ * names: the {@code {partition}} of {@code /api/partitions/{partition}/todos},
+ * or else the {@value TaskPartitions#HEADER} header, or else the default
+ * partition. A request naming an invalid partition, or two different ones,
+ * is rejected with 400 Bad Request.
+ *
+ * Handlers that add tasks take a {@code Supplier<ToDoManager>} instead, which
+ * creates the partition if it does not exist yet, and only when it is first
+ * called. Any other request naming a partition that does not exist is
+ * answered with 404 Not Found, so a mistyped name, a scan of names or a
+ * request that adds nothing creates no partitions. Names are not
+ * case-sensitive.
+ *
+ * The resolved partition name, in lower case, is kept in the {@value #PARTITION_ATTRIBUTE}
+ * request attribute, and responses vary by the header.
+ */
+@Component
+class TaskPartitionResolver implements HandlerMethodArgumentResolver, WebMvcConfigurer {
+    static final String PATH_VARIABLE = "partition";
+    static final String PARTITION_ATTRIBUTE = TaskPartitionResolver.class.getName() + ".partition";
+
+    private final TaskPartitions partitions;
+
+    TaskPartitionResolver(TaskPartitions partitions) {
+        this.partitions = partitions;
+    }
+
+    @Override
+    public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
+        resolvers.add(this);
+    }
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.getParameterType() == ToDoManager.class || creates(parameter);
+    }
+
+    @Override
+    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                       NativeWebRequest request, WebDataBinderFactory binderFactory) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(
+            HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        String fromPath = variables != null ? variables.get(PATH_VARIABLE) : null;
+        String fromHeader = request.getHeader(TaskPartitions.HEADER);
+        if (fromPath != null && fromHeader != null && !fromPath.equalsIgnoreCase(fromHeader)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                "The path names partition '" + fromPath + "' but the " + TaskPartitions.HEADER
+                    + " header names '" + fromHeader + "'");
+        }
+        String name;
+        ToDoManager manager;
+        try {
+            name = TaskPartitions.canonicalName(
+                fromPath != null ? fromPath : fromHeader != null ? fromHeader : TaskPartitions.DEFAULT_PARTITION);
+            manager = partitions.find(name);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        boolean creates = creates(parameter);
+        if (manager == null && !creates) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Partition '" + name + "' does not exist");
+        }
+        request.setAttribute(PARTITION_ATTRIBUTE, name, RequestAttributes.SCOPE_REQUEST);
+        HttpServletResponse response = request.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, TaskPartitions.HEADER);
+        }
+        if (!creates) {
+            return manager;
+        }
+        return (Supplier<ToDoManager>) () -> {
+            try {
+                return manager != null ? manager : partitions.get(name);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+            }
+        };
+    }
+
+    private static boolean creates(MethodParameter parameter) {
+        return parameter.getParameterType() == Supplier.class
+            && ResolvableType.forMethodParameter(parameter).resolveGeneric(0) == ToDoManager.class;
+    }
+}
@@ -0,0 +1,215 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PreDestroy;
+
+/**
+ * The task partitions of the web application, one per tenant or list. Each
+ * partition is a separate {@link ToDoManager} with its own store, indexes,
+ * statistics, versions and write-ahead log, so requests to different
+ * partitions share no lock or counter, and a huge partition does not slow
+ * down the others. Each partition numbers its tasks from 1, so the per-ID
+ * structures of a partition stay as dense as its own tasks. Names are not
+ * case-sensitive and are kept in lower case, so two partitions never share
+ * a directory on a case-insensitive file system.
+ *
+ * The {@value #DEFAULT_PARTITION} partition is the {@link SingletonToDoManager}
+ * and serves every request that names no partition. Other partitions are
+ * created by {@link #get}, up to {@code todo.partitions.max}, while
+ * {@link #find} only looks them up, so requests that merely read can never
+ * use up the limit or leave storage behind. With persistent
+ * storage they live in {@code <storage directory>/partitions/<name>} and are
+ * reopened at startup.
+ */
+@Component
+@DependsOn("singletonToDoManager")
+class TaskPartitions {
+    static final String DEFAULT_PARTITION = "default";
+
+    /** Header naming the partition of a request to {@code /api/todos}. */
+    static final String HEADER = "X-Todo-Partition";
+
+    private static final Pattern NAME = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+    private static final String PARTITIONS_DIRECTORY = "partitions";
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final TaskLayout layout;
+    private final int maxPartitions;
+    private final TodoMetrics metrics;
+    private final ObjectMapper mapper;
+    private final ConcurrentHashMap<String, ToDoManager> managers = new ConcurrentHashMap<>();
+    // Created when a partition's events are first subscribed to
+    private final ConcurrentHashMap<ToDoManager, TaskEventBroadcaster> broadcasters = new ConcurrentHashMap<>();
+
+    @Autowired
+    TaskPartitions(@Value("${todo.storage.directory:}") String directory,
+                   @Value("${todo.storage.fsync:BATCHED}") FsyncPolicy fsyncPolicy,
+                   @Value("${todo.storage.layout:OBJECTS}") TaskLayout layout,
+                   @Value("${todo.partitions.max:1024}") int maxPartitions,
+                   TaskEventBroadcaster events, TodoMetrics metrics, ObjectMapper mapper) {
+        this(SingletonToDoManager.getInstance(), events,
+            directory.isBlank() ? null : Path.of(directory).resolve(PARTITIONS_DIRECTORY),
+            fsyncPolicy, layout, maxPartitions, metrics, mapper);
+    }
+
+    /**
+     * @param defaultManager The manager of the {@value #DEFAULT_PARTITION} partition
+     * @param defaultEvents The event broadcaster of the default partition
+     * @param directory The directory holding a subdirectory per persistent partition, or null to keep partitions in memory
+     * @param fsyncPolicy When the partitions' log records are forced to disk
+     * @param layout How the partitions keep tasks in memory
+     * @param maxPartitions The most partitions there may be, including the default one
+     * @param metrics Receives the duration of every partition's operations
+     * @param mapper Serializes the events of the other partitions
+     */
+    TaskPartitions(ToDoManager defaultManager, TaskEventBroadcaster defaultEvents, Path directory,
+                   FsyncPolicy fsyncPolicy, TaskLayout layout, int maxPartitions,
+                   TodoMetrics metrics, ObjectMapper mapper) {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.layout = layout;
+        this.maxPartitions = maxPartitions;
+        this.metrics = metrics;
+        this.mapper = mapper;
+        managers.put(DEFAULT_PARTITION, defaultManager);
+        broadcasters.put(defaultManager, defaultEvents);
+        if (directory != null && Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> partitions = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path partition : partitions) {
+                    String name = partition.getFileName().toString().toLowerCase(Locale.ROOT);
+                    if (NAME.matcher(name).matches() && !name.equals(DEFAULT_PARTITION)) {
+                        if (managers.containsKey(name)) {
+                            throw new IOException("Partition " + partition + " differs from another only in case");
+                        }
+                        managers.put(name, open(name, partition));
+                    }
+                }
+            } catch (IOException e) {
+                close();
+                throw new UncheckedIOException("Failed to open the task partitions in " + directory, e);
+            }
+        }
+    }
+
+    /**
+     * Returns the manager of a partition, creating the partition if it does
+     * not exist yet.
+     *
+     * @param name The partition name: 1 to 64 letters, digits, '-' or '_'
+     * @return The partition's manager
+     * @throws IllegalArgumentException if the name is invalid, or the partition
+     *         does not exist and there are already as many as allowed
+     */
+    ToDoManager get(String name) {
+        ToDoManager manager = find(name);
+        if (manager != null) {
+            return manager;
+        }
+        name = canonicalName(name);
+        synchronized (this) {
+            manager = managers.get(name);
+            if (manager == null) {
+                if (managers.size() >= maxPartitions) {
+                    throw new IllegalArgumentException("There are already " + maxPartitions + " partitions");
+                }
+                try {
+                    manager = open(name, directory == null ? null : directory.resolve(name));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Failed to open task partition " + name, e);
+                }
+                managers.put(name, manager);
+            }
+            return manager;
+        }
+    }
+
+    /**
+     * Returns the manager of a partition if it exists, without creating it.
+     *
+     * @param name The partition name: 1 to 64 letters, digits, '-' or '_'
+     * @return The partition's manager, or null if there is no such partition
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    ToDoManager find(String name) {
+        return managers.get(canonicalName(name));
+    }
+
+    /**
+     * Returns the name a partition is kept under, in lower case.
+     *
+     * @param name The partition name: 1 to 64 letters, digits, '-' or '_'
+     * @return The name in lower case
+     * @throws IllegalArgumentException if the name is invalid
+     */
+    static String canonicalName(String name) {
+        if (!NAME.matcher(name).matches()) {
+            throw new IllegalArgumentException(
+                "Partition names must be 1 to 64 letters, digits, '-' or '_'");
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Returns every partition, ordered by name.
+     *
+     * @return The managers of the partitions by name
+     */
+    Map<String, ToDoManager> all() {
+        return new TreeMap<>(managers);
+    }
+
+    /**
+     * Returns the event broadcaster of a partition.
+     *
+     * @param manager The partition's manager, as returned by {@link #get}
+     * @return The broadcaster streaming the partition's changes
+     */
+    TaskEventBroadcaster events(ToDoManager manager) {
+        return broadcasters.computeIfAbsent(manager, partition -> new TaskEventBroadcaster(partition, mapper));
+    }
+
+    /**
+     * Closes every partition except the default one, which belongs to
+     * {@link SingletonToDoManager}.
+     */
+    @PreDestroy
+    void close() {
+        ToDoManager defaultManager = managers.get(DEFAULT_PARTITION);
+        broadcasters.forEach((manager, events) -> {
+            if (manager != defaultManager) {
+                events.close();
+            }
+        });
+        managers.forEach((name, manager) -> {
+            if (manager != defaultManager) {
+                manager.close();
+            }
+        });
+    }
+
+    private ToDoManager open(String name, Path storage) throws IOException {
+        ToDoManager manager = storage == null
+            ? new ToDoManager(layout)
+            : ToDoManager.open(storage, fsyncPolicy, ToDoManager.DEFAULT_SNAPSHOT_THRESHOLD, layout);
+        metrics.track(name, manager);
+        return manager;
+    }
+}
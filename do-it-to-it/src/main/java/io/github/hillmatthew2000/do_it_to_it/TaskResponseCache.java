@@ -0,0 +1,156 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Encoded JSON responses of the read endpoints, keyed by manager and query
+ * and tagged with the collection version they were encoded at. An entry is
+ * only returned while its manager is still at that version, so any mutation
+ * invalidates every entry of its manager, and a repeated read of an unchanged
+ * collection costs a map lookup and a copy of the bytes instead of a list copy
+ * and serialization.
+ *
+ * The entries take at most {@code todo.cache.max-bytes} (default 64 MB; 0
+ * turns the cache off). When a new entry goes over the limit, the entries of
+ * changed collections are dropped first, then the least recently used ones.
+ * A response larger than half the limit is not cached, so one huge list does
+ * not push out every other entry.
+ */
+@Component
+class TaskResponseCache {
+    static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    // Approximate size of an entry besides its bytes: key, query and map node
+    private static final int ENTRY_OVERHEAD = 128;
+    // Eviction frees space down to this share of the limit, so it does not run on every miss
+    private static final double EVICTION_TARGET = 0.9;
+
+    private final long maxBytes;
+    private final ObjectMapper mapper;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    TaskResponseCache(@Value("${todo.cache.max-bytes:" + DEFAULT_MAX_BYTES + "}") long maxBytes,
+                      ObjectMapper mapper, MeterRegistry registry) {
+        this.maxBytes = maxBytes;
+        this.mapper = mapper;
+        FunctionCounter.builder("todo.response.cache.requests", hits, LongAdder::sum)
+            .description("Reads answered from the response cache")
+            .tag("result", "hit")
+            .register(registry);
+        FunctionCounter.builder("todo.response.cache.requests", misses, LongAdder::sum)
+            .description("Reads answered from the response cache")
+            .tag("result", "miss")
+            .register(registry);
+        Gauge.builder("todo.response.cache.size", size, AtomicLong::get)
+            .description("Approximate memory taken by cached responses")
+            .baseUnit("bytes")
+            .register(registry);
+    }
+
+    /**
+     * Returns the encoded response for a query, encoding and caching it if
+     * there is no entry for the manager's version.
+     *
+     * @param manager The manager the query reads
+     * @param query Identifies the endpoint and every parameter that affects the response
+     * @param version The manager's version, read before the response is built
+     * @param response Builds the response to encode
+     * @return The JSON bytes
+     * @throws IllegalArgumentException if {@code response} rejects the query
+     */
+    byte[] get(ToDoManager manager, String query, long version, Supplier<?> response) {
+        Key key = new Key(manager, query);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.version == version) {
+            entry.lastUsed = System.nanoTime();
+            hits.increment();
+            return entry.bytes;
+        }
+        misses.increment();
+        byte[] bytes;
+        try {
+            bytes = mapper.writeValueAsBytes(response.get());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to encode the response to " + query, e);
+        }
+        long entrySize = (long) bytes.length + ENTRY_OVERHEAD;
+        if (entrySize <= maxBytes / 2) {
+            Entry added = new Entry(version, bytes, entrySize);
+            Entry previous = entries.put(key, added);
+            if (size.addAndGet(entrySize - (previous != null ? previous.size : 0)) > maxBytes) {
+                evict();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns the approximate memory taken by the cached responses.
+     *
+     * @return The size in bytes
+     */
+    long size() {
+        return size.get();
+    }
+
+    private synchronized void evict() {
+        long target = (long) (maxBytes * EVICTION_TARGET);
+        if (size.get() <= target) {
+            return;
+        }
+        List<Map.Entry<Key, Entry>> current = new ArrayList<>();
+        for (Map.Entry<Key, Entry> cached : entries.entrySet()) {
+            if (cached.getValue().version != cached.getKey().manager().getVersion()) {
+                remove(cached.getKey(), cached.getValue());
+            } else {
+                current.add(cached);
+            }
+        }
+        current.sort(Comparator.comparingLong(cached -> cached.getValue().lastUsed));
+        for (int i = 0; i < current.size() && size.get() > target; i++) {
+            remove(current.get(i).getKey(), current.get(i).getValue());
+        }
+    }
+
+    private void remove(Key key, Entry entry) {
+        if (entries.remove(key, entry)) {
+            size.addAndGet(-entry.size);
+        }
+    }
+
+    private record Key(ToDoManager manager, String query) {
+    }
+
+    private static final class Entry {
+        final long version;
+        final byte[] bytes;
+        final long size;
+        volatile long lastUsed = System.nanoTime();
+
+        Entry(long version, byte[] bytes, long size) {
+            this.version = version;
+            this.bytes = bytes;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Inverted index over task descriptions, maintained by {@link ToDoManager}
+ * on every mutation.
+ *
+ * Descriptions are split into lower-case words of letters and digits. Each
+ * word maps to a sorted list of the IDs of tasks containing it, and the words
+ * are kept in a sorted dictionary so a query word can be matched as a prefix.
+ * A task matches a query when every query word is a prefix of one of its
+ * words. Each query word scores the inverse document frequency of the best
+ * word it matches, scaled by how much of that word it covers, so rare words
+ * and whole-word matches rank first; equal scores rank newer tasks first.
+ *
+ * Queries are driven by the query word with the fewest matching tasks and
+ * walk its IDs from newest to oldest, checking the other words by binary
+ * search. The walk stops as soon as no remaining task can enter the top
+ * results, so a query for a common word does not visit every task holding it.
+ */
+final class TaskSearchIndex {
+    /** Largest number of dictionary words a single query word expands to. */
+    static final int MAX_EXPANSIONS = 64;
+
+    private final ConcurrentSkipListMap<String, Postings> terms = new ConcurrentSkipListMap<>();
+    private final AtomicInteger documents = new AtomicInteger();
+
+    /**
+     * Indexes a task description.
+     *
+     * @param id The task ID
+     * @param description The description to index
+     */
+    void add(int id, String description) {
+        for (String term : tokenize(description)) {
+            while (true) {
+                Postings postings = terms.computeIfAbsent(term, key -> new Postings());
+                if (postings.add(id)) {
+                    break;
+                }
+                // Lost a race with the removal of an empty list; retry with a fresh one
+            }
+        }
+        documents.incrementAndGet();
+    }
+
+    /**
+     * Starts indexing many descriptions at once, as recovery does. The loader
+     * groups the IDs of each word in a plain hash map and builds each word's
+     * list in one go, rather than copying its blocks as {@link #add} would,
+     * then fills the dictionary in word order. The index must be empty and
+     * unused until {@link Loader#finish} returns.
+     *
+     * @return A loader taking descriptions in ascending ID order
+     */
+    Loader loader() {
+        return new Loader();
+    }
+
+    /**
+     * Removes a task description from the index.
+     *
+     * @param id The task ID
+     * @param description The description the task was indexed with
+     */
+    void remove(int id, String description) {
+        for (String term : tokenize(description)) {
+            Postings postings = terms.get(term);
+            if (postings != null && postings.remove(id)) {
+                terms.remove(term, postings);
+            }
+        }
+        documents.decrementAndGet();
+    }
+
+    /**
+     * Replaces the indexed description of a task.
+     *
+     * @param id The task ID
+     * @param oldDescription The description the task was indexed with
+     * @param newDescription The new description
+     */
+    void replace(int id, String oldDescription, String newDescription) {
+        if (!oldDescription.equals(newDescription)) {
+            remove(id, oldDescription);
+            add(id, newDescription);
+        }
+    }
+
+    /**
+     * Removes every task from the index.
+     */
+    void clear() {
+        terms.clear();
+        documents.set(0);
+    }
+
+    /**
+     * Finds the best-ranked tasks matching a query.
+     *
+     * @param query The words to search for; each one may be a word prefix
+     * @param limit The maximum number of results
+     * @return The matching task IDs and scores, best first
+     */
+    List<Hit> search(String query, int limit) {
+        List<String> words = tokenize(query);
+        if (words.isEmpty()) {
+            return List.of();
+        }
+        int total = Math.max(documents.get(), 1);
+        Expansion[][] expansions = new Expansion[words.size()][];
+        int driver = 0;
+        long driverCount = Long.MAX_VALUE;
+        for (int i = 0; i < words.size(); i++) {
+            expansions[i] = expand(words.get(i), total);
+            if (expansions[i].length == 0) {
+                return List.of();
+            }
+            long count = 0;
+            for (Expansion expansion : expansions[i]) {
+                count += expansion.postings.size();
+            }
+            if (count < driverCount) {
+                driver = i;
+                driverCount = count;
+            }
+        }
+        double othersBest = 0;
+        for (int i = 0; i < expansions.length; i++) {
+            if (i != driver) {
+                othersBest += expansions[i][0].weight;
+            }
+        }
+
+        // Min-heap of the best hits so far; the root is the first to be displaced
+        Comparator<Hit> rank = Comparator.comparingDouble(Hit::score).thenComparingInt(Hit::id);
+        PriorityQueue<Hit> best = new PriorityQueue<>(limit + 1, rank);
+        Expansion[] driving = expansions[driver];
+        for (int e = 0; e < driving.length; e++) {
+            double bound = driving[e].weight + othersBest;
+            if (best.size() == limit && bound < best.peek().score()) {
+                break;
+            }
+            Postings.View postings = driving[e].postings;
+            walk:
+            for (int b = postings.blocks().length - 1; b >= 0; b--) {
+                int[] block = postings.blocks()[b];
+                candidates:
+                for (int c = postings.count(b) - 1; c >= 0; c--) {
+                    int id = block[c];
+                    if (best.size() == limit && (bound < best.peek().score()
+                            || bound == best.peek().score() && id < best.peek().id())) {
+                        break walk; // every remaining candidate scores at most as well and is older
+                    }
+                    for (int earlier = 0; earlier < e; earlier++) {
+                        if (driving[earlier].postings.contains(id)) {
+                            continue candidates; // already scored through a better word
+                        }
+                    }
+                    double score = driving[e].weight;
+                    for (int i = 0; i < expansions.length; i++) {
+                        if (i != driver) {
+                            Expansion match = firstContaining(expansions[i], id);
+                            if (match == null) {
+                                continue candidates;
+                            }
+                            score += match.weight;
+                        }
+                    }
+                    Hit hit = new Hit(id, score);
+                    if (best.size() < limit) {
+                        best.add(hit);
+                    } else if (rank.compare(hit, best.peek()) > 0) {
+                        best.poll();
+                        best.add(hit);
+                    }
+                }
+            }
+        }
+
+        List<Hit> hits = new ArrayList<>(best);
+        hits.sort(rank.reversed());
+        return hits;
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits.
+     *
+     * @param text The text to split
+     * @return The distinct words, in order of first appearance
+     */
+    static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String word = text.substring(start, i).toLowerCase(Locale.ROOT);
+                if (!words.contains(word)) {
+                    words.add(word);
+                }
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Returns the dictionary words starting with a query word, best weight first.
+     */
+    private Expansion[] expand(String word, int total) {
+        List<Expansion> matches = new ArrayList<>();
+        ConcurrentNavigableMap<String, Postings> range = terms.tailMap(word, true);
+        for (Map.Entry<String, Postings> entry : range.entrySet()) {
+            if (!entry.getKey().startsWith(word) || matches.size() == MAX_EXPANSIONS) {
+                break;
+            }
+            Postings.View postings = entry.getValue().view;
+            if (postings.size() > 0) {
+                double idf = Math.log(1 + (double) total / postings.size());
+                double coverage = (double) word.length() / entry.getKey().length();
+                matches.add(new Expansion(idf * coverage, postings));
+            }
+        }
+        matches.sort(Comparator.comparingDouble((Expansion expansion) -> expansion.weight).reversed());
+        return matches.toArray(new Expansion[0]);
+    }
+
+    private static Expansion firstContaining(Expansion[] expansions, int id) {
+        for (Expansion expansion : expansions) {
+            if (expansion.postings.contains(id)) {
+                return expansion;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Descriptions to add to an empty index in bulk; see {@link #loader}.
+     */
+    final class Loader {
+        private final HashMap<String, IdList> words = new HashMap<>();
+        private int count;
+
+        /**
+         * Collects a task description.
+         *
+         * @param id The task ID, above every ID collected so far
+         * @param description The description to index
+         */
+        void add(int id, String description) {
+            for (String word : tokenize(description)) {
+                words.computeIfAbsent(word, key -> new IdList()).add(id);
+            }
+            count++;
+        }
+
+        /**
+         * Adds every collected description to the index.
+         */
+        void finish() {
+            String[] sorted = words.keySet().toArray(new String[0]);
+            Arrays.sort(sorted);
+            for (String word : sorted) {
+                IdList list = words.get(word);
+                terms.put(word, Postings.of(list.ids, list.size));
+            }
+            documents.addAndGet(count);
+            words.clear();
+        }
+    }
+
+    /**
+     * Growable list of the IDs holding a word, for a {@link Loader}.
+     */
+    private static final class IdList {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * A task ID and its relevance score.
+     *
+     * @param id The task ID
+     * @param score The relevance score; higher is better
+     */
+    record Hit(int id, double score) {
+    }
+
+    /**
+     * A dictionary word matched by a query word, with the IDs holding it.
+     */
+    private record Expansion(double weight, Postings.View postings) {
+    }
+
+    /**
+     * Sorted IDs of the tasks containing one word, split into blocks so that
+     * a change copies one block of at most a few hundred IDs rather than every
+     * ID holding a common word.
+     *
+     * Readers use the published view without locking. Every block but the
+     * last is immutable and exactly as long as its IDs. New highest IDs are
+     * appended to spare room in the last block past the end of the current
+     * view; any other change copies the affected block. Removing the highest
+     * ID only shrinks the view, so a reader still holding the old view may
+     * see a newer ID in that slot, which also holds the word and keeps the
+     * IDs sorted.
+     */
+    private static final class Postings {
+        private static final int BLOCK_SIZE = 128;
+
+        private volatile View view;
+        private boolean retired;
+
+        Postings() {
+            this(new View(new int[0][], 0, 0));
+        }
+
+        private Postings(View view) {
+            this.view = view;
+        }
+
+        /**
+         * Creates a list holding the given IDs.
+         *
+         * @param ids The IDs in ascending order
+         * @param count The number of IDs, at least 1
+         */
+        static Postings of(int[] ids, int count) {
+            int[][] blocks = new int[(count + BLOCK_SIZE - 1) / BLOCK_SIZE][];
+            for (int b = 0; b < blocks.length; b++) {
+                // Every block is full but the last, which is padded with room to append
+                int capacity = blocks.length == 1 ? tailCapacity(count) : BLOCK_SIZE;
+                blocks[b] = Arrays.copyOfRange(ids, b * BLOCK_SIZE, b * BLOCK_SIZE + capacity);
+            }
+            return new Postings(new View(blocks, count - (blocks.length - 1) * BLOCK_SIZE, count));
+        }
+
+        /**
+         * Adds an ID, unless this list was retired because it became empty.
+         *
+         * @return false if the list is retired and must be replaced
+         */
+        synchronized boolean add(int id) {
+            if (retired) {
+                return false;
+            }
+            View current = view;
+            int[][] blocks = current.blocks;
+            int last = blocks.length - 1;
+            if (last < 0 || blocks[last][current.tailCount - 1] < id) {
+                if (last >= 0 && current.tailCount < blocks[last].length) {
+                    blocks[last][current.tailCount] = id;
+                    view = new View(blocks, current.tailCount + 1, current.size + 1);
+                } else if (last >= 0 && blocks[last].length < BLOCK_SIZE) {
+                    int[] grown = Arrays.copyOf(blocks[last], tailCapacity(current.tailCount + 1));
+                    grown[current.tailCount] = id;
+                    int[][] replaced = blocks.clone();
+                    replaced[last] = grown;
+                    view = new View(replaced, current.tailCount + 1, current.size + 1);
+                } else {
+                    int[] block = new int[last < 0 ? tailCapacity(1) : BLOCK_SIZE];
+                    block[0] = id;
+                    int[][] grown = Arrays.copyOf(blocks, blocks.length + 1);
+                    grown[blocks.length] = block;
+                    view = new View(grown, 1, current.size + 1);
+                }
+                return true;
+            }
+            int b = Math.max(current.blockFor(id), 0);
+            int count = current.count(b);
+            int index = Arrays.binarySearch(blocks[b], 0, count, id);
+            if (index < 0) {
+                int insert = -index - 1;
+                int[] copy = new int[b == last ? tailCapacity(count + 1) : count + 1];
+                System.arraycopy(blocks[b], 0, copy, 0, insert);
+                copy[insert] = id;
+                System.arraycopy(blocks[b], insert, copy, insert + 1, count - insert);
+                replace(current, b, copy, count + 1);
+            }
+            return true;
+        }
+
+        /**
+         * Removes an ID.
+         *
+         * @return true if the list became empty and was retired
+         */
+        synchronized boolean remove(int id) {
+            View current = view;
+            int b = current.blockFor(id);
+            if (b < 0) {
+                return false;
+            }
+            int[] block = current.blocks[b];
+            int count = current.count(b);
+            int index = Arrays.binarySearch(block, 0, count, id);
+            if (index < 0) {
+                return false;
+            }
+            boolean tail = b == current.blocks.length - 1;
+            if (tail && index == count - 1 && count > 1) {
+                view = new View(current.blocks, count - 1, current.size - 1);
+            } else {
+                int[] copy = new int[tail ? tailCapacity(count - 1) : count - 1];
+                System.arraycopy(block, 0, copy, 0, index);
+                System.arraycopy(block, index + 1, copy, index, count - index - 1);
+                replace(current, b, copy, count - 1);
+            }
+            retired = view.size == 0;
+            return retired;
+        }
+
+        /**
+         * Returns the length of a last block holding {@code count} IDs. The
+         * block of a short list grows by doubling, so the many words held by
+         * a task or two do not take a whole block each.
+         */
+        private static int tailCapacity(int count) {
+            return Math.max(count, Math.min(BLOCK_SIZE, Integer.highestOneBit(Math.max(count, 2) * 2 - 1)));
+        }
+
+        /**
+         * Publishes a view in which block {@code b} is replaced by {@code block},
+         * holding {@code count} IDs. Empty blocks are dropped and oversized
+         * blocks are split in two.
+         */
+        private void replace(View current, int b, int[] block, int count) {
+            int[][] blocks = current.blocks;
+            boolean tail = b == blocks.length - 1;
+            int size = current.size - current.count(b) + count;
+            int[][] replaced;
+            int tailCount = current.tailCount;
+            if (count == 0) {
+                replaced = new int[blocks.length - 1][];
+                System.arraycopy(blocks, 0, replaced, 0, b);
+                System.arraycopy(blocks, b + 1, replaced, b, blocks.length - b - 1);
+                if (tail && replaced.length > 0) {
+                    tailCount = replaced[replaced.length - 1].length;
+                }
+            } else if (count > 2 * BLOCK_SIZE) {
+                replaced = new int[blocks.length + 1][];
+                System.arraycopy(blocks, 0, replaced, 0, b);
+                replaced[b] = Arrays.copyOfRange(block, 0, count / 2);
+                replaced[b + 1] = Arrays.copyOfRange(block, count / 2, count);
+                System.arraycopy(blocks, b + 1, replaced, b + 2, blocks.length - b - 1);
+                if (tail) {
+                    tailCount = count - count / 2;
+                }
+            } else {
+                replaced = blocks.clone();
+                replaced[b] = block;
+                if (tail) {
+                    tailCount = count;
+                }
+            }
+            view = new View(replaced, tailCount, size);
+        }
+
+        /**
+         * An immutable view of the blocks; only the last block may be partly filled.
+         */
+        private record View(int[][] blocks, int tailCount, int size) {
+
+            int count(int block) {
+                return block == blocks.length - 1 ? tailCount : blocks[block].length;
+            }
+
+            boolean contains(int id) {
+                int block = blockFor(id);
+                return block >= 0 && Arrays.binarySearch(blocks[block], 0, count(block), id) >= 0;
+            }
+
+            /**
+             * Returns the last block whose first ID is at most {@code id}, or -1.
+             */
+            int blockFor(int id) {
+                int low = 0;
+                int high = blocks.length - 1;
+                int found = -1;
+                while (low <= high) {
+                    int middle = (low + high) >>> 1;
+                    if (blocks[middle][0] <= id) {
+                        found = middle;
+                        low = middle + 1;
+                    } else {
+                        high = middle - 1;
+                    }
+                }
+                return found;
+            }
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.zip.CRC32C;
+
+/**
+ * Compact binary snapshot of every task, read back through memory-mapped I/O.
+ *
+ * A snapshot records the log sequence number it covers; on recovery only log
+ * records after that number need to be replayed. The file starts with a fixed
+ * header followed by one length-prefixed record per task:
+ * <pre>
+ * header: [int magic][int format][long lsn][int nextId][int crc32c of records][long count]
+ * record: [int length][int id][long version][long createdAt][long updatedAt][long dueAt]
+ *         [int statusLength][status][int descriptionLength][description]
+ * </pre>
+ * A snapshot in any other format, or whose records do not have exactly this
+ * layout, is rejected.
+ * Snapshots are written to a temporary file and atomically renamed into place,
+ * so a crash while writing never leaves a partial snapshot behind.
+ */
+final class TaskSnapshot implements Closeable {
+    private static final int MAGIC = 0x54445331; // "TDS1"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 32;
+    // Record bytes after the length, besides the status and description
+    private static final int FIXED_RECORD_BYTES = 4 + 4 * 8 + 4 + 4;
+    private static final int WRITE_BUFFER_BYTES = 1024 * 1024;
+    private static final long MAP_WINDOW_BYTES = 256L * 1024 * 1024;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".snap";
+
+    private final Path file;
+    private final FileChannel channel;
+    private final long lsn;
+    private final int nextId;
+    private final int checksum;
+    private final long count;
+
+    private TaskSnapshot(Path file, FileChannel channel, ByteBuffer header) throws IOException {
+        if (header.getInt(0) != MAGIC || header.getInt(4) != FORMAT) {
+            throw new IOException("Snapshot " + file + " has an unsupported format");
+        }
+        this.file = file;
+        this.channel = channel;
+        this.lsn = header.getLong(8);
+        this.nextId = header.getInt(16);
+        this.checksum = header.getInt(20);
+        this.count = header.getLong(24);
+    }
+
+    /**
+     * Opens the most recent snapshot in a directory.
+     *
+     * @param directory The storage directory
+     * @return The latest snapshot, or null if there is none
+     * @throws IOException if the snapshot cannot be opened
+     */
+    static TaskSnapshot openLatest(Path directory) throws IOException {
+        List<Path> snapshots = list(directory);
+        if (snapshots.isEmpty()) {
+            return null;
+        }
+        Path file = snapshots.get(snapshots.size() - 1);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading until the header is complete
+            }
+            if (header.hasRemaining()) {
+                throw new IOException("Snapshot " + file + " is truncated");
+            }
+            return new TaskSnapshot(file, channel, header);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the last log sequence number reflected in this snapshot.
+     *
+     * @return The snapshot's log sequence number
+     */
+    long lsn() {
+        return lsn;
+    }
+
+    /**
+     * Returns the task ID counter at the time the snapshot was taken.
+     *
+     * @return The next task ID
+     */
+    int nextId() {
+        return nextId;
+    }
+
+    /**
+     * Returns the number of tasks in the snapshot.
+     *
+     * @return The task count
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Decodes every task in the snapshot, mapping the file in windows so that
+     * snapshots larger than 2 GB can be read. The whole file is checked before
+     * the first task is decoded, so a damaged snapshot passes no task on.
+     *
+     * @param consumer Receives each task in ID order
+     * @throws IOException if the file is truncated, has a record of another
+     *         layout or fails its checksum
+     */
+    void forEach(Consumer<Task> consumer) throws IOException {
+        CRC32C crc = new CRC32C();
+        walk((window, offset, length) -> crc.update(window.slice(offset, 4 + length)));
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Snapshot " + file + " failed its checksum");
+        }
+
+        byte[][] scratch = {new byte[256]};
+        String[] lastStatus = {""};
+        walk((window, offset, length) -> {
+            int cursor = offset + 4;
+            int id = window.getInt(cursor);
+            long version = window.getLong(cursor + 4);
+            long createdAt = window.getLong(cursor + 12);
+            long updatedAt = window.getLong(cursor + 20);
+            long dueAt = window.getLong(cursor + 28);
+            cursor += 36;
+            // Tasks mostly share a few statuses, so reuse the last one rather than copy it per task
+            int statusLength = window.getInt(cursor);
+            String status = lastStatus[0].length() == statusLength && matches(window, cursor + 4, lastStatus[0])
+                ? lastStatus[0] : (lastStatus[0] = getString(window, cursor, scratch));
+            cursor += 4 + statusLength;
+            String description = getString(window, cursor, scratch);
+            consumer.accept(new Task(id, description, status, version, createdAt, updatedAt, dueAt));
+        });
+    }
+
+    /**
+     * Visits every record in turn, checking that each lies within the file
+     * and has exactly the snapshot's record layout.
+     */
+    private void walk(RecordVisitor visitor) throws IOException {
+        long size = channel.size();
+        long position = HEADER_BYTES;
+        long windowStart = position;
+        MappedByteBuffer window = map(position, size);
+        for (long i = 0; i < count; i++) {
+            int offset = (int) (position - windowStart);
+            if (offset + 4 > window.limit() || offset + 4 + window.getInt(offset) > window.limit()) {
+                windowStart = position;
+                window = map(position, size);
+                offset = 0;
+                if (4 > window.limit() || 4 + window.getInt(0) > window.limit()) {
+                    throw new IOException("Snapshot " + file + " is truncated");
+                }
+            }
+            int length = window.getInt(offset);
+            if (length < FIXED_RECORD_BYTES) {
+                throw unknownLayout(position);
+            }
+            int end = offset + 4 + length;
+            int statusAt = offset + 4 + 36;
+            int statusLength = window.getInt(statusAt);
+            if (statusLength < 0 || statusLength > end - statusAt - 8) {
+                throw unknownLayout(position);
+            }
+            int descriptionAt = statusAt + 4 + statusLength;
+            if (window.getInt(descriptionAt) != end - descriptionAt - 4) {
+                throw unknownLayout(position);
+            }
+            visitor.visit(window, offset, length);
+            position += 4 + length;
+        }
+    }
+
+    private static boolean matches(MappedByteBuffer window, int at, String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            if (window.get(at + i) != (byte) ascii.charAt(i) || ascii.charAt(i) > 0x7F) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String getString(MappedByteBuffer window, int at, byte[][] scratch) {
+        int length = window.getInt(at);
+        if (scratch[0].length < length) {
+            scratch[0] = new byte[length];
+        }
+        window.get(at + 4, scratch[0], 0, length);
+        return new String(scratch[0], 0, length, StandardCharsets.UTF_8);
+    }
+
+    private IOException unknownLayout(long position) {
+        return new IOException("Snapshot " + file + " has a record with an unknown layout at offset " + position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * Writes a snapshot and atomically publishes it, then deletes older snapshots.
+     *
+     * @param directory The storage directory
+     * @param lsn The last log sequence number the tasks reflect
+     * @param tasks The tasks to write, in ID order
+     * @param nextId Supplies the task ID counter once every task has been written
+     * @return The published snapshot file
+     * @throws IOException if the snapshot cannot be written
+     */
+    static Path write(Path directory, long lsn, Iterator<Task> tasks, IntSupplier nextId)
+            throws IOException {
+        Path target = directory.resolve(String.format("%s%020d%s", PREFIX, lsn, SUFFIX));
+        Path temporary = directory.resolve(target.getFileName() + ".tmp");
+        CRC32C crc = new CRC32C();
+        long count = 0;
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_BYTES);
+            buffer.position(HEADER_BYTES);
+            while (tasks.hasNext()) {
+                Task task = tasks.next();
+                byte[] status = task.getStatus().getBytes(StandardCharsets.UTF_8);
+                byte[] description = task.getDescription().getBytes(StandardCharsets.UTF_8);
+                int length = FIXED_RECORD_BYTES + status.length + description.length;
+                if (buffer.remaining() < 4 + length) {
+                    buffer = drain(channel, buffer, 4 + length);
+                }
+                int start = buffer.position();
+                buffer.putInt(length).putInt(task.getId()).putLong(task.getVersion())
+                    .putLong(task.getCreatedAt()).putLong(task.getUpdatedAt()).putLong(task.getDueAt())
+                    .putInt(status.length).put(status)
+                    .putInt(description.length).put(description);
+                crc.update(buffer.slice(start, 4 + length));
+                count++;
+            }
+            drain(channel, buffer, 0);
+
+            // Read the ID counter last so it is above every ID written
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES)
+                .putInt(MAGIC).putInt(FORMAT).putLong(lsn).putInt(nextId.getAsInt())
+                .putInt((int) crc.getValue()).putLong(count)
+                .flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        StorageFiles.forceDirectory(directory);
+
+        for (Path older : list(directory)) {
+            if (!older.equals(target)) {
+                Files.deleteIfExists(older);
+            }
+        }
+        return target;
+    }
+
+    private static ByteBuffer drain(FileChannel channel, ByteBuffer buffer, int needed) throws IOException {
+        // The first drain also writes the space reserved for the header, which is filled in last
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return buffer.capacity() >= needed ? buffer : ByteBuffer.allocateDirect(needed);
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(MappedByteBuffer window, int offset, int length) throws IOException;
+    }
+
+    private MappedByteBuffer map(long position, long size) throws IOException {
+        return channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_WINDOW_BYTES, size - position));
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> snapshots = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            files.forEach(snapshots::add);
+        }
+        snapshots.sort(null);
+        return snapshots;
+    }
+}
@@ -0,0 +1,90 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-status task counters maintained by {@link ToDoManager} on every mutation.
+ * Reading the statistics costs one step per distinct status instead of a scan
+ * over every task.
+ */
+final class TaskStatistics {
+    static final String COMPLETED = "Completed";
+
+    /** The statuses the manager sets itself. */
+    static final Set<String> BUILT_IN = Set.of("Pending", COMPLETED, ToDoManager.OVERDUE);
+
+    private final ConcurrentHashMap<String, Long> byStatus = new ConcurrentHashMap<>();
+    private final LongAdder completed = new LongAdder();
+
+    /**
+     * Records a new task with the given status.
+     *
+     * @param status The status of the added task
+     */
+    void added(String status) {
+        adjust(status, 1);
+    }
+
+    /**
+     * Records the removal of a task with the given status.
+     *
+     * @param status The status the task had when it was removed
+     */
+    void removed(String status) {
+        adjust(status, -1);
+    }
+
+    /**
+     * Records a status change of a single task.
+     *
+     * @param oldStatus The status before the change
+     * @param newStatus The status after the change
+     */
+    void changed(String oldStatus, String newStatus) {
+        if (!oldStatus.equals(newStatus)) {
+            adjust(oldStatus, -1);
+            adjust(newStatus, 1);
+        }
+    }
+
+    /**
+     * Resets every counter to zero.
+     */
+    void reset() {
+        byStatus.clear();
+        completed.reset();
+    }
+
+    /**
+     * Returns the number of tasks whose status is "Completed", ignoring case.
+     *
+     * @return The number of completed tasks
+     */
+    long completedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * Returns the number of tasks per status, sorted by status name.
+     *
+     * @return A copy of the current counters; statuses with no tasks are omitted
+     */
+    Map<String, Long> countsByStatus() {
+        return new TreeMap<>(byStatus);
+    }
+
+    private void adjust(String status, long delta) {
+        // Remove the entry when it drops to zero so free-form statuses do not accumulate
+        byStatus.compute(status, (key, count) -> {
+            long updated = (count == null ? 0 : count) + delta;
+            return updated == 0 ? null : updated;
+        });
+        if (COMPLETED.equalsIgnoreCase(status)) {
+            completed.add(delta);
+        }
+    }
+}
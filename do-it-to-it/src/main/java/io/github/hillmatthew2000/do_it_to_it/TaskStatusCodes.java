@@ -0,0 +1,206 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dictionary of the statuses in use, each with a {@code short} code, for the
+ * per-task status columns of {@link TaskStatusIndex} and
+ * {@link CompactTaskStore}. Code 0 is reserved for "no task", and codes
+ * above {@link Short#MAX_VALUE} are stored as negative {@code short}s.
+ *
+ * Every stored code holds a reference to its status. Once the last one is
+ * released the code is freed and handed to the next new status, so the
+ * dictionary grows with the number of statuses in use at once rather than
+ * with every status ever set. Taking a reference to a status in use is a
+ * lookup and a compare-and-set on its counter; registering and freeing codes
+ * lock the dictionary. A counter that dropped to zero is only freed if it is
+ * still zero under the lock, so a status taken again in between keeps its
+ * code.
+ *
+ * A dictionary may also limit how many statuses, besides a few exempt ones,
+ * are in use at once. The limit is checked under the same lock that
+ * registers and frees codes, so concurrent callers cannot pass it together.
+ */
+final class TaskStatusCodes {
+    private final int maxCodes;
+    private final int limit;
+    private final Set<String> exempt;
+    private final ConcurrentHashMap<String, Short> codes = new ConcurrentHashMap<>();
+    // Indexed by code and copied on write; the counters are shared between copies
+    private volatile String[] names = new String[1];
+    private volatile AtomicInteger[] references = {new AtomicInteger()};
+    // Guarded by this
+    private final ArrayDeque<Short> free = new ArrayDeque<>();
+    private int limited;
+
+    /**
+     * Creates an empty dictionary without a limit below its capacity.
+     *
+     * @param maxCodes The most statuses that may be in use at once, at most 65,535
+     */
+    TaskStatusCodes(int maxCodes) {
+        this(maxCodes, maxCodes, Set.of());
+    }
+
+    /**
+     * Creates an empty dictionary that limits the statuses {@link #acquire}
+     * may bring into use.
+     *
+     * @param maxCodes The most statuses that may be in use at once, at most 65,535
+     * @param limit The most statuses, besides the exempt ones, that {@link #acquire} lets be in use
+     * @param exempt Statuses that do not count towards the limit
+     */
+    TaskStatusCodes(int maxCodes, int limit, Set<String> exempt) {
+        this.maxCodes = maxCodes;
+        this.limit = limit;
+        this.exempt = Set.copyOf(exempt);
+    }
+
+    /**
+     * Takes a reference to a status, registering it if it is not in use.
+     *
+     * @param status The status
+     * @return The status's code, which stays assigned to it until the reference is released
+     * @throws IllegalArgumentException if the status is new, not exempt, and the
+     *         limit of statuses is in use
+     * @throws IllegalStateException if the status is new and {@code maxCodes} statuses are in use
+     */
+    short acquire(String status) {
+        return acquire(status, true);
+    }
+
+    /**
+     * Takes a reference to a status as {@link #acquire} does, but past the
+     * limit, for statuses that were already in use when they were stored.
+     *
+     * @param status The status
+     * @return The status's code
+     * @throws IllegalStateException if the status is new and {@code maxCodes} statuses are in use
+     */
+    short acquireRecovered(String status) {
+        return acquire(status, false);
+    }
+
+    private short acquire(String status, boolean enforceLimit) {
+        Short code = codes.get(status);
+        if (code != null) {
+            AtomicInteger count = references[code & 0xFFFF];
+            for (int n = count.get(); n > 0; n = count.get()) {
+                if (count.compareAndSet(n, n + 1)) {
+                    return code;
+                }
+            }
+        }
+        return register(status, enforceLimit);
+    }
+
+    /**
+     * Releases a reference taken by {@link #acquire}, freeing the code with
+     * the last one.
+     *
+     * @param code The status's code
+     */
+    void release(short code) {
+        if (references[code & 0xFFFF].decrementAndGet() == 0) {
+            free(code);
+        }
+    }
+
+    /**
+     * Returns the code of a status, without taking a reference.
+     *
+     * @param status The status
+     * @return The status's code, or 0 if it is not in use
+     */
+    short lookup(String status) {
+        Short code = codes.get(status);
+        return code != null ? code : 0;
+    }
+
+    /**
+     * Returns the status a code stands for.
+     *
+     * @param code A code that is, or was, in use
+     * @return The status, or null if the code was never registered
+     */
+    String name(short code) {
+        String[] current = names;
+        int index = code & 0xFFFF;
+        return index < current.length ? current[index] : null;
+    }
+
+    /**
+     * Returns the number of codes ever registered, including freed ones.
+     *
+     * @return One more than the highest code
+     */
+    int capacity() {
+        return names.length;
+    }
+
+    /**
+     * Frees every code. Must not run concurrently with the other methods.
+     */
+    synchronized void clear() {
+        codes.clear();
+        free.clear();
+        limited = 0;
+        names = new String[1];
+        references = new AtomicInteger[] {new AtomicInteger()};
+    }
+
+    private synchronized short register(String status, boolean enforceLimit) {
+        Short code = codes.get(status);
+        if (code != null) {
+            // Its last reference may have been released, but the code is not freed yet
+            references[code & 0xFFFF].incrementAndGet();
+            return code;
+        }
+        boolean counted = !exempt.contains(status);
+        if (counted && enforceLimit && limited >= limit) {
+            throw new IllegalArgumentException("Too many distinct task statuses: at most " + limit + " may be in use");
+        }
+        short registered;
+        String[] grownNames;
+        if (!free.isEmpty()) {
+            registered = free.pop();
+            grownNames = names.clone();
+        } else {
+            if (names.length > maxCodes) {
+                throw new IllegalStateException("Too many distinct task statuses");
+            }
+            registered = (short) names.length;
+            grownNames = Arrays.copyOf(names, names.length + 1);
+            AtomicInteger[] grownReferences = Arrays.copyOf(references, names.length + 1);
+            grownReferences[names.length] = new AtomicInteger();
+            references = grownReferences;
+        }
+        references[registered & 0xFFFF].set(1);
+        // Publish the name before the code so readers can always resolve a stored code
+        grownNames[registered & 0xFFFF] = status;
+        names = grownNames;
+        codes.put(status, registered);
+        if (counted) {
+            limited++;
+        }
+        return registered;
+    }
+
+    private synchronized void free(short code) {
+        // Skip codes taken again, or already freed by another release, since the count dropped
+        String status = names[code & 0xFFFF];
+        Short registered = codes.get(status);
+        if (references[code & 0xFFFF].get() != 0 || registered == null || registered != code) {
+            return;
+        }
+        codes.remove(status);
+        free.push(code);
+        if (!exempt.contains(status)) {
+            limited--;
+        }
+    }
+}
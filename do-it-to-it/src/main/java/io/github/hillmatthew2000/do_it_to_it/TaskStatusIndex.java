@@ -0,0 +1,273 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.stream.Collectors;
+
+/**
+ * Secondary index from status to the IDs of the tasks that have it,
+ * maintained by {@link ToDoManager} on every mutation. Statuses are compared
+ * ignoring case, like the status filter of {@link ToDoManager#getTasks}.
+ *
+ * Each status has a {@link TaskIdSet}, so the tasks with a status are walked
+ * in ID order without visiting any other task. Next to the sets, one status
+ * code per ID, in pages of 65,536 IDs, says which set a task is in right now.
+ * A move sets the task's bit in the new set, then switches its code, then
+ * clears the bit in the old set; a walk only returns IDs whose code matches.
+ * Switching the code is a single write, so a reader sees a task under exactly
+ * one status at any moment, never under both or neither. Changes to one ID
+ * must not run concurrently; the manager makes them under the store's lock
+ * for that ID.
+ *
+ * Codes come from a {@link TaskStatusCodes} dictionary. The manager reserves
+ * the code of a task's new status before it makes any other change, so a
+ * status that does not fit fails the mutation before it is logged. Once the
+ * last task leaves a status its code and its emptied set go to the next new
+ * status; a walk that looked the old status up just before then may return
+ * tasks of the new one, which the manager drops by comparing their status.
+ */
+final class TaskStatusIndex {
+    private static final VarHandle CODES = MethodHandles.arrayElementVarHandle(short[].class);
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    // Status code 0 means "no task"; set i belongs to code i
+    private final TaskStatusCodes statusCodes;
+    private volatile TaskIdSet[] sets = new TaskIdSet[1];
+    private volatile short[][] pages = new short[0][];
+
+    /**
+     * Creates an empty index.
+     *
+     * @param maxStatuses The most statuses, besides the built-in ones, that {@link #reserve} lets be in use
+     * @param builtIn Statuses that are always allowed and do not count towards {@code maxStatuses}
+     */
+    TaskStatusIndex(int maxStatuses, Collection<String> builtIn) {
+        statusCodes = new TaskStatusCodes(Short.MAX_VALUE, maxStatuses,
+            builtIn.stream().map(TaskStatusIndex::key).collect(Collectors.toSet()));
+    }
+
+    /**
+     * Takes a reference to the code of a status, for a following
+     * {@link #add(int, short)} or {@link #move(int, short)}, or to give back
+     * with {@link #release} if the change is abandoned. Statuses differing
+     * only in case count once towards the limit.
+     *
+     * @param status The status
+     * @return The status's code
+     * @throws IllegalArgumentException if the status is new and the limit of statuses is in use
+     * @throws IllegalStateException if the status is new and no code is left
+     */
+    short reserve(String status) {
+        return withSet(statusCodes.acquire(key(status)));
+    }
+
+    private short withSet(short code) {
+        TaskIdSet[] current = sets;
+        if (code >= current.length || current[code] == null) {
+            createSet(code);
+        }
+        return code;
+    }
+
+    /**
+     * Gives back a code reserved for a change that was abandoned.
+     *
+     * @param code The code returned by {@link #reserve}
+     */
+    void release(short code) {
+        statusCodes.release(code);
+    }
+
+    /**
+     * Indexes a recovered task, whose status is not limited.
+     *
+     * @param id The task ID
+     * @param status The task's status
+     */
+    void add(int id, String status) {
+        add(id, withSet(statusCodes.acquireRecovered(key(status))));
+    }
+
+    /**
+     * Indexes a new task under a reserved code.
+     *
+     * @param id The task ID
+     * @param code The code reserved for the task's status
+     */
+    void add(int id, short code) {
+        sets[code].add(id);
+        CODES.setRelease(page(id, true), id & (PAGE_SIZE - 1), code);
+    }
+
+    /**
+     * Moves a recovered task to the set of its new status, which is not limited.
+     *
+     * @param id The task ID
+     * @param status The status the task has now
+     */
+    void move(int id, String status) {
+        move(id, withSet(statusCodes.acquireRecovered(key(status))));
+    }
+
+    /**
+     * Moves a task to the set of the status reserved for it, releasing the
+     * code of the status it had.
+     *
+     * @param id The task ID
+     * @param code The code reserved for the task's new status
+     */
+    void move(int id, short code) {
+        short[] page = page(id, true);
+        int slot = id & (PAGE_SIZE - 1);
+        // Only this thread changes the ID's code now
+        short oldCode = page[slot];
+        if (oldCode == code) {
+            statusCodes.release(code);
+            return;
+        }
+        TaskIdSet[] current = sets;
+        current[code].add(id);
+        CODES.setRelease(page, slot, code);
+        if (oldCode != 0) {
+            current[oldCode].remove(id);
+            statusCodes.release(oldCode);
+        }
+    }
+
+    /**
+     * Removes a deleted task from the index.
+     *
+     * @param id The task ID
+     */
+    void remove(int id) {
+        short[] page = page(id, false);
+        int slot = id & (PAGE_SIZE - 1);
+        short code = page != null ? page[slot] : 0;
+        if (code == 0) {
+            return;
+        }
+        CODES.setRelease(page, slot, (short) 0);
+        sets[code].remove(id);
+        statusCodes.release(code);
+    }
+
+    /**
+     * Returns the smallest ID greater than or equal to {@code from} of a task
+     * with the given status.
+     *
+     * @param from The ID to start searching from
+     * @param status The status, ignoring case
+     * @return The next ID, or -1 if there is none
+     */
+    int next(int from, String status) {
+        short code = statusCodes.lookup(key(status));
+        TaskIdSet set = set(code);
+        if (set == null) {
+            return -1;
+        }
+        int id = set.next(from);
+        while (id > 0 && code(id) != code) {
+            id = set.next(id + 1);
+        }
+        return id;
+    }
+
+    /**
+     * Returns the largest ID less than or equal to {@code from} of a task
+     * with the given status.
+     *
+     * @param from The ID to start searching from
+     * @param status The status, ignoring case
+     * @return The previous ID, or -1 if there is none
+     */
+    int previous(int from, String status) {
+        short code = statusCodes.lookup(key(status));
+        TaskIdSet set = set(code);
+        if (set == null) {
+            return -1;
+        }
+        int id = set.previous(from);
+        while (id > 0 && code(id) != code) {
+            id = set.previous(id - 1);
+        }
+        return id;
+    }
+
+    /**
+     * Checks whether the index currently holds a task under the given status.
+     *
+     * @param id The task ID
+     * @param status The status, ignoring case
+     * @return true if the task's current status is {@code status}
+     */
+    boolean contains(int id, String status) {
+        short code = statusCodes.lookup(key(status));
+        return code != 0 && code(id) == code;
+    }
+
+    /**
+     * Removes every task from the index. Must not run concurrently with
+     * other changes to it.
+     */
+    synchronized void clear() {
+        for (TaskIdSet set : sets) {
+            if (set != null) {
+                set.clear();
+            }
+        }
+        pages = new short[0][];
+        statusCodes.clear();
+    }
+
+    private short code(int id) {
+        short[] page = page(id, false);
+        return page == null ? 0 : (short) CODES.getAcquire(page, id & (PAGE_SIZE - 1));
+    }
+
+    private static String key(String status) {
+        // The per-character folding of String.equalsIgnoreCase, so equal keys mean equal statuses
+        StringBuilder key = new StringBuilder(status.length());
+        status.codePoints().forEach(c -> key.appendCodePoint(Character.toLowerCase(Character.toUpperCase(c))));
+        return key.toString();
+    }
+
+    private TaskIdSet set(short code) {
+        TaskIdSet[] current = sets;
+        return code > 0 && code < current.length ? current[code] : null;
+    }
+
+    private synchronized void createSet(short code) {
+        TaskIdSet[] current = sets;
+        if (code < current.length && current[code] != null) {
+            return;
+        }
+        // Copy-on-write, like the page directory
+        TaskIdSet[] grown = Arrays.copyOf(current, Math.max(current.length, code + 1));
+        grown[code] = new TaskIdSet();
+        sets = grown;
+    }
+
+    private short[] page(int id, boolean create) {
+        int pageIndex = id >>> PAGE_BITS;
+        short[][] snapshot = pages;
+        if (pageIndex < snapshot.length && snapshot[pageIndex] != null) {
+            return snapshot[pageIndex];
+        }
+        return create ? createPage(pageIndex) : null;
+    }
+
+    private synchronized short[] createPage(int pageIndex) {
+        short[][] current = pages;
+        if (pageIndex < current.length && current[pageIndex] != null) {
+            return current[pageIndex];
+        }
+        // Copy-on-write so readers always see a fully initialized directory
+        short[][] grown = Arrays.copyOf(current, Math.max(current.length, pageIndex + 1));
+        grown[pageIndex] = new short[PAGE_SIZE];
+        pages = grown;
+        return grown[pageIndex];
+    }
+}
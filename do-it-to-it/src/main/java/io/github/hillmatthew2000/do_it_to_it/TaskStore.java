@@ -0,0 +1,113 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * ID-indexed storage behind {@link ToDoManager}.
+ * Implementations are safe for concurrent use. Operations on the same ID are
+ * atomic with respect to each other, so an update never interleaves with a
+ * removal of the same task.
+ */
+interface TaskStore {
+
+    /**
+     * Returns the task with the given ID.
+     *
+     * @param id The task ID
+     * @return The task, or null if there is none
+     */
+    Task get(int id);
+
+    /**
+     * Stores a task, replacing any task with the same ID.
+     *
+     * @param task The task to store
+     * @return The task that was replaced, or null if there was none
+     */
+    Task put(Task task);
+
+    /**
+     * Removes the task with the given ID.
+     *
+     * @param id The task ID
+     * @return The removed task, or null if there was none
+     */
+    Task remove(int id);
+
+    /**
+     * Removes the task with the given ID if it matches {@code condition},
+     * atomically with respect to other operations on the same ID.
+     *
+     * @param id The task ID
+     * @param condition Decides whether the current task is removed
+     * @return The removed task, or null if there was none or it did not match
+     */
+    Task removeIf(int id, Predicate<? super Task> condition);
+
+    /**
+     * Atomically replaces the task with the given ID by the result of
+     * {@code update}. No other operation on the same ID runs while
+     * {@code update} does, so it may perform side effects that must stay in
+     * step with the change, such as logging it.
+     *
+     * @param id The task ID
+     * @param update Receives the current task and returns the task to store
+     * @return The stored task, or null if there was no task with the ID
+     */
+    Task computeIfPresent(int id, UnaryOperator<Task> update);
+
+    /**
+     * Returns the number of tasks.
+     *
+     * @return The task count
+     */
+    int size();
+
+    /**
+     * Removes every task. Must not run concurrently with other changes to
+     * the store; {@link ToDoManager} runs it while no other mutation runs.
+     */
+    void clear();
+
+    /**
+     * Returns the memory still held by replaced or removed tasks, which
+     * {@link #compact} can reclaim.
+     *
+     * @return The reclaimable bytes
+     */
+    default long garbageBytes() {
+        return 0;
+    }
+
+    /**
+     * Returns the memory held by the current tasks, in the same terms as
+     * {@link #garbageBytes}.
+     *
+     * @return The bytes of live tasks
+     */
+    default long liveBytes() {
+        return 0;
+    }
+
+    /**
+     * Takes one short step of reclaiming the memory of replaced or removed
+     * tasks, while other operations continue. A compaction pass starts with
+     * the first step and ends with the step that returns false.
+     *
+     * @return True if the pass needs more steps
+     */
+    default boolean compact() {
+        return false;
+    }
+
+    /**
+     * Returns an immutable view of every task as of now, if the store can
+     * take one without copying the tasks.
+     *
+     * @return The view, or null if the store does not keep one
+     */
+    default TaskView view() {
+        return null;
+    }
+}
@@ -0,0 +1,37 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+/**
+ * Thrown when a conditional update expected a task version that is no longer
+ * current, because another update got there first.
+ */
+public class TaskVersionConflictException extends RuntimeException {
+    private final int taskId;
+    private final long expectedVersion;
+    private final long currentVersion;
+
+    /**
+     * Constructor to create a conflict for a task.
+     *
+     * @param taskId The ID of the task that was to be updated
+     * @param expectedVersion The version the caller expected
+     * @param currentVersion The task's actual version
+     */
+    public TaskVersionConflictException(int taskId, long expectedVersion, long currentVersion) {
+        super(String.format("Task %d is at version %d, not %d", taskId, currentVersion, expectedVersion));
+        this.taskId = taskId;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    public int getTaskId() {
+        return taskId;
+    }
+
+    public long getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public long getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,224 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable view of the tasks as of one moment, returned by
+ * {@link ToDoManager#getTaskView()}. Changes made after the view was taken
+ * never show up in it, so walking a view, however long it takes, sees every
+ * task exactly as it was at that moment.
+ *
+ * The view is a persistent 32-way trie indexed by task ID: a change creates a
+ * new trie that copies the nodes on the path to the changed ID, at most seven,
+ * and shares every other node with the trie it was made from. Taking a view of
+ * a {@link VersionedTaskStore} only reads its current trie, so it costs the
+ * same however many tasks there are, and the tasks it holds stay reachable
+ * until the view is dropped. The tasks are the stored objects, not copies,
+ * which is safe because tasks are immutable.
+ */
+public final class TaskView implements Iterable<Task> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    static final TaskView EMPTY = new TaskView(null, 0, 0);
+
+    // Inner nodes hold child nodes and nodes at shift 0 hold tasks; null marks an empty subtree
+    private final Object[] root;
+    private final int shift;
+    private final int size;
+
+    private TaskView(Object[] root, int shift, int size) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+    }
+
+    /**
+     * Returns the task with the given ID as of this view.
+     *
+     * @param id The task ID
+     * @return The task, or null if there was none
+     */
+    public Task get(int id) {
+        if (id < 0 || id >>> shift >>> BITS != 0) {
+            return null;
+        }
+        Object[] node = root;
+        for (int level = shift; level > 0 && node != null; level -= BITS) {
+            node = (Object[]) node[id >>> level & MASK];
+        }
+        return node == null ? null : (Task) node[id & MASK];
+    }
+
+    /**
+     * Returns the number of tasks in the view.
+     *
+     * @return The task count
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Iterates over the tasks of the view in ID order.
+     *
+     * @return An iterator that never fails because of later changes
+     */
+    @Override
+    public Iterator<Task> iterator() {
+        return new Iterator<>() {
+            // One node and next child index per level, root first
+            private final Object[][] nodes = new Object[shift / BITS + 1][];
+            private final int[] positions = new int[nodes.length];
+            private int depth = root == null ? -1 : 0;
+            private Task next;
+
+            {
+                nodes[0] = root;
+                advance();
+            }
+
+            private void advance() {
+                next = null;
+                while (depth >= 0) {
+                    Object[] node = nodes[depth];
+                    if (positions[depth] == WIDTH) {
+                        depth--;
+                        continue;
+                    }
+                    Object child = node[positions[depth]++];
+                    if (child == null) {
+                        continue;
+                    }
+                    if (depth == nodes.length - 1) {
+                        next = (Task) child;
+                        return;
+                    }
+                    depth++;
+                    nodes[depth] = (Object[]) child;
+                    positions[depth] = 0;
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Task current = next;
+                advance();
+                return current;
+            }
+        };
+    }
+
+    /**
+     * Returns a view with the task stored under its ID, replacing any task
+     * with the same ID.
+     *
+     * @param task The task to store
+     * @return The new view; this one is unchanged
+     */
+    TaskView with(Task task) {
+        int id = task.getId();
+        if (id < 0) {
+            throw new IllegalArgumentException("Task IDs cannot be negative");
+        }
+        Object[] grown = root;
+        int level = shift;
+        while (id >>> level >>> BITS != 0) {
+            // Grow a level, with the current trie as the first subtree
+            if (grown != null) {
+                Object[] parent = new Object[WIDTH];
+                parent[0] = grown;
+                grown = parent;
+            }
+            level += BITS;
+        }
+        boolean added = get(id) == null;
+        return new TaskView(set(grown, level, id, task), level, added ? size + 1 : size);
+    }
+
+    /**
+     * Returns a view without the task with the given ID.
+     *
+     * @param id The task ID
+     * @return The new view, or this one if it has no task with the ID
+     */
+    TaskView without(int id) {
+        if (get(id) == null) {
+            return this;
+        }
+        return new TaskView(clear(root, shift, id), shift, size - 1);
+    }
+
+    /**
+     * Builds a view of tasks without copying nodes, since nothing else can see
+     * them until the view is returned.
+     *
+     * @param tasks The tasks, each with a different ID
+     * @return A view holding the tasks
+     */
+    static TaskView of(Iterator<Task> tasks) {
+        Object[] root = null;
+        int shift = 0;
+        int size = 0;
+        while (tasks.hasNext()) {
+            Task task = tasks.next();
+            int id = task.getId();
+            while (id >>> shift >>> BITS != 0) {
+                if (root != null) {
+                    Object[] parent = new Object[WIDTH];
+                    parent[0] = root;
+                    root = parent;
+                }
+                shift += BITS;
+            }
+            if (root == null) {
+                root = new Object[WIDTH];
+            }
+            Object[] node = root;
+            for (int level = shift; level > 0; level -= BITS) {
+                Object[] child = (Object[]) node[id >>> level & MASK];
+                if (child == null) {
+                    child = new Object[WIDTH];
+                    node[id >>> level & MASK] = child;
+                }
+                node = child;
+            }
+            node[id & MASK] = task;
+            size++;
+        }
+        return new TaskView(root, shift, size);
+    }
+
+    private static Object[] set(Object[] node, int level, int id, Task task) {
+        Object[] copy = node == null ? new Object[WIDTH] : node.clone();
+        int index = id >>> level & MASK;
+        copy[index] = level == 0 ? task : set((Object[]) copy[index], level - BITS, id, task);
+        return copy;
+    }
+
+    /**
+     * Copies the path to a task that is in the trie without the task,
+     * dropping nodes left empty.
+     */
+    private static Object[] clear(Object[] node, int level, int id) {
+        int index = id >>> level & MASK;
+        Object[] copy = node.clone();
+        copy[index] = level == 0 ? null : clear((Object[]) node[index], level - BITS, id);
+        for (Object child : copy) {
+            if (child != null) {
+                return copy;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,247 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link TaskStore} that keeps active tasks as {@link Task} objects on the
+ * heap and completed tasks in an off-heap {@link TaskArchive}, so heap size
+ * and garbage collection work follow the number of open tasks rather than
+ * the whole history.
+ *
+ * A task completed by an update stays in the active tier until a background
+ * thread, shared by every tiered store, moves it to the archive; stored tasks
+ * that are already completed, such as those recovered from storage, go to the
+ * archive straight away. An update that reopens an archived task moves it
+ * back. Both tiers answer {@link #get} by ID, so listings cover every task.
+ * {@link #compact} reclaims the archive space of reopened and deleted tasks.
+ *
+ * Only the tasks themselves leave the heap. The manager's indexes keep every
+ * task, archived or not, so an archived task still costs about 10 bytes plus
+ * 4 bytes per distinct word of its description: the archive's 8-byte record
+ * reference, the 2-byte code and the bit of {@link TaskStatusIndex}, the bit
+ * of the manager's {@link TaskIdSet}, and an {@code int} in the
+ * {@link TaskSearchIndex} postings of each word. All of it is in primitive
+ * arrays, so it is memory rather than garbage collection work, and ten
+ * million archived tasks of ten words take about 500 MB of heap.
+ *
+ * Every change to an ID, including a move between the tiers, runs inside the
+ * active map's {@code compute} for that ID, which keeps operations on the
+ * same ID atomic with respect to each other. Reads take no lock and look in
+ * the active tier first. A task moves to the archive before it leaves the
+ * active tier, and the archived copy of a reopened task is only dropped once
+ * the task is back in the active tier. A reader that looked in the active
+ * tier before a task was reopened and in the archive after its copy was
+ * dropped finds neither; reopened tasks are counted, and a reader that misses
+ * in both tiers while the count changed looks again.
+ */
+final class TieredTaskStore implements TaskStore {
+    private static final ExecutorService ARCHIVER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-archiver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ConcurrentHashMap<Integer, Task> active;
+    private volatile TaskArchive archive = new TaskArchive();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong reopenedCount = new AtomicLong();
+    private final ConcurrentLinkedQueue<Integer> completed = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean migrationScheduled = new AtomicBoolean();
+
+    /**
+     * Creates an empty store sized for the given number of active tasks.
+     *
+     * @param initialCapacity The expected number of active tasks
+     */
+    TieredTaskStore(int initialCapacity) {
+        this.active = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    @Override
+    public Task get(int id) {
+        while (true) {
+            long reopened = reopenedCount.get();
+            Task task = active.get(id);
+            if (task == null) {
+                task = archive.get(id);
+            }
+            if (task != null || reopenedCount.get() == reopened) {
+                return task;
+            }
+        }
+    }
+
+    @Override
+    public Task put(Task task) {
+        int id = task.getId();
+        TaskArchive tier = archive;
+        Task[] previous = new Task[1];
+        boolean[] reopened = new boolean[1];
+        active.compute(id, (key, current) -> {
+            previous[0] = current != null ? current : tier.get(id);
+            if (isCompleted(task)) {
+                tier.put(task);
+                return null;
+            }
+            reopened[0] = current == null && previous[0] != null;
+            return task;
+        });
+        if (reopened[0]) {
+            dropArchived(tier, id);
+        }
+        if (previous[0] == null) {
+            size.incrementAndGet();
+        }
+        return previous[0];
+    }
+
+    @Override
+    public Task remove(int id) {
+        return removeIf(id, task -> true);
+    }
+
+    @Override
+    public Task removeIf(int id, Predicate<? super Task> condition) {
+        TaskArchive tier = archive;
+        Task[] removed = new Task[1];
+        active.compute(id, (key, current) -> {
+            Task task = current != null ? current : tier.get(id);
+            if (task == null || !condition.test(task)) {
+                return current;
+            }
+            removed[0] = task;
+            tier.remove(id);
+            return null;
+        });
+        if (removed[0] != null) {
+            size.decrementAndGet();
+        }
+        return removed[0];
+    }
+
+    @Override
+    public Task computeIfPresent(int id, UnaryOperator<Task> update) {
+        TaskArchive tier = archive;
+        Task[] stored = new Task[1];
+        boolean[] reopened = new boolean[1];
+        boolean[] archiveLater = new boolean[1];
+        active.compute(id, (key, current) -> {
+            if (current != null) {
+                stored[0] = update.apply(current);
+                archiveLater[0] = isCompleted(stored[0]);
+                return stored[0];
+            }
+            Task archived = tier.get(id);
+            if (archived == null) {
+                return null;
+            }
+            stored[0] = update.apply(archived);
+            if (isCompleted(stored[0])) {
+                tier.put(stored[0]);
+                return null;
+            }
+            reopened[0] = true;
+            return stored[0];
+        });
+        if (reopened[0]) {
+            dropArchived(tier, id);
+        }
+        if (archiveLater[0]) {
+            completed.add(id);
+            scheduleMigration();
+        }
+        return stored[0];
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public void clear() {
+        active.clear();
+        // A new archive, so readers decoding a record of the old one keep valid bytes
+        archive = new TaskArchive();
+        completed.clear();
+        size.set(0);
+    }
+
+    @Override
+    public long garbageBytes() {
+        return archive.garbageBytes();
+    }
+
+    @Override
+    public long liveBytes() {
+        return archive.liveBytes();
+    }
+
+    @Override
+    public boolean compact() {
+        return archive.compact();
+    }
+
+    /**
+     * Returns the number of tasks in the archive tier.
+     *
+     * @return The archived task count
+     */
+    int archivedCount() {
+        return archive.size();
+    }
+
+    /**
+     * Moves every completed task waiting in the active tier to the archive
+     * on the calling thread.
+     */
+    void migrateCompleted() {
+        for (Integer id = completed.poll(); id != null; id = completed.poll()) {
+            // Archived before it leaves the active tier, so readers always find it;
+            // the archive is read inside the compute, so a task stored after a
+            // clear never moves to the archive that the clear dropped
+            active.computeIfPresent(id, (key, task) -> {
+                if (!isCompleted(task)) {
+                    return task;
+                }
+                archive.put(task);
+                return null;
+            });
+        }
+    }
+
+    private void scheduleMigration() {
+        if (migrationScheduled.compareAndSet(false, true)) {
+            ARCHIVER.execute(() -> {
+                migrationScheduled.set(false);
+                migrateCompleted();
+            });
+        }
+    }
+
+    /**
+     * Drops the archived copy of a task that is back in the active tier. It
+     * runs in the active map's {@code compute} for the ID, where a task that
+     * is still active can only have a stale copy in the archive; a task that
+     * has been archived or removed since is left alone.
+     */
+    private void dropArchived(TaskArchive tier, int id) {
+        active.computeIfPresent(id, (key, task) -> {
+            tier.remove(id);
+            return task;
+        });
+        reopenedCount.incrementAndGet();
+    }
+
+    private static boolean isCompleted(Task task) {
+        return TaskStatistics.COMPLETED.equalsIgnoreCase(task.getStatus());
+    }
+}
@@ -1,20 +1,266 @@
 package io.github.hillmatthew2000.do_it_to_it;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * Manages the collection of tasks in the To-Do application.
  * Provides methods to add, list, update, delete, and mark tasks as completed.
+ * 
+ * Tasks are indexed by ID in a {@link TaskStore}, so lookups are O(1) and the
+ * manager can be shared by every request thread without a global lock.
+ * Updates to a single task run inside the store's {@code computeIfPresent},
+ * which only locks the part of the store holding that task, and replace the
+ * stored task with a new one instead of modifying it. A task returned by the
+ * manager therefore never changes under its reader, and readers never lock.
+ * Each mutation counts itself in a counter stripe picked by its thread,
+ * which {@link #clearAllTasks()} waits to drain while it holds new mutations
+ * back, so a clear never interleaves with another change and mutations share
+ * no lock or counter with each other.
+ * Updates can be made conditional on the task's version; a stale version
+ * fails with a {@link TaskVersionConflictException}. The
+ * {@link TaskLayout} chooses between plain task objects, a compact
+ * column-oriented store for very large task counts, tiers that keep
+ * completed tasks off the heap, and a persistent trie whose versions serve
+ * as consistent {@link TaskView}s. The memory that deleted and replaced tasks
+ * leave behind in the compact and tiered stores is reclaimed by a shared
+ * background thread once it outweighs the live tasks. A {@link TaskIdSet}
+ * keeps the live IDs in order, so listings and pages walk IDs directly
+ * instead of sorting, and a {@link TaskStatusIndex} does the same per status,
+ * so a page of one status only visits tasks with that status. Per-status
+ * counters are adjusted inside the same lock as the change they describe, so
+ * statistics are available without scanning the tasks.
+ * A {@link TaskSearchIndex} over the descriptions is kept up to date in the
+ * same way and answers full-text searches. Every change is also published as
+ * a {@link TaskEvent} to the registered change listeners.
+ * 
+ * Tasks record when they were created and last updated, and can have a due
+ * date. The due dates of open tasks are kept in a {@link TaskDueScheduler};
+ * {@link #expireOverdueTasks()} moves the wheel to the current time and sets
+ * the status of every open task whose due date passed to "Overdue", so each
+ * call costs the number of tasks that became due rather than the number of
+ * open tasks. The time comes from a {@link Clock} that can be replaced.
+ * 
+ * Each task carries a version that increases with every change to it, and the
+ * manager keeps a version of the whole collection that increases with every
+ * mutation. Both are only advanced after the change is visible, so a reader
+ * that sees a version sees the changes it stands for; callers can compare
+ * versions to tell whether anything changed without reading the tasks.
+ * The duration of every public operation can be reported to an
+ * {@link OperationRecorder}.
+ * 
+ * A manager created with {@link #open(Path, FsyncPolicy)} records every
+ * mutation in a {@link WriteAheadLog} and rebuilds its tasks from that log on
+ * the next start. Mutations return once their log record is durable
+ * according to the configured {@link FsyncPolicy}.
+ * 
+ * Once enough records have accumulated, a background thread writes a
+ * {@link TaskSnapshot} of every task and deletes the log segments it covers.
+ * Recovery maps the latest snapshot into memory and replays only the records
+ * after it. Snapshots do not block requests: the log is rotated first, the
+ * snapshot waits only for mutations already logged in the old segments to be
+ * applied, and any change made while the tasks are being written is also in
+ * the new segment, where replaying it is harmless because log records carry
+ * full task state.
  */
-public class ToDoManager {
-    private List<Task> tasks;
+public class ToDoManager implements AutoCloseable {
+    /** Largest page size accepted by {@link #getTasks}. */
+    public static final int MAX_PAGE_SIZE = 1000;
+    
+    /** Expected version that lets an update apply to any version of the task. */
+    public static final long ANY_VERSION = 0;
+    
+    /** Number of log records after which a background snapshot is taken by default. */
+    public static final long DEFAULT_SNAPSHOT_THRESHOLD = 100_000;
+    
+    /** Status given to an open task once its due date has passed. */
+    public static final String OVERDUE = "Overdue";
+    
+    /** Most distinct statuses the tasks may have at once, besides the ones the manager sets itself. */
+    public static final int MAX_STATUSES = 1000;
+    
+    private static final System.Logger LOGGER = System.getLogger(ToDoManager.class.getName());
+    
+    // Number of tasks that purgeCompletedTasks checks per mutation
+    private static final int PURGE_BATCH = 10_000;
+    
+    // Store garbage below this is not worth a compaction pass
+    private static final long MIN_COMPACTION_GARBAGE = 4L * 1024 * 1024;
+    
+    // Due dates fire at most this late
+    private static final long DUE_TICK_MILLIS = 1000;
+    
+    // Stripes of the count of mutations in progress, each on its own cache line
+    private static final int GUARD_STRIPES = 32;
+    private static final int GUARD_STRIDE = 16;
+    
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final TaskStore tasks;
+    // Each manager numbers its own tasks, so its IDs stay dense
+    private final TaskIdAllocator idAllocator = new TaskIdAllocator(1);
+    private final TaskIdSet ids;
+    private final TaskStatistics statistics;
+    private final TaskStatusIndex statusIndex;
+    private final TaskSearchIndex searchIndex;
+    private final TaskDueScheduler dueDates;
+    private volatile Clock clock = Clock.systemUTC();
+    private final CopyOnWriteArrayList<Consumer<TaskEvent>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong eventSequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private volatile OperationRecorder recorder = OperationRecorder.NONE;
+    private final ThreadLocal<Boolean> batching = ThreadLocal.withInitial(() -> false);
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    // Mutations count themselves in and out of a stripe picked by thread, so a clear can
+    // wait for them to drain without any lock or counter that every mutation has to take
+    private final AtomicIntegerArray mutating = new AtomicIntegerArray(GUARD_STRIPES * GUARD_STRIDE);
+    private volatile boolean clearing;
+    // Held by a clear while it runs, and waited on by the mutations it holds back
+    private final Object clearMonitor = new Object();
+    
+    // Persistence; all null when tasks are kept in memory only
+    private WriteAheadLog log;
+    private Path directory;
+    private ExecutorService snapshotter;
+    private final Object snapshotLock = new Object();
+    private final AtomicBoolean snapshotScheduled = new AtomicBoolean();
+    private long snapshotThreshold;
+    private volatile long snapshotLsn;
+    private final LongAdder[] mutationsInFlight = {new LongAdder(), new LongAdder()};
+    private volatile int mutationEpoch;
     
     /**
-     * Constructor initializes an empty list of tasks.
+     * Constructor initializes an empty task store.
      */
     public ToDoManager() {
-        this.tasks = new ArrayList<>();
+        this(TaskLayout.OBJECTS);
+    }
+    
+    /**
+     * Constructor initializes an empty task store with the given in-memory layout.
+     * 
+     * @param layout How tasks are kept in memory
+     */
+    public ToDoManager(TaskLayout layout) {
+        this(createStore(layout, 16));
+    }
+    
+    private ToDoManager(TaskStore tasks) {
+        this.tasks = tasks;
+        this.ids = new TaskIdSet();
+        this.statistics = new TaskStatistics();
+        this.statusIndex = new TaskStatusIndex(MAX_STATUSES, TaskStatistics.BUILT_IN);
+        this.searchIndex = new TaskSearchIndex();
+        this.dueDates = new TaskDueScheduler(DUE_TICK_MILLIS, () -> clock.millis());
+    }
+    
+    /**
+     * Opens a persistent manager backed by a write-ahead log in the given directory,
+     * taking background snapshots every {@value #DEFAULT_SNAPSHOT_THRESHOLD} log records.
+     * 
+     * @param directory The directory holding the log and snapshots; created if missing
+     * @param fsyncPolicy When log records are forced to disk
+     * @return A manager holding the recovered tasks
+     * @throws IOException if the log or snapshot cannot be opened or read
+     */
+    public static ToDoManager open(Path directory, FsyncPolicy fsyncPolicy) throws IOException {
+        return open(directory, fsyncPolicy, DEFAULT_SNAPSHOT_THRESHOLD);
+    }
+    
+    /**
+     * Opens a persistent manager with the {@link TaskLayout#OBJECTS} layout.
+     * 
+     * @param directory The directory holding the log and snapshots; created if missing
+     * @param fsyncPolicy When log records are forced to disk
+     * @param snapshotThreshold Take a background snapshot after this many log records, or 0 to never do so
+     * @return A manager holding the recovered tasks
+     * @throws IOException if the log or snapshot cannot be opened or read
+     * @see #open(Path, FsyncPolicy, long, TaskLayout)
+     */
+    public static ToDoManager open(Path directory, FsyncPolicy fsyncPolicy, long snapshotThreshold)
+            throws IOException {
+        return open(directory, fsyncPolicy, snapshotThreshold, TaskLayout.OBJECTS);
+    }
+    
+    /**
+     * Opens a persistent manager backed by a write-ahead log in the given directory.
+     * The latest snapshot is loaded first, then every log record after it is
+     * replayed, and the task ID counter is moved past every recovered ID.
+     * 
+     * @param directory The directory holding the log and snapshots; created if missing
+     * @param fsyncPolicy When log records are forced to disk
+     * @param snapshotThreshold Take a background snapshot after this many log records, or 0 to never do so
+     * @param layout How tasks are kept in memory
+     * @return A manager holding the recovered tasks
+     * @throws IOException if the log or snapshot cannot be opened or read
+     */
+    public static ToDoManager open(Path directory, FsyncPolicy fsyncPolicy, long snapshotThreshold,
+                                   TaskLayout layout) throws IOException {
+        if (snapshotThreshold < 0) {
+            throw new IllegalArgumentException("Snapshot threshold cannot be negative");
+        }
+        Files.createDirectories(directory);
+        ToDoManager manager;
+        long snapshotLsn = 0;
+        int[] highestId = new int[1];
+        try (TaskSnapshot snapshot = TaskSnapshot.openLatest(directory)) {
+            if (snapshot == null) {
+                manager = new ToDoManager(layout);
+            } else {
+                manager = new ToDoManager(createStore(layout, (int) Math.min(snapshot.count() * 4 / 3 + 16, 1 << 30)));
+                TaskSearchIndex.Loader descriptions = manager.searchIndex.loader();
+                snapshot.forEach(task -> {
+                    manager.restore(task);
+                    descriptions.add(task.getId(), task.getDescription());
+                });
+                descriptions.finish();
+                snapshotLsn = snapshot.lsn();
+                highestId[0] = snapshot.nextId() - 1;
+            }
+        }
+        
+        manager.log = WriteAheadLog.open(directory, fsyncPolicy, snapshotLsn, entry -> {
+            manager.replay(entry);
+            highestId[0] = Math.max(highestId[0], entry.id());
+        });
+        manager.idAllocator.advanceTo(highestId[0] + 1);
+        // Every earlier mutation logged at least one record, so this never repeats an earlier version
+        manager.version.set(manager.log.lastLsn());
+        
+        manager.directory = directory;
+        manager.snapshotLsn = snapshotLsn;
+        manager.snapshotThreshold = snapshotThreshold;
+        manager.snapshotter = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "todo-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        return manager;
     }
     
     /**
@@ -24,37 +270,321 @@ public class ToDoManager {
      * @return The ID of the newly created task
      */
     public int addTask(String description) {
-        if (description == null || description.trim().isEmpty()) {
-            throw new IllegalArgumentException("Task description cannot be empty");
+        return addTask(description, null);
+    }
+    
+    /**
+     * Adds a new task with the given description and due date.
+     * 
+     * @param description The description of the task to add
+     * @param due When the task is due, or null for no due date
+     * @return The ID of the newly created task
+     */
+    public int addTask(String description, Instant due) {
+        long start = startTiming();
+        try {
+            if (description == null || description.trim().isEmpty()) {
+                throw new IllegalArgumentException("Task description cannot be empty");
+            }
+            long dueAt = dueMillis(due);
+            
+            long now = clock.millis();
+            Task newTask = new Task(idAllocator.next(), description.trim(), "Pending", 1, now, now, dueAt);
+            mutate(() -> {
+                insert(newTask);
+                return true;
+            });
+            return newTask.getId();
+        } finally {
+            stopTiming(TaskOperation.ADD_TASK, start);
         }
-        
-        Task newTask = new Task(description.trim());
-        tasks.add(newTask);
-        return newTask.getId();
     }
     
     /**
-     * Returns a list of all tasks.
+     * Adds a batch of tasks in one pass. The tasks receive consecutive IDs in
+     * the order of the descriptions, and the call waits for the log only once
+     * for the whole batch.
+     * 
+     * @param descriptions The descriptions of the tasks to add
+     * @return The IDs of the new tasks, in the same order as the descriptions
+     * @throws IllegalArgumentException if any description is empty; no task is added then
+     */
+    public int[] addTasks(List<String> descriptions) {
+        return addTasks(descriptions, null);
+    }
+    
+    /**
+     * Adds a batch of tasks with the given statuses in one pass, as
+     * {@link #addTasks(List)} does.
+     * 
+     * @param descriptions The descriptions of the tasks to add
+     * @param statuses The status of each task, in the same order, or null for all "Pending"
+     * @return The IDs of the new tasks, in the same order as the descriptions
+     * @throws IllegalArgumentException if any description or status is empty, the
+     *         lists differ in size, or the statuses would take more than
+     *         {@value #MAX_STATUSES} in use; no task is added then
+     */
+    public int[] addTasks(List<String> descriptions, List<String> statuses) {
+        return addTasks(descriptions, statuses, null);
+    }
+    
+    /**
+     * Adds a batch of tasks with the given statuses and due dates in one
+     * pass, as {@link #addTasks(List)} does.
+     * 
+     * @param descriptions The descriptions of the tasks to add
+     * @param statuses The status of each task, in the same order, or null for all "Pending"
+     * @param dues The due date of each task, in the same order, with null for no due date;
+     *        or null for no due dates at all
+     * @return The IDs of the new tasks, in the same order as the descriptions
+     * @throws IllegalArgumentException if any description or status is empty, a due date
+     *         is not after the epoch, the lists differ in size, or the statuses would take
+     *         more than {@value #MAX_STATUSES} in use; no task is added then
+     */
+    public int[] addTasks(List<String> descriptions, List<String> statuses, List<Instant> dues) {
+        long start = startTiming();
+        try {
+            for (String description : descriptions) {
+                if (description == null || description.trim().isEmpty()) {
+                    throw new IllegalArgumentException("Task description cannot be empty");
+                }
+            }
+            if (statuses != null) {
+                if (statuses.size() != descriptions.size()) {
+                    throw new IllegalArgumentException("Expected a status for each of the "
+                        + descriptions.size() + " tasks but got " + statuses.size());
+                }
+                for (String status : statuses) {
+                    if (status == null || status.trim().isEmpty()) {
+                        throw new IllegalArgumentException("Task status cannot be empty");
+                    }
+                }
+            }
+            long[] dueAt = new long[descriptions.size()];
+            if (dues != null) {
+                if (dues.size() != descriptions.size()) {
+                    throw new IllegalArgumentException("Expected a due date for each of the "
+                        + descriptions.size() + " tasks but got " + dues.size());
+                }
+                for (int i = 0; i < dueAt.length; i++) {
+                    dueAt[i] = dueMillis(dues.get(i));
+                }
+            }
+            int[] created = new int[descriptions.size()];
+            if (created.length == 0) {
+                return created;
+            }
+            
+            int firstId = idAllocator.reserve(created.length);
+            long now = clock.millis();
+            mutate(() -> {
+                // Every status first, so a batch whose statuses do not fit adds nothing
+                short[] codes = new short[created.length];
+                int i = 0;
+                try {
+                    for (; i < codes.length; i++) {
+                        codes[i] = statusIndex.reserve(statuses != null ? statuses.get(i).trim() : "Pending");
+                    }
+                } catch (RuntimeException e) {
+                    release(codes, 0, i);
+                    throw e;
+                }
+                i = 0;
+                try {
+                    for (; i < created.length; i++) {
+                        String status = statuses != null ? statuses.get(i).trim() : "Pending";
+                        Task newTask = new Task(firstId + i, descriptions.get(i).trim(), status, 1, now, now, dueAt[i]);
+                        insert(newTask, codes[i]);
+                        created[i] = newTask.getId();
+                    }
+                } catch (RuntimeException | Error e) {
+                    // insert gave back the code of the task it failed on
+                    release(codes, i + 1, codes.length);
+                    throw e;
+                }
+                return true;
+            });
+            return created;
+        } finally {
+            stopTiming(TaskOperation.ADD_TASKS, start);
+        }
+    }
+    
+    /**
+     * Returns a list of all tasks, ordered by ID. With the
+     * {@link TaskLayout#VERSIONED} layout the list holds the tasks as of one
+     * moment; {@link #getTaskView()} gives the same without copying.
      * 
      * @return List of all tasks
      */
     public List<Task> getAllTasks() {
-        return new ArrayList<>(tasks); // Return a copy to prevent external modification
+        long start = startTiming();
+        try {
+            List<Task> copy = new ArrayList<>(tasks.size()); // Return a copy to prevent external modification
+            iterateTasks().forEachRemaining(copy::add);
+            return copy;
+        } finally {
+            stopTiming(TaskOperation.GET_ALL_TASKS, start);
+        }
+    }
+    
+    /**
+     * Passes every task to {@code action} in ID order without copying them,
+     * so walking millions of tasks takes no memory beyond the task at hand.
+     * The walk does not block changes. With the {@link TaskLayout#VERSIONED}
+     * layout it walks the tasks as they were when it started; otherwise a
+     * task changed or deleted meanwhile is passed as it was or as it is, or
+     * not at all if deleted before it was reached.
+     * 
+     * @param action Receives each task
+     */
+    public void forEachTask(Consumer<? super Task> action) {
+        long start = startTiming();
+        try {
+            iterateTasks().forEachRemaining(action);
+        } finally {
+            stopTiming(TaskOperation.FOR_EACH_TASK, start);
+        }
+    }
+    
+    /**
+     * Returns an immutable view of every task as of one moment. Later changes
+     * never show up in the view, so it can be walked for as long as needed
+     * while writers carry on. With the {@link TaskLayout#VERSIONED} layout
+     * this takes constant time and copies nothing. Other layouts copy the
+     * live tasks into the view, which takes time in proportion to the number
+     * of tasks and, as with {@link #getAllTasks()}, may catch some of the
+     * changes made during the copy.
+     * 
+     * @return The tasks as of now
+     */
+    public TaskView getTaskView() {
+        long start = startTiming();
+        try {
+            TaskView view = tasks.view();
+            return view != null ? view : TaskView.of(walkTasks());
+        } finally {
+            stopTiming(TaskOperation.GET_TASK_VIEW, start);
+        }
+    }
+    
+    /**
+     * Returns one page of tasks, optionally filtered by status.
+     * Only the IDs between the cursor and the end of the page are visited,
+     * so the cost of a page does not depend on the total number of tasks.
+     * 
+     * @param cursor The ID of the last task on the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of tasks to return (1 to {@value #MAX_PAGE_SIZE})
+     * @param status Only return tasks with this status (case-insensitive), or null for all tasks
+     * @param newestFirst true to list tasks in descending ID order, false for ascending
+     * @return The page of tasks and the cursor for the next page
+     */
+    public TaskPage getTasks(int cursor, int limit, String status, boolean newestFirst) {
+        return getTasks(cursor, limit, status, newestFirst, 1, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Returns one page of the tasks in a range of IDs, optionally filtered by
+     * status. IDs are assigned in creation order, so the range selects the
+     * tasks created between two tasks. With a status, the page walks that
+     * status's entries in a {@link TaskStatusIndex} and never visits tasks
+     * with other statuses.
+     * 
+     * @param cursor The ID of the last task on the previous page, or 0 to start from the beginning
+     * @param limit The maximum number of tasks to return (1 to {@value #MAX_PAGE_SIZE})
+     * @param status Only return tasks with this status (case-insensitive), or null for all tasks
+     * @param newestFirst true to list tasks in descending ID order, false for ascending
+     * @param fromId The smallest ID to return
+     * @param toId The largest ID to return
+     * @return The page of tasks and the cursor for the next page
+     */
+    public TaskPage getTasks(int cursor, int limit, String status, boolean newestFirst, int fromId, int toId) {
+        long start = startTiming();
+        try {
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Page limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            if (cursor < 0) {
+                throw new IllegalArgumentException("Cursor cannot be negative");
+            }
+            if (fromId > toId) {
+                throw new IllegalArgumentException("ID range cannot end before it starts");
+            }
+            
+            List<Task> page = new ArrayList<>(Math.min(limit, 64));
+            int id;
+            if (newestFirst) {
+                id = previous(cursor == 0 ? toId : Math.min(cursor - 1, toId), status);
+            } else {
+                id = next(Math.max(cursor + 1, fromId), status);
+            }
+            while (id > 0 && id >= fromId && id <= toId && page.size() < limit) {
+                Task task = status == null ? tasks.get(id) : find(id, status);
+                if (task != null) {
+                    page.add(task);
+                }
+                id = newestFirst ? previous(id - 1, status) : next(id + 1, status);
+            }
+            
+            boolean more = id > 0 && id >= fromId && id <= toId;
+            Integer nextCursor = (more && !page.isEmpty()) ? page.get(page.size() - 1).getId() : null;
+            return new TaskPage(page, nextCursor);
+        } finally {
+            stopTiming(TaskOperation.GET_TASKS, start);
+        }
     }
     
     /**
      * Finds a task by its ID.
      * 
+     * Updates replace the stored task, so the returned task stays as it was
+     * when it was read. Changes made to it must go through the manager;
+     * with the {@link TaskLayout#COMPACT} layout, and for archived tasks with
+     * {@link TaskLayout#TIERED}, the task is a copy, so they would not reach
+     * the store at all.
+     * 
      * @param id The ID of the task to find
      * @return The task with the given ID, or null if not found
      */
     public Task findTaskById(int id) {
-        for (Task task : tasks) {
-            if (task.getId() == id) {
-                return task;
+        long start = startTiming();
+        try {
+            return tasks.get(id);
+        } finally {
+            stopTiming(TaskOperation.FIND_TASK_BY_ID, start);
+        }
+    }
+    
+    /**
+     * Searches task descriptions. Every word of the query must match the start
+     * of a word in the description, ignoring case; tasks matching rarer words
+     * and whole words rank first, and equally ranked tasks are listed newest first.
+     * 
+     * @param query The words to search for
+     * @param limit The maximum number of results (1 to {@value #MAX_PAGE_SIZE})
+     * @return The matching tasks, best match first
+     */
+    public List<SearchHit> searchTasks(String query, int limit) {
+        long start = startTiming();
+        try {
+            if (query == null || query.trim().isEmpty()) {
+                throw new IllegalArgumentException("Search query cannot be empty");
             }
+            if (limit < 1 || limit > MAX_PAGE_SIZE) {
+                throw new IllegalArgumentException("Search limit must be between 1 and " + MAX_PAGE_SIZE);
+            }
+            
+            List<SearchHit> results = new ArrayList<>();
+            for (TaskSearchIndex.Hit hit : searchIndex.search(query, limit)) {
+                Task task = tasks.get(hit.id());
+                if (task != null) { // deleted since the index was read
+                    results.add(new SearchHit(task, hit.score()));
+                }
+            }
+            return results;
+        } finally {
+            stopTiming(TaskOperation.SEARCH_TASKS, start);
         }
-        return null;
     }
     
     /**
@@ -65,16 +595,38 @@ public class ToDoManager {
      * @return true if the task was updated successfully, false if task not found
      */
     public boolean updateTaskDescription(int id, String newDescription) {
-        if (newDescription == null || newDescription.trim().isEmpty()) {
-            throw new IllegalArgumentException("Task description cannot be empty");
-        }
-        
-        Task task = findTaskById(id);
-        if (task != null) {
-            task.setDescription(newDescription.trim());
-            return true;
+        return updateTaskDescription(id, newDescription, ANY_VERSION);
+    }
+    
+    /**
+     * Updates the description of a task if it is still at the expected version.
+     * 
+     * @param id The ID of the task to update
+     * @param newDescription The new description for the task
+     * @param expectedVersion The version the task must have, or {@link #ANY_VERSION}
+     * @return true if the task was updated successfully, false if task not found
+     * @throws TaskVersionConflictException if the task is at a different version
+     */
+    public boolean updateTaskDescription(int id, String newDescription, long expectedVersion) {
+        long start = startTiming();
+        try {
+            if (newDescription == null || newDescription.trim().isEmpty()) {
+                throw new IllegalArgumentException("Task description cannot be empty");
+            }
+            
+            String description = newDescription.trim();
+            return mutate(() -> tasks.computeIfPresent(id, task -> {
+                checkVersion(task, expectedVersion);
+                Task updated = new Task(id, description, task.getStatus(), task.getVersion() + 1,
+                    task.getCreatedAt(), clock.millis(), task.getDueAt());
+                logChange(WriteAheadLog.UPDATE, updated);
+                searchIndex.replace(id, task.getDescription(), description);
+                publish(TaskEvent.Type.UPDATED, updated);
+                return updated;
+            }) != null);
+        } finally {
+            stopTiming(TaskOperation.UPDATE_TASK_DESCRIPTION, start);
         }
-        return false;
     }
     
     /**
@@ -85,16 +637,30 @@ public class ToDoManager {
      * @return true if the task was updated successfully, false if task not found
      */
     public boolean updateTaskStatus(int id, String newStatus) {
-        if (newStatus == null || newStatus.trim().isEmpty()) {
-            throw new IllegalArgumentException("Task status cannot be empty");
-        }
-        
-        Task task = findTaskById(id);
-        if (task != null) {
-            task.setStatus(newStatus.trim());
-            return true;
+        return updateTaskStatus(id, newStatus, ANY_VERSION);
+    }
+    
+    /**
+     * Updates the status of a task if it is still at the expected version.
+     * 
+     * @param id The ID of the task to update
+     * @param newStatus The new status for the task
+     * @param expectedVersion The version the task must have, or {@link #ANY_VERSION}
+     * @return true if the task was updated successfully, false if task not found
+     * @throws IllegalArgumentException if the status is empty, or is new and
+     *         {@value #MAX_STATUSES} statuses are already in use
+     * @throws TaskVersionConflictException if the task is at a different version
+     */
+    public boolean updateTaskStatus(int id, String newStatus, long expectedVersion) {
+        long start = startTiming();
+        try {
+            if (newStatus == null || newStatus.trim().isEmpty()) {
+                throw new IllegalArgumentException("Task status cannot be empty");
+            }
+            return mutate(() -> changeStatus(id, newStatus.trim(), expectedVersion));
+        } finally {
+            stopTiming(TaskOperation.UPDATE_TASK_STATUS, start);
         }
-        return false;
     }
     
     /**
@@ -104,12 +670,49 @@ public class ToDoManager {
      * @return true if the task was marked as completed successfully, false if task not found
      */
     public boolean markTaskCompleted(int id) {
-        Task task = findTaskById(id);
-        if (task != null) {
-            task.markCompleted();
-            return true;
+        return markTaskCompleted(id, ANY_VERSION);
+    }
+    
+    /**
+     * Marks a task as completed if it is still at the expected version.
+     * 
+     * @param id The ID of the task to mark as completed
+     * @param expectedVersion The version the task must have, or {@link #ANY_VERSION}
+     * @return true if the task was marked as completed successfully, false if task not found
+     * @throws TaskVersionConflictException if the task is at a different version
+     */
+    public boolean markTaskCompleted(int id, long expectedVersion) {
+        long start = startTiming();
+        try {
+            return mutate(() -> changeStatus(id, TaskStatistics.COMPLETED, expectedVersion));
+        } finally {
+            stopTiming(TaskOperation.MARK_TASK_COMPLETED, start);
+        }
+    }
+    
+    /**
+     * Marks a batch of tasks as completed in one pass, waiting for the log
+     * only once for the whole batch.
+     * 
+     * @param ids The IDs of the tasks to mark as completed
+     * @return For each ID, true if the task was marked as completed, false if it was not found
+     */
+    public boolean[] markTasksCompleted(int[] ids) {
+        long start = startTiming();
+        try {
+            boolean[] results = new boolean[ids.length];
+            mutate(() -> {
+                boolean changed = false;
+                for (int i = 0; i < ids.length; i++) {
+                    results[i] = changeStatus(ids[i], TaskStatistics.COMPLETED, ANY_VERSION);
+                    changed |= results[i];
+                }
+                return changed;
+            });
+            return results;
+        } finally {
+            stopTiming(TaskOperation.MARK_TASKS_COMPLETED, start);
         }
-        return false;
     }
     
     /**
@@ -119,36 +722,832 @@ public class ToDoManager {
      * @return true if the task was deleted successfully, false if task not found
      */
     public boolean deleteTask(int id) {
-        Task task = findTaskById(id);
-        if (task != null) {
-            tasks.remove(task);
-            return true;
+        long start = startTiming();
+        try {
+            return mutate(() -> remove(id));
+        } finally {
+            stopTiming(TaskOperation.DELETE_TASK, start);
+        }
+    }
+    
+    /**
+     * Deletes a batch of tasks in one pass, waiting for the log only once
+     * for the whole batch.
+     * 
+     * @param ids The IDs of the tasks to delete
+     * @return For each ID, true if the task was deleted, false if it was not found
+     */
+    public boolean[] deleteTasks(int[] ids) {
+        long start = startTiming();
+        try {
+            boolean[] results = new boolean[ids.length];
+            mutate(() -> {
+                boolean changed = false;
+                for (int i = 0; i < ids.length; i++) {
+                    results[i] = remove(ids[i]);
+                    changed |= results[i];
+                }
+                return changed;
+            });
+            return results;
+        } finally {
+            stopTiming(TaskOperation.DELETE_TASKS, start);
+        }
+    }
+    
+    /**
+     * Deletes every task whose status is "Completed", ignoring case. The
+     * completed tasks are found through the status index and deleted in
+     * batches of {@value #PURGE_BATCH}, each applied like {@link #deleteTasks},
+     * so other requests are served between batches; a task completed while the
+     * purge runs may or may not be deleted.
+     * 
+     * @return The number of tasks deleted
+     */
+    public int purgeCompletedTasks() {
+        long start = startTiming();
+        try {
+            int[] deleted = new int[1];
+            runBatch(() -> {
+                for (int from = statusIndex.next(1, TaskStatistics.COMPLETED); from > 0; ) {
+                    int first = from;
+                    int[] next = new int[1];
+                    mutate(() -> {
+                        boolean changed = false;
+                        int id = first;
+                        for (int i = 0; i < PURGE_BATCH && id > 0;
+                             i++, id = statusIndex.next(id + 1, TaskStatistics.COMPLETED)) {
+                            if (remove(id, ToDoManager::isCompleted)) {
+                                deleted[0]++;
+                                changed = true;
+                            }
+                        }
+                        next[0] = id;
+                        return changed;
+                    });
+                    from = next[0];
+                }
+            });
+            return deleted[0];
+        } finally {
+            stopTiming(TaskOperation.PURGE_COMPLETED_TASKS, start);
+        }
+    }
+    
+    /**
+     * Sets or clears the due date of a task with the given ID.
+     * 
+     * @param id The ID of the task to update
+     * @param due When the task is due, or null to clear its due date
+     * @return true if the task was updated successfully, false if task not found
+     */
+    public boolean setTaskDueDate(int id, Instant due) {
+        return setTaskDueDate(id, due, ANY_VERSION);
+    }
+    
+    /**
+     * Sets or clears the due date of a task if it is still at the expected
+     * version. The task's status is left as it is, so a task that is already
+     * overdue stays overdue until its status is changed.
+     * 
+     * @param id The ID of the task to update
+     * @param due When the task is due, or null to clear its due date
+     * @param expectedVersion The version the task must have, or {@link #ANY_VERSION}
+     * @return true if the task was updated successfully, false if task not found
+     * @throws TaskVersionConflictException if the task is at a different version
+     */
+    public boolean setTaskDueDate(int id, Instant due, long expectedVersion) {
+        long start = startTiming();
+        try {
+            long dueAt = dueMillis(due);
+            return mutate(() -> tasks.computeIfPresent(id, task -> {
+                checkVersion(task, expectedVersion);
+                Task updated = new Task(id, task.getDescription(), task.getStatus(), task.getVersion() + 1,
+                    task.getCreatedAt(), clock.millis(), dueAt);
+                logChange(WriteAheadLog.UPDATE, updated);
+                publish(TaskEvent.Type.UPDATED, updated);
+                trackDueDate(task, updated);
+                return updated;
+            }) != null);
+        } finally {
+            stopTiming(TaskOperation.SET_TASK_DUE_DATE, start);
+        }
+    }
+    
+    /**
+     * Sets the status of every open task whose due date has passed to
+     * {@value #OVERDUE}. A task is open while its status is neither
+     * "Completed" nor "Overdue". The timing wheel hands over only the due
+     * dates that passed since the last call, so tasks that are not due are
+     * never visited. The changes are applied like {@link #markTasksCompleted}.
+     * 
+     * @return The number of tasks that became overdue
+     */
+    public int expireOverdueTasks() {
+        long start = startTiming();
+        try {
+            List<TaskDueScheduler.Expiry> expired = dueDates.advance(clock.millis());
+            if (expired.isEmpty()) {
+                return 0;
+            }
+            int[] count = new int[1];
+            mutate(() -> {
+                for (TaskDueScheduler.Expiry expiry : expired) {
+                    if (expire(expiry.id(), expiry.dueAt())) {
+                        count[0]++;
+                    }
+                }
+                return count[0] > 0;
+            });
+            return count[0];
+        } finally {
+            stopTiming(TaskOperation.EXPIRE_OVERDUE_TASKS, start);
         }
-        return false;
     }
     
     /**
      * Returns the total number of tasks.
      * 
-     * @return The number of tasks in the list
+     * @return The number of tasks in the store
      */
     public int getTaskCount() {
         return tasks.size();
     }
     
     /**
-     * Checks if the task list is empty.
+     * Returns the number of tasks whose status is "Completed", ignoring case.
+     * 
+     * @return The number of completed tasks
+     */
+    public long getCompletedTaskCount() {
+        return statistics.completedCount();
+    }
+    
+    /**
+     * Returns the number of tasks per status.
+     * The counters are maintained on every mutation, so this does not scan the tasks.
+     * 
+     * @return Task counts keyed by status, sorted by status name
+     */
+    public Map<String, Long> getTaskCountsByStatus() {
+        return statistics.countsByStatus();
+    }
+    
+    /**
+     * Checks if the task store is empty.
      * 
      * @return true if there are no tasks, false otherwise
      */
     public boolean isEmpty() {
-        return tasks.isEmpty();
+        return tasks.size() == 0;
     }
     
     /**
-     * Clears all tasks from the list.
+     * Clears all tasks from the store. The clear waits for the changes in
+     * progress and holds back new ones until it is done, so every task added
+     * concurrently is either cleared or kept in full.
      */
     public void clearAllTasks() {
-        tasks.clear();
+        long start = startTiming();
+        try {
+            mutate(true, () -> {
+                logChange(WriteAheadLog.CLEAR, 0);
+                ids.clear();
+                tasks.clear();
+                statistics.reset();
+                statusIndex.clear();
+                searchIndex.clear();
+                dueDates.clear();
+                publish(TaskEvent.Type.CLEARED, 0, null);
+                return true;
+            });
+        } finally {
+            stopTiming(TaskOperation.CLEAR_ALL_TASKS, start);
+        }
+    }
+    
+    /**
+     * Registers a listener that receives every subsequent change.
+     * Listeners are called on the thread making the change, while it holds the
+     * lock on the changed task, so they must return quickly and must not call
+     * back into the manager. Events for the same task arrive in order.
+     * 
+     * @param listener Receives each change
+     */
+    public void addChangeListener(Consumer<TaskEvent> listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Unregisters a change listener.
+     * 
+     * @param listener The listener to remove
+     */
+    public void removeChangeListener(Consumer<TaskEvent> listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Returns the sequence number of the most recently published change.
+     * 
+     * @return The latest event sequence number, or 0 if no event was published
+     */
+    public long getEventSequence() {
+        return eventSequence.get();
+    }
+    
+    /**
+     * Sets where the duration of every operation is reported.
+     * 
+     * @param recorder The recorder, or {@link OperationRecorder#NONE} to stop timing operations
+     */
+    public void setOperationRecorder(OperationRecorder recorder) {
+        this.recorder = recorder != null ? recorder : OperationRecorder.NONE;
+    }
+    
+    /**
+     * Sets the clock that task times are read from and due dates are
+     * compared with. The due date wheel restarts at the new clock's time.
+     * 
+     * @param clock The clock
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        dueDates.restart();
+    }
+    
+    /**
+     * Returns the ID that the next task added to this manager will get.
+     * IDs are numbered separately in each manager.
+     * 
+     * @return The next task ID
+     */
+    public int getNextId() {
+        return idAllocator.peek();
+    }
+    
+    /**
+     * Returns the version of the whole task collection. It increases with
+     * every mutation, including on a manager reopened from storage, so an
+     * unchanged version means the tasks have not changed.
+     * 
+     * @return The current collection version
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Runs {@code changes}, which may call any of this manager's methods, and
+     * waits for the write-ahead log once at the end rather than after every
+     * mutation. Mutations made inside the batch return before their records
+     * are durable; all of them are durable when this method returns. Other
+     * threads see each change as soon as it is made, and the batch is not
+     * atomic: if {@code changes} throws, the mutations before the exception
+     * stay applied.
+     * 
+     * @param changes The mutations to make on the calling thread
+     */
+    public void runBatch(Runnable changes) {
+        if (batching.get()) {
+            changes.run();
+            return;
+        }
+        batching.set(true);
+        try {
+            changes.run();
+        } finally {
+            batching.set(false);
+            awaitDurable();
+        }
+    }
+    
+    /**
+     * Writes a snapshot of every task and deletes the log segments it makes redundant.
+     * Requests keep being served while the snapshot is written.
+     * 
+     * @throws IOException if the snapshot cannot be written
+     * @throws IllegalStateException if the manager keeps tasks in memory only
+     */
+    public void snapshot() throws IOException {
+        if (log == null) {
+            throw new IllegalStateException("Snapshots require a persistent manager");
+        }
+        synchronized (snapshotLock) {
+            if (log.lastLsn() == snapshotLsn) {
+                return; // nothing changed since the last snapshot
+            }
+            // Once the mutations that logged before the rotation have been applied,
+            // every record up to the boundary is reflected in memory
+            long boundary = log.rotate();
+            int drained = mutationEpoch;
+            mutationEpoch = 1 - drained;
+            while (mutationsInFlight[drained].sum() != 0) {
+                Thread.onSpinWait();
+            }
+            TaskSnapshot.write(directory, boundary, iterateTasks(), idAllocator::peek);
+            log.deleteSegmentsThrough(boundary);
+            snapshotLsn = boundary;
+        }
+    }
+    
+    /**
+     * Flushes and closes the write-ahead log, if there is one, after waiting
+     * for a running background snapshot to finish.
+     * The manager must not be modified after it has been closed.
+     */
+    @Override
+    public void close() {
+        if (log != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                log.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to close the write-ahead log", e);
+            }
+        }
+    }
+    
+    /**
+     * Adds a task loaded from a snapshot; its description is indexed in bulk
+     * once the snapshot is loaded.
+     */
+    private void restore(Task task) {
+        tasks.put(task);
+        ids.add(task.getId());
+        statistics.added(task.getStatus());
+        statusIndex.add(task.getId(), task.getStatus());
+        trackDueDate(null, task);
+    }
+    
+    /**
+     * Iterates over the live tasks in ID order without copying them, over a
+     * single version of the tasks if the store keeps versions.
+     */
+    private Iterator<Task> iterateTasks() {
+        TaskView view = tasks.view();
+        return view != null ? view.iterator() : walkTasks();
+    }
+    
+    /**
+     * Iterates over the live tasks in ID order by looking each ID up.
+     */
+    private Iterator<Task> walkTasks() {
+        return new Iterator<>() {
+            private Task next = advance(0);
+            
+            private Task advance(int afterId) {
+                for (int id = ids.next(afterId + 1); id > 0; id = ids.next(id + 1)) {
+                    Task task = tasks.get(id);
+                    if (task != null) {
+                        return task;
+                    }
+                }
+                return null;
+            }
+            
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+            
+            @Override
+            public Task next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                Task current = next;
+                next = advance(current.getId());
+                return current;
+            }
+        };
+    }
+    
+    private int next(int from, String status) {
+        return status == null ? ids.next(from) : statusIndex.next(from, status);
+    }
+    
+    private int previous(int from, String status) {
+        return status == null ? ids.previous(from) : statusIndex.previous(from, status);
+    }
+    
+    /**
+     * Reads a task that the status index holds under the given status.
+     * The index moves a task just before the store publishes the changed
+     * task, so a stale read of a task that has just moved is repeated.
+     */
+    private Task find(int id, String status) {
+        Task task = tasks.get(id);
+        while (task != null && !status.equalsIgnoreCase(task.getStatus()) && statusIndex.contains(id, status)) {
+            Thread.onSpinWait();
+            task = tasks.get(id);
+        }
+        return task != null && status.equalsIgnoreCase(task.getStatus()) ? task : null;
+    }
+    
+    private void insert(Task newTask) {
+        // First, so a status that does not fit fails before anything changed
+        insert(newTask, statusIndex.reserve(newTask.getStatus()));
+    }
+    
+    /**
+     * Adds a new task whose status code is reserved, giving the code back
+     * if the task cannot be logged.
+     */
+    private void insert(Task newTask, short status) {
+        // No other thread can reach the new ID yet, so logging and publishing
+        // before the put keeps the log and the events in order
+        logChange(WriteAheadLog.ADD, newTask, status);
+        publish(TaskEvent.Type.CREATED, newTask);
+        statusIndex.add(newTask.getId(), status);
+        tasks.put(newTask);
+        // After the put, so a due date that fires right away finds the task
+        trackDueDate(null, newTask);
+        statistics.added(newTask.getStatus());
+        searchIndex.add(newTask.getId(), newTask.getDescription());
+        ids.add(newTask.getId());
+    }
+    
+    private boolean changeStatus(int id, String status, long expectedVersion) {
+        return tasks.computeIfPresent(id, task -> {
+            checkVersion(task, expectedVersion);
+            return withStatus(task, status);
+        }) != null;
+    }
+    
+    /**
+     * Makes an overdue task of an open task whose due date fired, unless the
+     * task was closed or given another due date since it was scheduled.
+     */
+    private boolean expire(int id, long dueAt) {
+        boolean[] expired = new boolean[1];
+        tasks.computeIfPresent(id, task -> {
+            if (task.getDueAt() != dueAt || !isOpen(task)) {
+                return task;
+            }
+            expired[0] = true;
+            return withStatus(task, OVERDUE);
+        });
+        return expired[0];
+    }
+    
+    /**
+     * Logs, indexes and publishes a status change; runs in the store's
+     * {@code computeIfPresent} for the task.
+     */
+    private Task withStatus(Task task, String status) {
+        int id = task.getId();
+        // First, so a status that does not fit fails before anything changed
+        short code = statusIndex.reserve(status);
+        Task updated = new Task(id, task.getDescription(), status, task.getVersion() + 1,
+            task.getCreatedAt(), clock.millis(), task.getDueAt());
+        logChange(WriteAheadLog.UPDATE, updated, code);
+        statistics.changed(task.getStatus(), status);
+        publish(TaskEvent.Type.UPDATED, updated);
+        trackDueDate(task, updated);
+        // Last, so the store publishes the task right after the index moved it
+        statusIndex.move(id, code);
+        return updated;
+    }
+    
+    /**
+     * Keeps the timing wheel in step with a task's due date and status: an
+     * open task with a due date is scheduled, any other task is not. Tasks
+     * that never had a due date skip the wheel's lock.
+     * 
+     * @param previous The task before the change, or null for a new task
+     * @param task The task after the change
+     */
+    private void trackDueDate(Task previous, Task task) {
+        if (task.getDueAt() != 0 && isOpen(task)) {
+            dueDates.schedule(task.getId(), task.getDueAt());
+        } else if (previous != null && previous.getDueAt() != 0) {
+            dueDates.cancel(task.getId());
+        }
+    }
+    
+    private static long dueMillis(Instant due) {
+        if (due == null) {
+            return 0;
+        }
+        if (!due.isAfter(Instant.EPOCH)) {
+            throw new IllegalArgumentException("Due date must be after " + Instant.EPOCH);
+        }
+        try {
+            return due.toEpochMilli();
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Due date is too far in the future: " + due);
+        }
+    }
+    
+    private static void checkVersion(Task task, long expectedVersion) {
+        if (expectedVersion != ANY_VERSION && task.getVersion() != expectedVersion) {
+            throw new TaskVersionConflictException(task.getId(), expectedVersion, task.getVersion());
+        }
+    }
+    
+    private boolean remove(int id) {
+        return remove(id, task -> true);
+    }
+    
+    private boolean remove(int id, Predicate<Task> condition) {
+        // Once removed, no update can reach the task, so its status is final
+        // and the delete record is logged after every update to it
+        Task removed = tasks.removeIf(id, condition);
+        if (removed == null) {
+            return false;
+        }
+        logChange(WriteAheadLog.DELETE, id);
+        if (removed.getDueAt() != 0) {
+            dueDates.cancel(id);
+        }
+        ids.remove(id);
+        statistics.removed(removed.getStatus());
+        statusIndex.remove(id);
+        searchIndex.remove(id, removed.getDescription());
+        publish(TaskEvent.Type.DELETED, id, null);
+        return true;
+    }
+    
+    /**
+     * Applies a recovered log record without logging it again.
+     */
+    private void replay(WriteAheadLog.Entry entry) {
+        switch (entry.type()) {
+            case WriteAheadLog.ADD, WriteAheadLog.UPDATE -> {
+                Task task = new Task(entry.id(), entry.description(), entry.status(), entry.version(),
+                    entry.createdAt(), entry.updatedAt(), entry.dueAt());
+                Task previous = tasks.put(task);
+                trackDueDate(previous, task);
+                if (previous == null) {
+                    ids.add(entry.id());
+                    statistics.added(entry.status());
+                    statusIndex.add(entry.id(), entry.status());
+                    searchIndex.add(entry.id(), entry.description());
+                } else {
+                    statistics.changed(previous.getStatus(), entry.status());
+                    statusIndex.move(entry.id(), entry.status());
+                    searchIndex.replace(entry.id(), previous.getDescription(), entry.description());
+                }
+            }
+            case WriteAheadLog.DELETE -> {
+                Task removed = tasks.remove(entry.id());
+                if (removed != null) {
+                    dueDates.cancel(entry.id());
+                    ids.remove(entry.id());
+                    statistics.removed(removed.getStatus());
+                    statusIndex.remove(entry.id());
+                    searchIndex.remove(entry.id(), removed.getDescription());
+                }
+            }
+            case WriteAheadLog.CLEAR -> {
+                ids.clear();
+                tasks.clear();
+                statistics.reset();
+                statusIndex.clear();
+                searchIndex.clear();
+                dueDates.clear();
+            }
+            default -> throw new IllegalStateException("Unknown log record type " + entry.type());
+        }
+    }
+    
+    private static boolean isCompleted(Task task) {
+        return TaskStatistics.COMPLETED.equalsIgnoreCase(task.getStatus());
+    }
+    
+    private static boolean isOpen(Task task) {
+        return !isCompleted(task) && !OVERDUE.equalsIgnoreCase(task.getStatus());
+    }
+    
+    private void publish(TaskEvent.Type type, Task task) {
+        publish(type, task.getId(), task);
+    }
+    
+    private void publish(TaskEvent.Type type, int id, Task task) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        // Tasks are immutable, so listeners see the task as of this change without a copy
+        TaskEvent event = new TaskEvent(eventSequence.incrementAndGet(), type, id, task);
+        for (Consumer<TaskEvent> listener : listeners) {
+            try {
+                listener.accept(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Change listener failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Reads the clock if operations are being timed; returns 0 otherwise.
+     */
+    private long startTiming() {
+        return recorder == OperationRecorder.NONE ? 0 : System.nanoTime();
+    }
+    
+    private void stopTiming(TaskOperation operation, long start) {
+        if (start != 0) {
+            recorder.record(operation, System.nanoTime() - start);
+        }
+    }
+    
+    private static TaskStore createStore(TaskLayout layout, int initialCapacity) {
+        return switch (layout) {
+            case OBJECTS -> new ConcurrentTaskStore(initialCapacity);
+            case COMPACT -> new CompactTaskStore();
+            case TIERED -> new TieredTaskStore(initialCapacity);
+            case VERSIONED -> new VersionedTaskStore();
+        };
+    }
+    
+    private void logChange(byte type, Task task) {
+        if (log != null) {
+            log.append(type, task.getId(), task.getDescription(), task.getStatus(), task.getVersion(),
+                task.getCreatedAt(), task.getUpdatedAt(), task.getDueAt());
+        }
+    }
+    
+    /**
+     * Logs a change whose status code is reserved, giving the code back if
+     * the change cannot be logged.
+     */
+    private void logChange(byte type, Task task, short status) {
+        try {
+            logChange(type, task);
+        } catch (RuntimeException | Error e) {
+            statusIndex.release(status);
+            throw e;
+        }
+    }
+    
+    private void release(short[] codes, int from, int to) {
+        for (int i = from; i < to; i++) {
+            statusIndex.release(codes[i]);
+        }
+    }
+    
+    private void logChange(byte type, int id) {
+        if (log != null) {
+            log.append(type, id, null, null, 0, 0, 0, 0);
+        }
+    }
+    
+    private void awaitDurable() {
+        if (log != null) {
+            log.sync();
+            if (snapshotThreshold > 0 && log.lastLsn() - snapshotLsn >= snapshotThreshold
+                    && snapshotScheduled.compareAndSet(false, true)) {
+                scheduleSnapshot();
+            }
+        }
+    }
+    
+    private void scheduleSnapshot() {
+        try {
+            snapshotter.execute(() -> {
+                try {
+                    snapshot();
+                } catch (IOException | RuntimeException e) {
+                    LOGGER.log(System.Logger.Level.WARNING, "Background snapshot failed", e);
+                } finally {
+                    snapshotScheduled.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            snapshotScheduled.set(false); // closing
+        }
+    }
+    
+    /**
+     * Starts a background compaction pass once the store holds more garbage
+     * than live data and at least {@value #MIN_COMPACTION_GARBAGE} bytes of it.
+     * The pass runs in short steps, so writers to the store wait for at most
+     * one step.
+     */
+    private void maybeCompact() {
+        long garbage = tasks.garbageBytes();
+        if (garbage < MIN_COMPACTION_GARBAGE || garbage <= tasks.liveBytes()
+                || !compactionScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        COMPACTOR.execute(() -> {
+            try {
+                while (tasks.compact()) {
+                    Thread.yield();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.log(System.Logger.Level.WARNING, "Background compaction failed", e);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+    
+    /**
+     * Runs a mutation that logs and applies a change, then waits for its log
+     * record to become durable. While the change is between being logged and
+     * being applied it is counted as in flight, so that a snapshot never covers
+     * a log record whose effect it could have missed. The collection version
+     * moves forward once the change has been applied.
+     */
+    private boolean mutate(BooleanSupplier change) {
+        return mutate(false, change);
+    }
+    
+    /**
+     * Runs a mutation as {@link #mutate(BooleanSupplier)} does, alone if
+     * {@code exclusive} is set and otherwise alongside every other mutation
+     * that is not.
+     */
+    private boolean mutate(boolean exclusive, BooleanSupplier change) {
+        if (log == null) {
+            boolean changed = exclusive ? applyAlone(change) : apply(change);
+            if (changed) {
+                version.incrementAndGet();
+                maybeCompact();
+            }
+            return changed;
+        }
+        int epoch = mutationEpoch;
+        mutationsInFlight[epoch].increment();
+        boolean changed;
+        try {
+            changed = exclusive ? applyAlone(change) : apply(change);
+        } finally {
+            mutationsInFlight[epoch].decrement();
+        }
+        if (changed) {
+            version.incrementAndGet();
+            maybeCompact();
+            if (!batching.get()) {
+                awaitDurable();
+            }
+        }
+        return changed;
+    }
+    
+    /**
+     * Applies a change alongside other changes, after any clear in progress.
+     * The change counts itself in before it checks for a clear, and a clear
+     * raises its flag before it reads the counts, so one of the two always
+     * sees the other. A thread counts itself in and out of the same stripe,
+     * so no stripe ever drops below the changes still running in it.
+     */
+    private boolean apply(BooleanSupplier change) {
+        int stripe = (int) (Thread.currentThread().threadId() & (GUARD_STRIPES - 1)) * GUARD_STRIDE;
+        mutating.getAndIncrement(stripe);
+        while (clearing) {
+            mutating.getAndDecrement(stripe);
+            awaitClear();
+            mutating.getAndIncrement(stripe);
+        }
+        try {
+            return change.getAsBoolean();
+        } finally {
+            mutating.getAndDecrement(stripe);
+        }
+    }
+    
+    /**
+     * Applies a change once every change in progress has finished, holding
+     * back new ones until it is done.
+     */
+    private boolean applyAlone(BooleanSupplier change) {
+        synchronized (clearMonitor) {
+            clearing = true;
+            try {
+                for (int stripe = 0; stripe < GUARD_STRIPES * GUARD_STRIDE; stripe += GUARD_STRIDE) {
+                    while (mutating.get(stripe) != 0) {
+                        Thread.yield();
+                    }
+                }
+                return change.getAsBoolean();
+            } finally {
+                clearing = false;
+                clearMonitor.notifyAll();
+            }
+        }
+    }
+    
+    private void awaitClear() {
+        boolean interrupted = false;
+        synchronized (clearMonitor) {
+            while (clearing) {
+                try {
+                    clearMonitor.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,52 +1,231 @@
 package io.github.hillmatthew2000.do_it_to_it;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
 
 /**
  * Singleton ToDoManager to ensure data consistency across the application.
+ * Spring creates this component before the controller so the storage settings
+ * from application.properties are in place when the manager is first used.
  */
 @Component
 class SingletonToDoManager {
     private static ToDoManager instance;
+    private static Path storageDirectory;
+    private static FsyncPolicy fsyncPolicy = FsyncPolicy.BATCHED;
+    private static TaskLayout taskLayout = TaskLayout.OBJECTS;
+    
+    SingletonToDoManager(@Value("${todo.storage.directory:}") String directory,
+                         @Value("${todo.storage.fsync:BATCHED}") FsyncPolicy fsync,
+                         @Value("${todo.storage.layout:OBJECTS}") TaskLayout layout) {
+        configure(directory.isBlank() ? null : Path.of(directory), fsync, layout);
+    }
+    
+    /**
+     * Sets where the manager persists its tasks. Only affects a manager that
+     * has not been created yet.
+     * 
+     * @param directory The write-ahead log directory, or null to keep tasks in memory
+     * @param fsync When log records are forced to disk
+     * @param layout How tasks are kept in memory
+     */
+    static synchronized void configure(Path directory, FsyncPolicy fsync, TaskLayout layout) {
+        storageDirectory = directory;
+        fsyncPolicy = fsync;
+        taskLayout = layout;
+    }
     
     public static synchronized ToDoManager getInstance() {
         if (instance == null) {
-            instance = new ToDoManager();
-            // Add some sample tasks for demonstration
-            instance.addTask("Learn Spring Boot");
-            instance.addTask("Build a REST API");
-            instance.addTask("Deploy the application");
+            instance = createManager();
+            if (instance.isEmpty()) {
+                // Add some sample tasks for demonstration
+                instance.addTask("Learn Spring Boot");
+                instance.addTask("Build a REST API");
+                instance.addTask("Deploy the application");
+            }
         }
         return instance;
     }
+    
+    private static ToDoManager createManager() {
+        if (storageDirectory == null) {
+            return new ToDoManager(taskLayout);
+        }
+        try {
+            return ToDoManager.open(storageDirectory, fsyncPolicy, ToDoManager.DEFAULT_SNAPSHOT_THRESHOLD, taskLayout);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open task storage in " + storageDirectory, e);
+        }
+    }
+    
+    @PreDestroy
+    void close() {
+        synchronized (SingletonToDoManager.class) {
+            if (instance != null) {
+                instance.close();
+                instance = null;
+            }
+        }
+    }
 }
 
 /**
  * REST Controller for the To-Do application.
  * Provides web endpoints for managing tasks via HTTP requests.
+ * 
+ * GET responses carry an ETag built from the manager's collection version, or
+ * from the task's version for a single task. A request whose If-None-Match
+ * header matches is answered with 304 Not Modified before any task is read.
+ * 
+ * Updates to a single task can be made conditional by sending the task's
+ * ETag in an If-Match header, or its version in the request body. If the task
+ * has changed since, the update is rejected with 409 Conflict and the current
+ * version, and the client should read the task again before retrying.
+ * 
+ * Every endpoint works on one of the {@link TaskPartitions}, named by the
+ * path {@code /api/partitions/{partition}/todos} or the X-Todo-Partition
+ * header; {@code /api/todos} without the header is the default partition.
+ * The {@link TaskPartitionResolver} passes handlers the partition's manager.
+ * 
+ * The task list, its pages and the statistics are answered from the
+ * {@link TaskResponseCache} while the partition has not changed.
  */
 @RestController
-@RequestMapping("/api/todos")
+@DependsOn("singletonToDoManager")
+@RequestMapping({"/api/todos", "/api/partitions/{partition}/todos"})
 @CrossOrigin(origins = "*")
 public class TodoController {
     
-    private final ToDoManager todoManager;
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int DEFAULT_SEARCH_LIMIT = 20;
+    
+    /** Number of batch items parsed before they are applied to the store together. */
+    private static final int BATCH_CHUNK_SIZE = 1000;
     
-    public TodoController() {
-        this.todoManager = SingletonToDoManager.getInstance();
+    private static final JsonFactory JSON = new JsonFactory();
+    
+    /** Number of import errors listed in the response; the rest are only counted. */
+    private static final int MAX_REPORTED_IMPORT_ERRORS = 100;
+    
+    /** Expected version for an If-Match header that no task version can satisfy. */
+    private static final long UNMATCHED_VERSION = -1;
+    
+    private final TaskPartitions partitions;
+    private final TodoMetrics metrics;
+    private final TaskResponseCache responses;
+    
+    // Distinguishes this process's ETags from those of an earlier process whose versions may repeat
+    private final String etagPrefix = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    
+    public TodoController(TaskPartitions partitions, TodoMetrics metrics, TaskResponseCache responses) {
+        this.partitions = partitions;
+        this.metrics = metrics;
+        this.responses = responses;
     }
     
     /**
-     * Get all tasks
+     * Get all tasks, or one page of tasks when any paging parameter is given
      * GET /api/todos
+     * GET /api/todos?limit=50&cursor=120&status=Pending&sort=desc
+     * GET /api/todos?status=Completed&fromId=1000&toId=2000
      */
     @GetMapping
-    public List<Task> getAllTasks() {
-        return todoManager.getAllTasks();
+    public ResponseEntity<?> getAllTasks(ToDoManager todoManager,
+                                         @RequestParam(required = false) Integer limit,
+                                         @RequestParam(required = false) Integer cursor,
+                                         @RequestParam(required = false) String status,
+                                         @RequestParam(required = false) String sort,
+                                         @RequestParam(required = false) Integer fromId,
+                                         @RequestParam(required = false) Integer toId,
+                                         WebRequest request) {
+        long version = todoManager.getVersion();
+        if (notModified(request, version)) {
+            return null;
+        }
+        if (limit == null && cursor == null && status == null && sort == null && fromId == null && toId == null) {
+            return json(responses.get(todoManager, "list", version, todoManager::getAllTasks));
+        }
+        
+        boolean newestFirst;
+        if (sort == null || sort.equalsIgnoreCase("asc")) {
+            newestFirst = false;
+        } else if (sort.equalsIgnoreCase("desc")) {
+            newestFirst = true;
+        } else {
+            metrics.invalid("getAllTasks", 1);
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "Sort must be 'asc' or 'desc'"));
+        }
+        
+        int from = cursor != null ? cursor : 0;
+        int size = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        String filter = status != null && !status.isBlank() ? status.trim() : null;
+        int first = fromId != null ? fromId : 1;
+        int last = toId != null ? toId : Integer.MAX_VALUE;
+        try {
+            String query = "page " + from + " " + size + " " + newestFirst + " " + filter + " " + first + " " + last;
+            return json(responses.get(todoManager, query, version,
+                () -> todoManager.getTasks(from, size, filter, newestFirst, first, last)));
+        } catch (IllegalArgumentException e) {
+            metrics.invalid("getAllTasks", 1);
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    /**
+     * Search task descriptions by word prefixes, best match first
+     * GET /api/todos/search?q=deploy%20app&limit=20
+     */
+    @GetMapping("/search")
+    public ResponseEntity<?> searchTasks(ToDoManager todoManager,
+                                         @RequestParam String q,
+                                         @RequestParam(required = false) Integer limit,
+                                         WebRequest request) {
+        if (notModified(request, todoManager.getVersion())) {
+            return null;
+        }
+        try {
+            List<SearchHit> results = todoManager.searchTasks(q, limit != null ? limit : DEFAULT_SEARCH_LIMIT);
+            return ResponseEntity.ok(Map.of(
+                "query", q,
+                "results", results
+            ));
+        } catch (IllegalArgumentException e) {
+            metrics.invalid("searchTasks", 1);
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
     }
     
     /**
@@ -54,28 +233,37 @@ public class TodoController {
      * GET /api/todos/{id}
      */
     @GetMapping("/{id}")
-    public ResponseEntity<Task> getTaskById(@PathVariable int id) {
+    public ResponseEntity<Task> getTaskById(ToDoManager todoManager, @PathVariable int id, WebRequest request) {
         Task task = todoManager.findTaskById(id);
-        if (task != null) {
-            return ResponseEntity.ok(task);
+        if (task == null) {
+            metrics.notFound("getTaskById", 1);
+            return ResponseEntity.notFound().build();
+        }
+        if (notModified(request, task.getVersion())) {
+            return null;
         }
-        return ResponseEntity.notFound().build();
+        return ResponseEntity.ok(task);
     }
     
     /**
-     * Create a new task
+     * Create a new task, optionally with a due date as an ISO-8601 instant or epoch milliseconds
      * POST /api/todos
+     * Body: {"description": "...", "dueAt": "2025-12-31T17:00:00Z"}
      */
     @PostMapping
-    public ResponseEntity<Map<String, Object>> createTask(@RequestBody Map<String, String> request) {
+    public ResponseEntity<Map<String, Object>> createTask(Supplier<ToDoManager> partition,
+                                                          @RequestBody Map<String, String> request) {
         String description = request.get("description");
         if (description == null || description.trim().isEmpty()) {
+            metrics.invalid("createTask", 1);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Description is required"));
         }
         
         try {
-            int taskId = todoManager.addTask(description.trim());
+            Instant dueAt = parseDue(request.get("dueAt"));
+            ToDoManager todoManager = partition.get();
+            int taskId = todoManager.addTask(description.trim(), dueAt);
             Task newTask = todoManager.findTaskById(taskId);
             return ResponseEntity.ok(Map.of(
                 "message", "Task created successfully",
@@ -83,25 +271,32 @@ public class TodoController {
                 "task", newTask
             ));
         } catch (IllegalArgumentException e) {
+            metrics.invalid("createTask", 1);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", e.getMessage()));
         }
     }
     
     /**
-     * Update a task's description
+     * Update a task's description, optionally only if it is at a given version
      * PUT /api/todos/{id}
+     * Body: {"description": "...", "version": 3}
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateTask(@PathVariable int id, @RequestBody Map<String, String> request) {
+    public ResponseEntity<Map<String, Object>> updateTask(ToDoManager todoManager,
+                                                          @PathVariable int id, @RequestBody Map<String, String> request,
+                                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                          WebRequest webRequest) {
         String description = request.get("description");
         if (description == null || description.trim().isEmpty()) {
+            metrics.invalid("updateTask", 1);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", "Description is required"));
         }
         
         try {
-            boolean updated = todoManager.updateTaskDescription(id, description.trim());
+            long expectedVersion = expectedVersion(webRequest, request.get("version"), ifMatch);
+            boolean updated = todoManager.updateTaskDescription(id, description.trim(), expectedVersion);
             if (updated) {
                 Task updatedTask = todoManager.findTaskById(id);
                 return ResponseEntity.ok(Map.of(
@@ -109,21 +304,32 @@ public class TodoController {
                     "task", updatedTask
                 ));
             } else {
+                metrics.notFound("updateTask", 1);
                 return ResponseEntity.notFound().build();
             }
+        } catch (TaskVersionConflictException e) {
+            return conflict(webRequest, e);
         } catch (IllegalArgumentException e) {
+            metrics.invalid("updateTask", 1);
             return ResponseEntity.badRequest()
                 .body(Map.of("error", e.getMessage()));
         }
     }
     
     /**
-     * Mark a task as completed
+     * Mark a task as completed, optionally only if it is at a given version
      * PATCH /api/todos/{id}/complete
      */
     @PatchMapping("/{id}/complete")
-    public ResponseEntity<Map<String, Object>> markTaskCompleted(@PathVariable int id) {
-        boolean updated = todoManager.markTaskCompleted(id);
+    public ResponseEntity<Map<String, Object>> markTaskCompleted(ToDoManager todoManager, @PathVariable int id,
+                                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                 WebRequest request) {
+        boolean updated;
+        try {
+            updated = todoManager.markTaskCompleted(id, expectedVersion(request, null, ifMatch));
+        } catch (TaskVersionConflictException e) {
+            return conflict(request, e);
+        }
         if (updated) {
             Task updatedTask = todoManager.findTaskById(id);
             return ResponseEntity.ok(Map.of(
@@ -131,39 +337,546 @@ public class TodoController {
                 "task", updatedTask
             ));
         } else {
+            metrics.notFound("markTaskCompleted", 1);
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * Set a task's due date, optionally only if it is at a given version
+     * PUT /api/todos/{id}/due
+     * Body: {"dueAt": "2025-12-31T17:00:00Z", "version": 3}
+     */
+    @PutMapping("/{id}/due")
+    public ResponseEntity<Map<String, Object>> setTaskDueDate(ToDoManager todoManager,
+                                                              @PathVariable int id, @RequestBody Map<String, String> request,
+                                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                              WebRequest webRequest) {
+        String dueAt = request.get("dueAt");
+        if (dueAt == null || dueAt.trim().isEmpty()) {
+            metrics.invalid("setTaskDueDate", 1);
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", "dueAt is required"));
+        }
+        return changeDueDate(todoManager, id, dueAt, request.get("version"), ifMatch, webRequest, "setTaskDueDate");
+    }
+    
+    /**
+     * Clear a task's due date, optionally only if it is at a given version
+     * DELETE /api/todos/{id}/due
+     */
+    @DeleteMapping("/{id}/due")
+    public ResponseEntity<Map<String, Object>> clearTaskDueDate(ToDoManager todoManager, @PathVariable int id,
+                                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                                                WebRequest webRequest) {
+        return changeDueDate(todoManager, id, null, null, ifMatch, webRequest, "clearTaskDueDate");
+    }
+    
+    /**
+     * Delete every completed task
+     * DELETE /api/todos/completed
+     */
+    @DeleteMapping("/completed")
+    public ResponseEntity<Map<String, Object>> purgeCompletedTasks(ToDoManager todoManager) {
+        return ResponseEntity.ok(Map.of("deleted", todoManager.purgeCompletedTasks()));
+    }
+    
     /**
      * Delete a task
      * DELETE /api/todos/{id}
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Map<String, String>> deleteTask(@PathVariable int id) {
+    public ResponseEntity<Map<String, String>> deleteTask(ToDoManager todoManager, @PathVariable int id) {
         boolean deleted = todoManager.deleteTask(id);
         if (deleted) {
             return ResponseEntity.ok(Map.of("message", "Task deleted successfully"));
         } else {
+            metrics.notFound("deleteTask", 1);
             return ResponseEntity.notFound().build();
         }
     }
     
+    /**
+     * Create many tasks in one request
+     * POST /api/todos/batch
+     * Body: [{"description": "..."}, "...", ...]
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> createTasks(Supplier<ToDoManager> partition, InputStream body) {
+        return applyBatch(body, "createTasks", "Batch create processed", TodoController::readDescription,
+            (descriptions, indexes, results) -> {
+                int[] created = partition.get().addTasks(descriptions);
+                for (int i = 0; i < created.length; i++) {
+                    results.set(indexes[i], BatchItemResult.succeeded(indexes[i], created[i]));
+                }
+            });
+    }
+    
+    /**
+     * Mark many tasks as completed in one request
+     * PATCH /api/todos/batch/complete
+     * Body: [1, 2, 3]
+     */
+    @PatchMapping("/batch/complete")
+    public ResponseEntity<Map<String, Object>> markTasksCompleted(ToDoManager todoManager, InputStream body) {
+        return applyBatch(body, "markTasksCompleted", "Batch complete processed", TodoController::readTaskId,
+            (ids, indexes, results) -> reportById(ids, indexes, todoManager.markTasksCompleted(toArray(ids)), results));
+    }
+    
+    /**
+     * Delete many tasks in one request
+     * POST /api/todos/batch/delete
+     * Body: [1, 2, 3]
+     */
+    @PostMapping("/batch/delete")
+    public ResponseEntity<Map<String, Object>> deleteTasks(ToDoManager todoManager, InputStream body) {
+        return applyBatch(body, "deleteTasks", "Batch delete processed", TodoController::readTaskId,
+            (ids, indexes, results) -> reportById(ids, indexes, todoManager.deleteTasks(toArray(ids)), results));
+    }
+    
+    /**
+     * Export every task as newline-delimited JSON, one task per line, written
+     * straight from the store so memory use does not grow with the task count
+     * GET /api/todos/export
+     */
+    @GetMapping("/export")
+    public void exportTasks(ToDoManager todoManager, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"tasks.ndjson\"");
+        try (JsonGenerator generator = JSON.createGenerator(response.getOutputStream())) {
+            generator.setRootValueSeparator(null); // lines end in a newline instead
+            todoManager.forEachTask(task -> writeTask(generator, task));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Import tasks from newline-delimited JSON, one object per line with a
+     * description and optionally a status and due date, such as an export. Imported tasks
+     * get new IDs. Lines are parsed as they arrive and added in chunks; if the
+     * body turns out to be malformed, the tasks before the error stay imported.
+     * A chunk that would bring in more than {@value ToDoManager#MAX_STATUSES}
+     * statuses is rejected, and the import stops there with a 400.
+     * POST /api/todos/import
+     * Body: {"description": "...", "status": "...", "dueAt": ...}\n{"description": "..."}\n...
+     */
+    @PostMapping("/import")
+    public ResponseEntity<Map<String, Object>> importTasks(Supplier<ToDoManager> partition, InputStream body) {
+        List<String> descriptions = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<String> statuses = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Instant> dues = new ArrayList<>(BATCH_CHUNK_SIZE);
+        List<Map<String, Object>> errors = new ArrayList<>();
+        long imported = 0;
+        long failed = 0;
+        String error = null;
+        try (JsonParser parser = JSON.createParser(body)) {
+            while (parser.nextToken() != null) {
+                int line = parser.currentTokenLocation().getLineNr();
+                try {
+                    readImportedTask(parser, descriptions, statuses, dues);
+                } catch (IllegalArgumentException e) {
+                    failed++;
+                    if (errors.size() < MAX_REPORTED_IMPORT_ERRORS) {
+                        errors.add(Map.of("line", line, "error", e.getMessage()));
+                    }
+                }
+                if (descriptions.size() == BATCH_CHUNK_SIZE) {
+                    imported += partition.get().addTasks(descriptions, statuses, dues).length;
+                    descriptions.clear();
+                    statuses.clear();
+                    dues.clear();
+                }
+            }
+        } catch (IOException e) {
+            error = "Malformed import: " + e.getMessage();
+        } catch (IllegalArgumentException e) {
+            // A chunk whose statuses do not fit is not added, and ends the import
+            error = e.getMessage();
+            failed += descriptions.size();
+            descriptions.clear();
+        }
+        if (!descriptions.isEmpty()) {
+            try {
+                imported += partition.get().addTasks(descriptions, statuses, dues).length;
+            } catch (IllegalArgumentException e) {
+                error = error != null ? error : e.getMessage();
+                failed += descriptions.size();
+            }
+        }
+        
+        metrics.invalid("importTasks", failed + (error != null ? 1 : 0));
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", error,
+                "imported", imported,
+                "failed", failed,
+                "errors", errors
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
+            "message", "Import processed",
+            "imported", imported,
+            "failed", failed,
+            "errors", errors
+        ));
+    }
+    
+    /**
+     * Stream task changes as server-sent events: a "ready" event first, then
+     * "created", "updated", "deleted" and "cleared" events carrying the change,
+     * and "resync" if the client fell too far behind and must reload the list
+     * GET /api/todos/events
+     */
+    @GetMapping(path = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(ToDoManager todoManager) {
+        return partitions.events(todoManager).subscribe();
+    }
+    
     /**
      * Get application statistics
      * GET /api/todos/stats
      */
     @GetMapping("/stats")
-    public Map<String, Object> getStats() {
-        List<Task> allTasks = todoManager.getAllTasks();
-        long completedTasks = allTasks.stream()
-            .filter(task -> "Completed".equalsIgnoreCase(task.getStatus()))
-            .count();
+    public ResponseEntity<byte[]> getStats(ToDoManager todoManager, WebRequest request) {
+        long version = todoManager.getVersion();
+        if (notModified(request, version)) {
+            return null;
+        }
+        return json(responses.get(todoManager, "stats", version, () -> {
+            int totalTasks = todoManager.getTaskCount();
+            long completedTasks = todoManager.getCompletedTaskCount();
+            
+            return Map.of(
+                "totalTasks", totalTasks,
+                "completedTasks", completedTasks,
+                "pendingTasks", totalTasks - completedTasks,
+                "byStatus", todoManager.getTaskCountsByStatus()
+            );
+        }));
+    }
+    
+    /**
+     * Reports a request naming an invalid or missing partition, or two different ones
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<Map<String, String>> rejectPartition(ResponseStatusException e) {
+        if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+            metrics.notFound("partition", 1);
+        } else {
+            metrics.invalid("partition", 1);
+        }
+        return ResponseEntity.status(e.getStatusCode())
+            .body(Map.of("error", e.getReason()));
+    }
+    
+    /**
+     * Works out the version an update expects from the body's version field or,
+     * if there is none, the If-Match header. An ETag from another process
+     * cannot be checked against the current versions, so it never matches.
+     */
+    private long expectedVersion(WebRequest request, String version, String ifMatch) {
+        if (version != null) {
+            try {
+                long expected = Long.parseLong(version.trim());
+                if (expected > 0) {
+                    return expected;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException("Version must be a positive integer");
+        }
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return ToDoManager.ANY_VERSION;
+        }
+        String prefix = "\"" + etagPrefix(request);
+        String tag = ifMatch.trim();
+        if (tag.startsWith(prefix) && tag.endsWith("\"")) {
+            try {
+                return Long.parseLong(tag.substring(prefix.length(), tag.length() - 1));
+            } catch (NumberFormatException e) {
+                // not one of our ETags
+            }
+        }
+        return UNMATCHED_VERSION;
+    }
+    
+    private ResponseEntity<Map<String, Object>> conflict(WebRequest request, TaskVersionConflictException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+            .eTag(etag(request, e.getCurrentVersion()))
+            .body(Map.of(
+                "error", "Task has been modified since it was read",
+                "currentVersion", e.getCurrentVersion()
+            ));
+    }
+    
+    private static ResponseEntity<byte[]> json(byte[] body) {
+        return ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(body);
+    }
+    
+    private String etag(WebRequest request, long version) {
+        return "\"" + etagPrefix(request) + version + "\"";
+    }
+    
+    /**
+     * Versions of different partitions overlap, so the ETags of a partition
+     * other than the default one also carry its name.
+     */
+    private String etagPrefix(WebRequest request) {
+        Object partition = request.getAttribute(TaskPartitionResolver.PARTITION_ATTRIBUTE, WebRequest.SCOPE_REQUEST);
+        if (partition == null || partition.equals(TaskPartitions.DEFAULT_PARTITION)) {
+            return etagPrefix + "-";
+        }
+        return etagPrefix + "-" + partition + "-";
+    }
+    
+    /**
+     * Sets the ETag for the given version and checks it against the request's
+     * If-None-Match header. When this returns true the response has become a
+     * 304 and the handler returns null.
+     */
+    private boolean notModified(WebRequest request, long version) {
+        return request.checkNotModified(etag(request, version));
+    }
+    
+    /**
+     * Reads one item of a batch; throws IllegalArgumentException if the item is invalid.
+     */
+    @FunctionalInterface
+    private interface BatchItemReader<T> {
+        T read(JsonParser parser) throws IOException;
+    }
+    
+    /**
+     * Applies a chunk of valid batch items and fills in their results.
+     */
+    @FunctionalInterface
+    private interface BatchChunk<T> {
+        void apply(List<T> items, int[] indexes, List<BatchItemResult> results);
+    }
+    
+    /**
+     * Parses a JSON array from the request body one item at a time and applies
+     * the valid items in chunks, so the whole body is never held in memory.
+     * If the body turns out to be malformed, the items before the error have
+     * already been applied and are reported together with the error.
+     */
+    private <T> ResponseEntity<Map<String, Object>> applyBatch(InputStream body, String endpoint, String message,
+                                                                BatchItemReader<T> reader, BatchChunk<T> chunk) {
+        List<BatchItemResult> results = new ArrayList<>();
+        List<T> pending = new ArrayList<>();
+        int[] pendingIndexes = new int[BATCH_CHUNK_SIZE];
+        String error = null;
+        try (JsonParser parser = JSON.createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                metrics.invalid(endpoint, 1);
+                return ResponseEntity.badRequest()
+                    .body(Map.of("error", "Request body must be a JSON array"));
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (parser.currentToken() == null) {
+                    throw new IOException("Unexpected end of request body");
+                }
+                int index = results.size();
+                try {
+                    T item = reader.read(parser);
+                    results.add(null); // filled in when the chunk is applied
+                    pendingIndexes[pending.size()] = index;
+                    pending.add(item);
+                } catch (IllegalArgumentException e) {
+                    results.add(BatchItemResult.failed(index, null, e.getMessage()));
+                }
+                if (pending.size() == BATCH_CHUNK_SIZE) {
+                    chunk.apply(pending, pendingIndexes, results);
+                    pending.clear();
+                }
+            }
+        } catch (IOException e) {
+            error = "Malformed batch request: " + e.getMessage();
+        }
+        if (!pending.isEmpty()) {
+            chunk.apply(pending, pendingIndexes, results);
+        }
         
-        return Map.of(
-            "totalTasks", allTasks.size(),
-            "completedTasks", completedTasks,
-            "pendingTasks", allTasks.size() - completedTasks
-        );
+        long succeeded = results.stream().filter(BatchItemResult::success).count();
+        long missing = results.stream().filter(result -> result.taskId() != null && !result.success()).count();
+        metrics.notFound(endpoint, missing);
+        metrics.invalid(endpoint, results.size() - succeeded - missing + (error != null ? 1 : 0));
+        if (error != null) {
+            return ResponseEntity.badRequest().body(Map.of(
+                "error", error,
+                "succeeded", succeeded,
+                "failed", results.size() - succeeded,
+                "results", results
+            ));
+        }
+        return ResponseEntity.ok(Map.of(
+            "message", message,
+            "succeeded", succeeded,
+            "failed", results.size() - succeeded,
+            "results", results
+        ));
     }
-}
\ No newline at end of file
+    
+    private static String readDescription(JsonParser parser) throws IOException {
+        String description = null;
+        if (parser.currentToken() == JsonToken.VALUE_STRING) {
+            description = parser.getText();
+        } else if (parser.currentToken() == JsonToken.START_OBJECT) {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals("description") && value == JsonToken.VALUE_STRING) {
+                    description = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("Description is required");
+        }
+        return description.trim();
+    }
+    
+    /**
+     * Reads one line of an import into the description, status and due date
+     * lists; the lists are left unchanged if the line is invalid.
+     */
+    private static void readImportedTask(JsonParser parser, List<String> descriptions, List<String> statuses,
+                                         List<Instant> dues) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            throw new IllegalArgumentException("Each line must be a JSON object");
+        }
+        String description = null;
+        String status = null;
+        String due = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("description") && value == JsonToken.VALUE_STRING) {
+                description = parser.getText();
+            } else if (field.equals("status") && value == JsonToken.VALUE_STRING) {
+                status = parser.getText();
+            } else if (field.equals("dueAt") && (value == JsonToken.VALUE_STRING || value == JsonToken.VALUE_NUMBER_INT)) {
+                due = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("Description is required");
+        }
+        if (status != null && status.trim().isEmpty()) {
+            throw new IllegalArgumentException("Status must not be empty");
+        }
+        Instant dueAt = parseDue(due);
+        descriptions.add(description.trim());
+        statuses.add(status != null ? status.trim() : "Pending");
+        dues.add(dueAt);
+    }
+    
+    /**
+     * Parses a due date given as an ISO-8601 instant or as epoch milliseconds.
+     * 
+     * @return The due date, or null if none is given
+     * @throws IllegalArgumentException if the due date is not in either form,
+     *         not after the epoch, or beyond what epoch milliseconds can hold
+     */
+    private static Instant parseDue(String due) {
+        if (due == null || due.trim().isEmpty()) {
+            return null;
+        }
+        String text = due.trim();
+        Instant dueAt;
+        try {
+            dueAt = text.chars().allMatch(Character::isDigit)
+                ? Instant.ofEpochMilli(Long.parseLong(text))
+                : Instant.parse(text);
+            dueAt.toEpochMilli();
+        } catch (NumberFormatException | DateTimeException | ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid due date: " + text);
+        }
+        // Checked here as well as by the manager, so an import reports it against its line
+        if (!dueAt.isAfter(Instant.EPOCH)) {
+            throw new IllegalArgumentException("Due date must be after " + Instant.EPOCH);
+        }
+        return dueAt;
+    }
+    
+    private ResponseEntity<Map<String, Object>> changeDueDate(ToDoManager todoManager, int id, String dueAt,
+                                                              String version, String ifMatch,
+                                                              WebRequest webRequest, String endpoint) {
+        try {
+            long expectedVersion = expectedVersion(webRequest, version, ifMatch);
+            boolean updated = todoManager.setTaskDueDate(id, parseDue(dueAt), expectedVersion);
+            if (updated) {
+                Task updatedTask = todoManager.findTaskById(id);
+                return ResponseEntity.ok(Map.of(
+                    "message", "Task due date updated successfully",
+                    "task", updatedTask
+                ));
+            } else {
+                metrics.notFound(endpoint, 1);
+                return ResponseEntity.notFound().build();
+            }
+        } catch (TaskVersionConflictException e) {
+            return conflict(webRequest, e);
+        } catch (IllegalArgumentException e) {
+            metrics.invalid(endpoint, 1);
+            return ResponseEntity.badRequest()
+                .body(Map.of("error", e.getMessage()));
+        }
+    }
+    
+    private static void writeTask(JsonGenerator generator, Task task) {
+        try {
+            generator.writeStartObject();
+            generator.writeNumberField("id", task.getId());
+            generator.writeStringField("description", task.getDescription());
+            generator.writeStringField("status", task.getStatus());
+            generator.writeNumberField("version", task.getVersion());
+            if (task.getCreatedAt() != 0) {
+                generator.writeNumberField("createdAt", task.getCreatedAt());
+            }
+            if (task.getUpdatedAt() != 0) {
+                generator.writeNumberField("updatedAt", task.getUpdatedAt());
+            }
+            if (task.getDueAt() != 0) {
+                generator.writeNumberField("dueAt", task.getDueAt());
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private static Integer readTaskId(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_INT
+                && parser.getNumberType() == JsonParser.NumberType.INT) {
+            return parser.getIntValue();
+        }
+        parser.skipChildren();
+        throw new IllegalArgumentException("Task ID must be an integer");
+    }
+    
+    private static void reportById(List<Integer> ids, int[] indexes, boolean[] applied,
+                                   List<BatchItemResult> results) {
+        for (int i = 0; i < applied.length; i++) {
+            results.set(indexes[i], applied[i]
+                ? BatchItemResult.succeeded(indexes[i], ids.get(i))
+                : BatchItemResult.failed(indexes[i], ids.get(i), "Task not found"));
+        }
+    }
+    
+    private static int[] toArray(List<Integer> ids) {
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+}
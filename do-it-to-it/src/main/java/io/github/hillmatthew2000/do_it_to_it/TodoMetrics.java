@@ -0,0 +1,179 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Micrometer metrics for the {@link ToDoManager} and the REST API.
+ * <ul>
+ * <li>{@code todo.manager.operations}: a timer with a histogram per manager
+ *     operation, tagged with the method name, covering every manager given
+ *     to {@link #track};</li>
+ * <li>{@code todo.tasks}, {@code todo.tasks.completed} and
+ *     {@code todo.tasks.by.status}: gauges read from the counters of every
+ *     manager given to {@link #track}, tagged with its partition;</li>
+ * <li>{@code todo.requests.not.found} and {@code todo.requests.invalid}:
+ *     counters of requests, or batch items, naming a missing task or failing
+ *     validation, tagged with the endpoint.</li>
+ * </ul>
+ * Request latency per endpoint is recorded by Spring Boot as
+ * {@code http.server.requests}.
+ *
+ * Every operation timer is registered up front and indexed by operation, so
+ * recording a duration looks nothing up and allocates nothing. Statuses are
+ * free text, so the per-status gauge is rebuilt periodically. Each partition
+ * always gets a row for each of the {@link #BUILT_IN_STATUSES}, then rows for
+ * at most {@value #MAX_STATUS_GAUGES} other statuses, with the rest counted
+ * as "other".
+ */
+@Component
+@DependsOn("singletonToDoManager")
+class TodoMetrics {
+    static final int MAX_STATUS_GAUGES = 32;
+    /** The statuses the application itself uses, which always have a gauge. */
+    static final List<String> BUILT_IN_STATUSES =
+        List.of("Pending", "In Progress", TaskStatistics.COMPLETED, ToDoManager.OVERDUE);
+
+    private static final long STATUS_REFRESH_SECONDS = 10;
+    // In memory most operations take microseconds, below the default 1 ms first bucket
+    private static final long MIN_EXPECTED_NANOS = 1_000;
+    private static final long MAX_EXPECTED_SECONDS = 10;
+
+    private final MeterRegistry registry;
+    // The tracked managers by partition name
+    private final Map<String, ToDoManager> managers = new ConcurrentSkipListMap<>();
+    private final Timer[] operationTimers = new Timer[TaskOperation.values().length];
+    private final OperationRecorder recorder = this::record;
+    private final MultiGauge tasksByStatus;
+    private final ScheduledExecutorService refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "todo-metrics");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Autowired
+    TodoMetrics(MeterRegistry registry) {
+        this(SingletonToDoManager.getInstance(), registry);
+    }
+
+    TodoMetrics(ToDoManager manager, MeterRegistry registry) {
+        this.registry = registry;
+        for (TaskOperation operation : TaskOperation.values()) {
+            operationTimers[operation.ordinal()] = Timer.builder("todo.manager.operations")
+                .description("Duration of ToDoManager operations")
+                .tag("operation", operation.methodName())
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(MIN_EXPECTED_NANOS))
+                .maximumExpectedValue(Duration.ofSeconds(MAX_EXPECTED_SECONDS))
+                .register(registry);
+        }
+        tasksByStatus = MultiGauge.builder("todo.tasks.by.status")
+            .description("Number of tasks per status")
+            .register(registry);
+        track(TaskPartitions.DEFAULT_PARTITION, manager);
+        refresher.scheduleAtFixedRate(this::refreshStatusGauges,
+            STATUS_REFRESH_SECONDS, STATUS_REFRESH_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    /**
+     * Times the operations of a partition's manager and adds its task gauges,
+     * tagged with the partition name.
+     *
+     * @param partition The partition name
+     * @param manager The partition's manager
+     */
+    void track(String partition, ToDoManager manager) {
+        managers.put(partition, manager);
+        Gauge.builder("todo.tasks", manager, ToDoManager::getTaskCount)
+            .description("Number of tasks")
+            .tag("partition", partition)
+            .register(registry);
+        Gauge.builder("todo.tasks.completed", manager, ToDoManager::getCompletedTaskCount)
+            .description("Number of completed tasks")
+            .tag("partition", partition)
+            .register(registry);
+        manager.setOperationRecorder(recorder);
+        refreshStatusGauges();
+    }
+
+    /**
+     * Counts requests or batch items that named a task that does not exist.
+     *
+     * @param endpoint The controller method handling the request
+     * @param count The number of missing tasks
+     */
+    void notFound(String endpoint, long count) {
+        if (count > 0) {
+            Counter.builder("todo.requests.not.found").tag("endpoint", endpoint).register(registry).increment(count);
+        }
+    }
+
+    /**
+     * Counts requests or batch items rejected by validation.
+     *
+     * @param endpoint The controller method handling the request
+     * @param count The number of rejected requests or items
+     */
+    void invalid(String endpoint, long count) {
+        if (count > 0) {
+            Counter.builder("todo.requests.invalid").tag("endpoint", endpoint).register(registry).increment(count);
+        }
+    }
+
+    @PreDestroy
+    void close() {
+        managers.values().forEach(manager -> manager.setOperationRecorder(OperationRecorder.NONE));
+        refresher.shutdownNow();
+    }
+
+    private void record(TaskOperation operation, long nanos) {
+        operationTimers[operation.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Replaces the per-status gauge rows with the managers' current counts.
+     */
+    synchronized void refreshStatusGauges() {
+        List<MultiGauge.Row<?>> rows = new ArrayList<>();
+        managers.forEach((partition, manager) -> {
+            Map<String, Long> counts = manager.getTaskCountsByStatus();
+            for (String status : BUILT_IN_STATUSES) {
+                rows.add(MultiGauge.Row.of(Tags.of("partition", partition, "status", status), counts.getOrDefault(status, 0L)));
+            }
+            int statuses = 0;
+            long other = 0;
+            for (Map.Entry<String, Long> entry : counts.entrySet()) {
+                if (BUILT_IN_STATUSES.contains(entry.getKey())) {
+                    continue;
+                }
+                if (statuses++ < MAX_STATUS_GAUGES) {
+                    rows.add(MultiGauge.Row.of(Tags.of("partition", partition, "status", entry.getKey()), entry.getValue()));
+                } else {
+                    other += entry.getValue();
+                }
+            }
+            if (other > 0) {
+                rows.add(MultiGauge.Row.of(Tags.of("partition", partition, "status", "other"), other));
+            }
+        });
+        tasksByStatus.register(rows, true);
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+/**
+ * {@link TaskStore} whose tasks are the current {@link TaskView}, a
+ * persistent trie that every change replaces by a new version sharing all
+ * but the changed path. {@link #view} hands out the current version, so a
+ * consistent snapshot of every task costs one read.
+ *
+ * Reads take no lock. Writers to the same ID are serialized by one of
+ * {@value #STRIPES} lock stripes, so an update runs exactly once and may have
+ * side effects; the new version is then published with a compare-and-set on
+ * the current one, and only that cheap step is repeated if a writer to
+ * another ID published first. Each version contains every change published
+ * before it, so a view never holds a later change to one task without an
+ * earlier change to another.
+ */
+final class VersionedTaskStore implements TaskStore {
+    private static final int STRIPES = 64;
+
+    private final AtomicReference<TaskView> current = new AtomicReference<>(TaskView.EMPTY);
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    VersionedTaskStore() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public Task get(int id) {
+        return current.get().get(id);
+    }
+
+    @Override
+    public Task put(Task task) {
+        ReentrantLock lock = stripe(task.getId());
+        lock.lock();
+        try {
+            Task previous = current.get().get(task.getId());
+            current.updateAndGet(view -> view.with(task));
+            return previous;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task remove(int id) {
+        return removeIf(id, task -> true);
+    }
+
+    @Override
+    public Task removeIf(int id, Predicate<? super Task> condition) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            Task task = current.get().get(id);
+            if (task == null || !condition.test(task)) {
+                return null;
+            }
+            current.updateAndGet(view -> view.without(id));
+            return task;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public Task computeIfPresent(int id, UnaryOperator<Task> update) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            Task task = current.get().get(id);
+            if (task == null) {
+                return null;
+            }
+            Task updated = update.apply(task);
+            current.updateAndGet(view -> view.with(updated));
+            return updated;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        return current.get().size();
+    }
+
+    @Override
+    public void clear() {
+        current.set(TaskView.EMPTY);
+    }
+
+    @Override
+    public TaskView view() {
+        return current.get();
+    }
+
+    private ReentrantLock stripe(int id) {
+        return stripes[id & (STRIPES - 1)];
+    }
+}
@@ -0,0 +1,479 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of task mutations.
+ *
+ * Appending a record only encodes it into an in-memory buffer, so it is cheap
+ * enough to do while holding a task's lock; this keeps the log order of
+ * changes to one task identical to the order they were applied in. Callers
+ * then call {@link #sync()} outside the lock. The first caller to arrive
+ * becomes the flush leader and writes every buffered record; callers that
+ * arrive while it is flushing queue up behind it and are usually satisfied by
+ * the next flush, which gives group commit under concurrent load.
+ *
+ * Each record is framed as {@code [int length][int crc32c][payload]}, and a
+ * payload holds at most {@value #MAX_RECORD_BYTES} bytes. A torn or corrupt
+ * record at the end of the file (from a crash mid-write), including one whose
+ * length runs past the end of the file or exceeds that limit, is truncated on
+ * open. The payload ends with the task version and the task's
+ * created, updated and due times. An intact record whose payload does not
+ * have exactly that layout fails the open instead of being guessed at.
+ *
+ * The log is split into segment files named after the first sequence number
+ * they may contain. {@link #rotate()} starts a new segment so that, once a
+ * snapshot covers everything up to the rotation point, the older segments can
+ * be deleted with {@link #deleteSegmentsThrough(long)}.
+ */
+final class WriteAheadLog implements Closeable {
+    static final byte ADD = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+    static final byte CLEAR = 4;
+
+    private static final int FRAME_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+    private static final int INITIAL_BUFFER_BYTES = 64 * 1024;
+    private static final int MAX_RETAINED_BUFFER_BYTES = 4 * 1024 * 1024;
+    private static final int READ_WINDOW_BYTES = 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOCK_FILE = "wal.lock";
+
+    /**
+     * A decoded log record.
+     *
+     * @param type The mutation type ({@link #ADD}, {@link #UPDATE}, {@link #DELETE} or {@link #CLEAR})
+     * @param lsn The log sequence number of the record
+     * @param id The task ID, or 0 for {@link #CLEAR}
+     * @param description The task description for {@link #ADD} and {@link #UPDATE}, otherwise null
+     * @param status The task status for {@link #ADD} and {@link #UPDATE}, otherwise null
+     * @param version The task version for {@link #ADD} and {@link #UPDATE}
+     * @param createdAt When the task was created, for {@link #ADD} and {@link #UPDATE}
+     * @param updatedAt When the task last changed, for {@link #ADD} and {@link #UPDATE}
+     * @param dueAt When the task is due, or 0, for {@link #ADD} and {@link #UPDATE}
+     */
+    record Entry(byte type, long lsn, int id, String description, String status, long version,
+                 long createdAt, long updatedAt, long dueAt) {
+    }
+
+    private final Path directory;
+    private final FileChannel lockChannel;
+    private final FileLock fileLock;
+    private final FsyncPolicy policy;
+    private final CRC32C checksum = new CRC32C();
+
+    // Guarded by the log's monitor
+    private ByteBuffer pending = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private volatile long lastLsn;
+    private volatile boolean closed;
+
+    // Guarded by flushLock
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private FileChannel channel;
+    private ByteBuffer flushing = ByteBuffer.allocate(INITIAL_BUFFER_BYTES);
+    private volatile long flushedLsn;
+    private volatile IOException failure;
+
+    private WriteAheadLog(Path directory, FileChannel lockChannel, FileLock fileLock, FileChannel channel,
+                          FsyncPolicy policy, long lastLsn) {
+        this.directory = directory;
+        this.lockChannel = lockChannel;
+        this.fileLock = fileLock;
+        this.channel = channel;
+        this.policy = policy;
+        this.lastLsn = lastLsn;
+        this.flushedLsn = lastLsn;
+    }
+
+    /**
+     * Opens the log in a directory, replaying every intact record after
+     * {@code afterLsn} before it is returned.
+     *
+     * @param directory The directory holding the log segments
+     * @param policy When appended records are fsynced
+     * @param afterLsn Records up to and including this sequence number are skipped
+     * @param replay Receives every intact record after {@code afterLsn} in log order
+     * @return The opened log, positioned for appending
+     * @throws IOException if the log cannot be read, locked or repaired
+     */
+    static WriteAheadLog open(Path directory, FsyncPolicy policy, long afterLsn, Consumer<Entry> replay)
+            throws IOException {
+        FileChannel lockChannel = FileChannel.open(directory.resolve(LOCK_FILE),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileChannel channel = null;
+        try {
+            FileLock fileLock = lockChannel.tryLock();
+            if (fileLock == null) {
+                throw new IOException("Task storage " + directory + " is in use by another process");
+            }
+            List<Path> segments = segments(directory);
+            long lastLsn = afterLsn;
+            for (int i = 0; i < segments.size(); i++) {
+                boolean active = i == segments.size() - 1;
+                FileChannel segment = FileChannel.open(segments.get(i),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+                try {
+                    long[] end = new long[1];
+                    lastLsn = Math.max(lastLsn, read(segment, afterLsn, replay, end));
+                    if (end[0] < segment.size()) {
+                        if (!active) {
+                            throw new IOException("Log segment " + segments.get(i) + " is corrupt");
+                        }
+                        segment.truncate(end[0]);
+                        segment.force(true);
+                    }
+                    segment.position(end[0]);
+                } finally {
+                    if (active) {
+                        channel = segment;
+                    } else {
+                        segment.close();
+                    }
+                }
+            }
+            if (channel == null) {
+                channel = createSegment(directory, lastLsn + 1);
+            }
+            return new WriteAheadLog(directory, lockChannel, fileLock, channel, policy, lastLsn);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            lockChannel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Buffers a record. The record is not durable until {@link #sync()} returns.
+     *
+     * @param type The mutation type
+     * @param id The task ID
+     * @param description The task description, or null
+     * @param status The task status, or null
+     * @param version The task version, or 0
+     * @param createdAt When the task was created, or 0
+     * @param updatedAt When the task last changed, or 0
+     * @param dueAt When the task is due, or 0
+     * @return The log sequence number assigned to the record
+     */
+    synchronized long append(byte type, int id, String description, String status, long version,
+                             long createdAt, long updatedAt, long dueAt) {
+        if (closed) {
+            throw new IllegalStateException("Write-ahead log is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        byte[] descriptionBytes = encode(description);
+        byte[] statusBytes = encode(status);
+        long payloadBytes = 1 + 8 + 4 + 4 + (long) length(descriptionBytes) + 4 + length(statusBytes) + 4 * 8;
+        if (payloadBytes > MAX_RECORD_BYTES) {
+            throw new IllegalArgumentException("Task is too large to log: " + payloadBytes + " bytes");
+        }
+        ensureCapacity(FRAME_BYTES + (int) payloadBytes);
+
+        long lsn = lastLsn + 1;
+        int start = pending.position();
+        pending.position(start + FRAME_BYTES);
+        pending.put(type).putLong(lsn).putInt(id);
+        putBytes(pending, descriptionBytes);
+        putBytes(pending, statusBytes);
+        pending.putLong(version).putLong(createdAt).putLong(updatedAt).putLong(dueAt);
+
+        checksum.reset();
+        checksum.update(pending.array(), start + FRAME_BYTES, (int) payloadBytes);
+        pending.putInt(start, (int) payloadBytes);
+        pending.putInt(start + 4, (int) checksum.getValue());
+        lastLsn = lsn;
+        return lsn;
+    }
+
+    /**
+     * Blocks until every record appended so far has been written according to
+     * the fsync policy.
+     */
+    void sync() {
+        long target = lastLsn;
+        if (flushedLsn >= target) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            // Another leader may have flushed our records while we waited for the lock
+            if (flushedLsn < target) {
+                flush();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Returns the sequence number of the most recently appended record.
+     *
+     * @return The last log sequence number, or 0 for an empty log
+     */
+    long lastLsn() {
+        return lastLsn;
+    }
+
+    /**
+     * Starts a new segment. Every record appended before the call ends up in
+     * an older segment and every record appended afterwards in the new one.
+     *
+     * @return The sequence number of the last record in the older segments
+     * @throws IOException if the old segment cannot be synced or the new one created
+     */
+    long rotate() throws IOException {
+        flushLock.lock();
+        try {
+            long boundary = flush();
+            channel.force(true);
+            FileChannel next = createSegment(directory, boundary + 1);
+            channel.close();
+            channel = next;
+            return boundary;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes every segment that only holds records up to {@code lsn}.
+     * The active segment is never deleted.
+     *
+     * @param lsn The highest sequence number that is no longer needed
+     * @throws IOException if a segment cannot be deleted
+     */
+    void deleteSegmentsThrough(long lsn) throws IOException {
+        List<Path> segments = segments(directory);
+        // A segment ends where the next one begins
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsn(segments.get(i + 1)) - 1 <= lsn) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+
+    /**
+     * Flushes and fsyncs every buffered record and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                if (closed) {
+                    return;
+                }
+                closed = true;
+            }
+            try {
+                if (failure == null) {
+                    flush();
+                    channel.force(true);
+                }
+            } finally {
+                channel.close();
+                fileLock.release();
+                lockChannel.close();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private long flush() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log failed", failure);
+        }
+        long batchLsn;
+        synchronized (this) {
+            ByteBuffer full = pending;
+            pending = flushing;
+            flushing = full;
+            batchLsn = lastLsn;
+        }
+        try {
+            flushing.flip();
+            if (policy == FsyncPolicy.EVERY_WRITE) {
+                while (flushing.hasRemaining()) {
+                    int recordEnd = flushing.position() + FRAME_BYTES + flushing.getInt(flushing.position());
+                    ByteBuffer record = flushing.slice(flushing.position(), recordEnd - flushing.position());
+                    writeFully(record);
+                    channel.force(false);
+                    flushing.position(recordEnd);
+                }
+            } else {
+                writeFully(flushing);
+                if (policy == FsyncPolicy.BATCHED) {
+                    channel.force(false);
+                }
+            }
+            flushedLsn = batchLsn;
+            return batchLsn;
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException("Failed to write the write-ahead log", e);
+        } finally {
+            flushing = flushing.capacity() > MAX_RETAINED_BUFFER_BYTES
+                ? ByteBuffer.allocate(INITIAL_BUFFER_BYTES)
+                : flushing.clear();
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() < bytes) {
+            int capacity = Math.max(pending.capacity() * 2, pending.position() + bytes);
+            ByteBuffer grown = ByteBuffer.allocate(capacity);
+            pending.flip();
+            grown.put(pending);
+            pending = grown;
+        }
+    }
+
+    private static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+        // Zero-padded names sort in sequence number order
+        segments.sort(null);
+        return segments;
+    }
+
+    private static Path segmentPath(Path directory, long firstLsn) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstLsn, SEGMENT_SUFFIX));
+    }
+
+    private static long firstLsn(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static FileChannel createSegment(Path directory, long firstLsn) throws IOException {
+        FileChannel segment = FileChannel.open(segmentPath(directory, firstLsn),
+            StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        StorageFiles.forceDirectory(directory);
+        return segment;
+    }
+
+    private static long read(FileChannel channel, long afterLsn, Consumer<Entry> replay, long[] end)
+            throws IOException {
+        long lastLsn = 0;
+        long position = 0;
+        ByteBuffer window = ByteBuffer.allocate(READ_WINDOW_BYTES).flip();
+        CRC32C crc = new CRC32C();
+        while (true) {
+            if (!fill(channel, window, FRAME_BYTES)) {
+                break;
+            }
+            int start = window.position();
+            int length = window.getInt(start);
+            if (length <= 0 || length > MAX_RECORD_BYTES || length > channel.size() - position - FRAME_BYTES) {
+                break; // torn write at the tail; checked before the record is read into memory
+            }
+            if (window.capacity() < FRAME_BYTES + length) {
+                window = ByteBuffer.allocate(FRAME_BYTES + length).put(window).flip();
+            }
+            if (!fill(channel, window, FRAME_BYTES + length)) {
+                break;
+            }
+            start = window.position();
+            crc.reset();
+            crc.update(window.array(), start + FRAME_BYTES, length);
+            if ((int) crc.getValue() != window.getInt(start + 4)) {
+                break; // corrupt record; everything after it is untrusted
+            }
+            int payloadEnd = start + FRAME_BYTES + length;
+            int filled = window.limit();
+            Entry entry;
+            try {
+                window.position(start + FRAME_BYTES).limit(payloadEnd);
+                entry = new Entry(window.get(), window.getLong(), window.getInt(), getString(window),
+                    getString(window), window.getLong(), window.getLong(), window.getLong(), window.getLong());
+                if (window.hasRemaining()) {
+                    throw new BufferUnderflowException();
+                }
+            } catch (BufferUnderflowException e) {
+                throw new IOException("Log record at offset " + position + " has an unknown layout");
+            }
+            window.limit(filled).position(payloadEnd);
+            if (entry.lsn() > afterLsn) {
+                replay.accept(entry);
+            }
+            lastLsn = entry.lsn();
+            position += FRAME_BYTES + length;
+        }
+        end[0] = position;
+        return lastLsn;
+    }
+
+    private static boolean fill(FileChannel channel, ByteBuffer window, int needed) throws IOException {
+        if (window.remaining() >= needed) {
+            return true;
+        }
+        window.compact();
+        while (window.position() < needed) {
+            if (channel.read(window) < 0) {
+                break;
+            }
+        }
+        window.flip();
+        return window.remaining() >= needed;
+    }
+
+    private static byte[] encode(String value) {
+        return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BatchCommandRunnerTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void runsEveryCommandAndReportsFailuresByLine() throws Exception {
+		ToDoManager manager = new ToDoManager();
+		StringWriter out = new StringWriter();
+		StringWriter err = new StringWriter();
+		int first = manager.getNextId();
+
+		int failures = run(manager, out, err, String.join("\n",
+			"# plan for today",
+			"add Write report",
+			"ADD   Review code  ",
+			"",
+			"complete " + first,
+			"update " + (first + 1) + " Review all the code",
+			"status " + (first + 1) + " In Progress",
+			"delete 999999999",
+			"complete x",
+			"update " + first,
+			"archive " + first,
+			"list",
+			"purge",
+			"list"));
+
+		assertEquals(4, failures);
+		assertEquals(first + "\n" + (first + 1) + "\n"
+			+ "ID: " + first + " | Description: Write report | Status: Completed\n"
+			+ "ID: " + (first + 1) + " | Description: Review all the code | Status: In Progress\n"
+			+ "1\n"
+			+ "ID: " + (first + 1) + " | Description: Review all the code | Status: In Progress\n",
+			out.toString().replace(System.lineSeparator(), "\n"));
+		assertEquals("line 8: Task 999999999 not found\n"
+			+ "line 9: Task ID must be a positive number: 'x'\n"
+			+ "line 10: Usage: update <id> <description>\n"
+			+ "line 11: Unknown command 'archive'\n",
+			err.toString().replace(System.lineSeparator(), "\n"));
+	}
+
+	@Test
+	void commandsSpanningManyChunksAreDurable() throws Exception {
+		int commands = BatchCommandRunner.CHUNK_SIZE * 2 + 500;
+		StringBuilder script = new StringBuilder();
+		// A new manager numbers its tasks from 1
+		int first = 1;
+		for (int i = 0; i < commands; i++) {
+			script.append("add task ").append(i).append('\n');
+		}
+		for (int i = 0; i < commands; i += 2) {
+			script.append("complete ").append(first + i).append('\n');
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			assertEquals(0, run(manager, new StringWriter(), new StringWriter(), script.toString()));
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			assertEquals(commands, manager.getTaskCount());
+			assertEquals(commands / 2, manager.getCompletedTaskCount());
+		}
+	}
+
+	private static int run(ToDoManager manager, StringWriter out, StringWriter err, String script) throws Exception {
+		return new BatchCommandRunner(manager, new PrintWriter(out), new PrintWriter(err))
+			.run(new BufferedReader(new StringReader(script)));
+	}
+}
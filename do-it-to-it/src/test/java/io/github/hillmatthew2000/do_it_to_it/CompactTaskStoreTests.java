@@ -0,0 +1,201 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class CompactTaskStoreTests {
+
+	private static final String[] STATUSES = {"Pending", "In Progress", "Completed"};
+
+	@Test
+	void matchesTheObjectStoreUnderRandomMutations() {
+		TaskStore expected = new ConcurrentTaskStore(16);
+		TaskStore compact = new CompactTaskStore();
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			// IDs span several pages, and some descriptions exceed an arena chunk
+			int id = 1 + random.nextInt(150_000);
+			switch (random.nextInt(5)) {
+				case 0, 1 -> {
+					String description = random.nextInt(10_000) == 0 ? "x".repeat(70_000) : "täsk " + i;
+					long createdAt = random.nextInt(3) == 0 ? 0 : random.nextLong(1L << 42);
+					Task task = new Task(id, description, STATUSES[random.nextInt(STATUSES.length)], 1 + random.nextInt(100),
+							createdAt, createdAt + random.nextInt(1_000), random.nextBoolean() ? 0 : random.nextLong(1L << 42));
+					assertEquals(describe(expected.put(task)), describe(compact.put(task)));
+				}
+				case 2 -> assertEquals(describe(expected.remove(id)), describe(compact.remove(id)));
+				case 3 -> {
+					String status = "status " + random.nextInt(20);
+					assertEquals(describe(expected.computeIfPresent(id, task -> withStatus(task, status))),
+							describe(compact.computeIfPresent(id, task -> withStatus(task, status))));
+				}
+				default -> assertEquals(describe(expected.get(id)), describe(compact.get(id)));
+			}
+			assertEquals(expected.size(), compact.size());
+		}
+		for (int id = 0; id <= 150_001; id++) {
+			assertEquals(describe(expected.get(id)), describe(compact.get(id)));
+		}
+
+		compact.clear();
+		assertEquals(0, compact.size());
+		assertNull(compact.get(1));
+	}
+
+	@Test
+	void readersNeverSeeAHalfWrittenTask() throws Exception {
+		CompactTaskStore store = new CompactTaskStore();
+		for (int id = 1; id <= 64; id++) {
+			store.put(new Task(id, "version 0", "status 0"));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(pool.submit(() -> {
+					Random random = new Random();
+					for (int i = 1; i <= 50_000; i++) {
+						int version = i;
+						store.computeIfPresent(1 + random.nextInt(64),
+								task -> new Task(task.getId(), "version " + version, "status " + version, task.getVersion() + 1));
+					}
+					return null;
+				}));
+			}
+			for (int t = 0; t < 4; t++) {
+				futures.add(pool.submit(() -> {
+					Random random = new Random();
+					while (running.get()) {
+						Task task = store.get(1 + random.nextInt(64));
+						assertEquals(task.getDescription().substring("version ".length()),
+								task.getStatus().substring("status ".length()));
+					}
+					return null;
+				}));
+			}
+			for (int i = 0; i < 4; i++) {
+				futures.get(i).get();
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void compactionReclaimsDeadBytesWhileTasksAreReadAndUpdated() throws Exception {
+		CompactTaskStore store = new CompactTaskStore();
+		for (int id = 1; id <= 100_000; id++) {
+			store.put(new Task(id, "version 0", "status 0"));
+		}
+		for (int id = 1; id <= 100_000; id += 2) {
+			store.remove(id);
+		}
+		assertEquals(50_000L * "version 0".length(), store.garbageBytes());
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			futures.add(pool.submit(() -> {
+				Random random = new Random();
+				for (int i = 1; i <= 50_000; i++) {
+					int version = i;
+					store.computeIfPresent(2 * (1 + random.nextInt(50_000)),
+							task -> new Task(task.getId(), "version " + version, "status " + version, task.getVersion() + 1));
+				}
+				return null;
+			}));
+			futures.add(pool.submit(() -> {
+				for (int pass = 0; pass < 20; pass++) {
+					while (store.compact()) {
+						Thread.yield();
+					}
+				}
+				return null;
+			}));
+			for (int t = 0; t < 2; t++) {
+				futures.add(pool.submit(() -> {
+					Random random = new Random();
+					while (running.get()) {
+						Task task = store.get(2 * (1 + random.nextInt(50_000)));
+						assertEquals(task.getDescription().substring("version ".length()),
+								task.getStatus().substring("status ".length()));
+					}
+					return null;
+				}));
+			}
+			for (int i = 0; i < 2; i++) {
+				futures.get(i).get();
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		while (store.compact()) {
+			// finish the last pass
+		}
+		assertEquals(0, store.garbageBytes());
+		long live = 0;
+		for (int id = 2; id <= 100_000; id += 2) {
+			live += store.get(id).getDescription().length();
+		}
+		assertEquals(live, store.liveBytes());
+		assertEquals(50_000, store.size());
+	}
+
+	@Tag("benchmark")
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void heapFootprintPerTask(TaskLayout layout) {
+		int tasks = 2_000_000;
+		long before = usedHeap();
+		ToDoManager manager = new ToDoManager(layout);
+		for (int i = 0; i < tasks; i++) {
+			int id = manager.addTask("benchmark task number " + i);
+			// Statuses arriving in requests are separate String copies
+			manager.updateTaskStatus(id, new String(STATUSES[i % STATUSES.length]));
+		}
+		long bytes = usedHeap() - before;
+		assertEquals(tasks, manager.getTaskCount());
+		System.out.printf("%-7s layout: %,6.1f bytes per task (%,d tasks, %,d MB)%n",
+				layout, (double) bytes / tasks, tasks, bytes / (1024 * 1024));
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	private static Task withStatus(Task task, String status) {
+		return new Task(task.getId(), task.getDescription(), status, task.getVersion() + 1,
+				task.getCreatedAt(), task.getUpdatedAt() + 1, task.getDueAt());
+	}
+
+	private static String describe(Task task) {
+		return task == null ? "null" : task + " | Version: " + task.getVersion()
+				+ " | Times: " + task.getCreatedAt() + "/" + task.getUpdatedAt() + "/" + task.getDueAt();
+	}
+}
@@ -1,13 +1,42 @@
 package io.github.hillmatthew2000.do_it_to_it;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+
+import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.server.LocalServerPort;
 
-@SpringBootTest
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+	properties = {"todo.storage.directory=", "management.server.port=0"})
 class DoItToItApplicationTests {
 
+	// Latency objectives for the mixed workload; override with -Dtodo.slo.p50=<ms> -Dtodo.slo.p99=<ms>
+	private static final Duration P50_LIMIT = Duration.ofMillis(Long.getLong("todo.slo.p50", 25));
+	private static final Duration P99_LIMIT = Duration.ofMillis(Long.getLong("todo.slo.p99", 250));
+
+	@LocalServerPort
+	private int port;
+
 	@Test
 	void contextLoads() {
 	}
 
+	@Test
+	@Tag("benchmark")
+	void mixedWorkloadMeetsLatencyObjectives() throws Exception {
+		LoadProfile profile = new LoadProfile(100, Duration.ofSeconds(5), Duration.ofSeconds(10), LoadProfile.DEFAULT_MIX);
+
+		LoadReport report = new LoadGenerator(URI.create("http://localhost:" + port), profile).run();
+
+		assertEquals(1000, report.requests(), report::summary);
+		assertEquals(0, report.failures(), report::summary);
+		assertEquals(List.of(), report.latencyViolations(P50_LIMIT, P99_LIMIT), report::summary);
+	}
+
 }
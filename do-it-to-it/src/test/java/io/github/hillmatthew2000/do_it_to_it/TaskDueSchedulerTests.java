@@ -0,0 +1,90 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class TaskDueSchedulerTests {
+
+	private static final long TICK = 1_000;
+	private static final long START = 1_700_000_000_000L;
+
+	@Test
+	void everyDueDateFiresOnceAndNeverEarly() {
+		long[] now = {START};
+		TaskDueScheduler scheduler = new TaskDueScheduler(TICK, () -> now[0]);
+		Map<Integer, Long> scheduled = new HashMap<>();
+		// The tick each due date should fire at: the first at or after it, or the next one if it has passed
+		Map<Integer, Long> firstTicks = new HashMap<>();
+		Random random = new Random(11);
+		for (int i = 0; i < 200_000; i++) {
+			int id = 1 + random.nextInt(20_000);
+			switch (random.nextInt(8)) {
+				case 0 -> {
+					scheduler.cancel(id);
+					scheduled.remove(id);
+					firstTicks.remove(id);
+				}
+				case 1 -> {
+					// Jumps of up to a day, so every level of the wheel cascades
+					now[0] += random.nextInt(4) == 0 ? random.nextInt(86_400_000) : random.nextInt(5_000);
+					for (TaskDueScheduler.Expiry expiry : scheduler.advance(now[0])) {
+						Long dueAt = scheduled.remove(expiry.id());
+						assertEquals(dueAt, expiry.dueAt());
+						assertTrue(expiry.dueAt() <= now[0]);
+						assertTrue(firstTicks.remove(expiry.id()) <= now[0] / TICK);
+					}
+					// Whatever is left is not due yet
+					for (long firstTick : firstTicks.values()) {
+						assertTrue(firstTick > now[0] / TICK);
+					}
+				}
+				default -> {
+					// Some due dates have passed, a few are years away
+					long dueAt = switch (random.nextInt(10)) {
+						case 0 -> now[0] - random.nextInt(100_000);
+						case 1 -> now[0] + (long) random.nextInt(1_000) * 86_400_000;
+						default -> now[0] + random.nextInt(172_800_000);
+					};
+					scheduler.schedule(id, dueAt);
+					if (!Long.valueOf(dueAt).equals(scheduled.put(id, dueAt))) {
+						firstTicks.put(id, Math.max(Math.ceilDiv(dueAt, TICK), now[0] / TICK + 1));
+					}
+				}
+			}
+			assertEquals(scheduled.size(), scheduler.size());
+		}
+
+		now[0] += 1_000L * 86_400_000;
+		List<TaskDueScheduler.Expiry> rest = scheduler.advance(now[0]);
+		assertEquals(scheduled.size(), rest.size());
+		for (TaskDueScheduler.Expiry expiry : rest) {
+			assertEquals(scheduled.remove(expiry.id()), expiry.dueAt());
+		}
+		assertEquals(0, scheduler.size());
+	}
+
+	@Test
+	void dueDatesBeyondTheTopLevelWaitInTheOverflow() {
+		long[] now = {START};
+		TaskDueScheduler scheduler = new TaskDueScheduler(1, () -> now[0]);
+		// 2^36 ticks of 1 ms are about 2 years
+		long far = START + (1L << 37);
+		scheduler.schedule(1, far);
+		scheduler.schedule(2, START + 10);
+		assertEquals(List.of(new TaskDueScheduler.Expiry(2, START + 10)), scheduler.advance(START + 10));
+		assertEquals(List.of(), scheduler.advance(far - 1));
+		assertEquals(List.of(new TaskDueScheduler.Expiry(1, far)), scheduler.advance(far));
+
+		scheduler.schedule(3, far + 5);
+		scheduler.clear();
+		assertEquals(List.of(), scheduler.advance(far + 10));
+		assertEquals(0, scheduler.size());
+	}
+}
@@ -0,0 +1,148 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+class TaskEventBroadcasterTests {
+
+	private ToDoManager manager;
+	private TaskEventBroadcaster broadcaster;
+
+	@BeforeEach
+	void setUp() {
+		manager = new ToDoManager();
+		broadcaster = new TaskEventBroadcaster(manager, new ObjectMapper());
+	}
+
+	@AfterEach
+	void tearDown() {
+		broadcaster.close();
+	}
+
+	@Test
+	void subscribersReceiveEveryChangeInOrder() throws Exception {
+		RecordingEmitter emitter = new RecordingEmitter(null);
+		broadcaster.subscribe(emitter);
+		int id = manager.addTask("Write the report");
+		manager.updateTaskDescription(id, "Write the final report");
+		manager.markTaskCompleted(id);
+		manager.deleteTask(id);
+		manager.clearAllTasks();
+
+		List<String> events = emitter.await(6);
+		assertEquals(List.of("ready", "created", "updated", "updated", "deleted", "cleared"),
+				events.stream().map(TaskEventBroadcasterTests::name).toList());
+		assertTrue(events.get(2).contains("\"description\":\"Write the final report\""), events.get(2));
+		assertTrue(events.get(3).contains("\"status\":\"Completed\""), events.get(3));
+		assertTrue(events.get(4).contains("\"taskId\":" + id), events.get(4));
+	}
+
+	@Test
+	void aSlowSubscriberIsToldToResyncWithoutHoldingUpOthers() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		RecordingEmitter slow = new RecordingEmitter(release);
+		RecordingEmitter fast = new RecordingEmitter(null);
+		broadcaster.subscribe(slow);
+		broadcaster.subscribe(fast);
+
+		int changes = TaskEventBroadcaster.QUEUE_CAPACITY * 3;
+		for (int i = 0; i < changes; i++) {
+			manager.addTask("task " + i);
+			if (i % 256 == 255) {
+				// Events are serialized by the senders, so let the fast one keep within its queue
+				fast.await(i + 2);
+			}
+		}
+		assertEquals(changes + 1, fast.await(changes + 1).size());
+
+		release.countDown();
+		List<String> received = slow.awaitName("resync");
+		assertTrue(received.size() < changes, "backlog should have been dropped");
+		assertEquals(2, broadcaster.subscriberCount());
+	}
+
+	@Test
+	void eventsAreSerializedOffTheChangingThread() throws Exception {
+		Set<Thread> serializing = ConcurrentHashMap.newKeySet();
+		TaskEventBroadcaster recording = new TaskEventBroadcaster(manager, new ObjectMapper() {
+			@Override
+			public String writeValueAsString(Object value) throws JsonProcessingException {
+				serializing.add(Thread.currentThread());
+				return super.writeValueAsString(value);
+			}
+		});
+		try {
+			RecordingEmitter emitter = new RecordingEmitter(null);
+			recording.subscribe(emitter);
+			manager.addTask("serialized by the sender");
+
+			assertEquals(2, emitter.await(2).size());
+			assertEquals(1, serializing.size());
+			assertFalse(serializing.contains(Thread.currentThread()));
+		} finally {
+			recording.close();
+		}
+	}
+
+	private static String name(String event) {
+		return event.lines().filter(line -> line.startsWith("event:")).findFirst().orElse("event:").substring(6);
+	}
+
+	/**
+	 * Records the text of every event sent, optionally blocking each send until released.
+	 */
+	private static final class RecordingEmitter extends SseEmitter {
+		private final List<String> events = new CopyOnWriteArrayList<>();
+		private final CountDownLatch release;
+
+		RecordingEmitter(CountDownLatch release) {
+			this.release = release;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			if (release != null) {
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			events.add(builder.build().stream().map(part -> String.valueOf(part.getData())).collect(Collectors.joining()));
+		}
+
+		List<String> await(int count) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (events.size() < count && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			return List.copyOf(events);
+		}
+
+		List<String> awaitName(String name) throws InterruptedException {
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+			while (events.stream().noneMatch(event -> name(event).equals(name)) && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			return List.copyOf(events);
+		}
+	}
+}
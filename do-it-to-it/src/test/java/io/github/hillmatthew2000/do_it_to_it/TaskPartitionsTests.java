@@ -0,0 +1,56 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TaskPartitionsTests {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void persistentPartitionsAreReopenedWithTheirTasks() {
+		ToDoManager defaultManager = new ToDoManager();
+		TodoMetrics metrics = new TodoMetrics(defaultManager, new SimpleMeterRegistry());
+		try {
+			TaskPartitions partitions = partitions(defaultManager, metrics);
+			assertSame(defaultManager, partitions.get(TaskPartitions.DEFAULT_PARTITION));
+			ToDoManager work = partitions.get("work");
+			assertSame(work, partitions.get("work"));
+			assertSame(work, partitions.get("Work"));
+			assertNotSame(work, partitions.get("home"));
+			int first = work.addTask("reopened");
+			work.markTaskCompleted(first);
+			partitions.close();
+
+			partitions = partitions(defaultManager, metrics);
+			assertEquals(List.of("default", "home", "work"), List.copyOf(partitions.all().keySet()));
+			assertEquals("Completed", partitions.get("work").findTaskById(first).getStatus());
+			assertEquals(0, partitions.get("home").getTaskCount());
+			// Each partition numbers its own tasks, also after a reopen
+			assertEquals(1, partitions.get("home").addTask("first at home"));
+			assertEquals(first + 1, partitions.get("work").addTask("next at work"));
+			partitions.close();
+		} finally {
+			metrics.close();
+			defaultManager.close();
+		}
+	}
+
+	private TaskPartitions partitions(ToDoManager defaultManager, TodoMetrics metrics) {
+		ObjectMapper mapper = new ObjectMapper();
+		return new TaskPartitions(defaultManager, new TaskEventBroadcaster(defaultManager, mapper), directory,
+			FsyncPolicy.BATCHED, TaskLayout.OBJECTS, 8, metrics, mapper);
+	}
+}
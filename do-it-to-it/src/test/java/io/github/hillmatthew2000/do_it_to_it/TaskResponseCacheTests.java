@@ -0,0 +1,47 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TaskResponseCacheTests {
+
+	@Test
+	void entriesOfChangedManagersAreEvictedBeforeLeastRecentlyUsedOnes() {
+		// Room for four entries of about 1000 bytes
+		TaskResponseCache cache = new TaskResponseCache(4600, new ObjectMapper(), new SimpleMeterRegistry());
+		ToDoManager changed = new ToDoManager();
+		ToDoManager unchanged = new ToDoManager();
+		String text = "x".repeat(1000);
+
+		byte[] stale = cache.get(changed, "a", changed.getVersion(), () -> text);
+		byte[] a = cache.get(unchanged, "a", unchanged.getVersion(), () -> text);
+		byte[] b = cache.get(unchanged, "b", unchanged.getVersion(), () -> text);
+		byte[] c = cache.get(unchanged, "c", unchanged.getVersion(), () -> text);
+		assertSame(a, cache.get(unchanged, "a", unchanged.getVersion(), () -> text));
+		changed.addTask("invalidates every entry of this manager");
+
+		byte[] d = cache.get(unchanged, "d", unchanged.getVersion(), () -> text);
+
+		assertTrue(cache.size() <= 4600);
+		assertSame(a, cache.get(unchanged, "a", unchanged.getVersion(), () -> text));
+		assertSame(c, cache.get(unchanged, "c", unchanged.getVersion(), () -> text));
+		assertSame(d, cache.get(unchanged, "d", unchanged.getVersion(), () -> text));
+		assertNotSame(b, cache.get(unchanged, "b", unchanged.getVersion(), () -> text));
+		byte[] fresh = cache.get(changed, "a", changed.getVersion(), () -> text);
+		assertNotSame(stale, fresh);
+		assertArrayEquals(stale, fresh);
+
+		// More than half the limit, so never cached
+		String large = "y".repeat(2400);
+		assertNotSame(cache.get(unchanged, "e", unchanged.getVersion(), () -> large),
+			cache.get(unchanged, "e", unchanged.getVersion(), () -> large));
+	}
+}
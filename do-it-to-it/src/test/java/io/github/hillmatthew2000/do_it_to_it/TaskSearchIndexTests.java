@@ -0,0 +1,155 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+class TaskSearchIndexTests {
+
+	private static final String[] WORDS = {
+		"alpha", "alpine", "alps", "beta", "bet", "better", "deploy", "deployment", "depot",
+		"review", "rewrite", "release", "api", "app", "apply", "spring", "sprint", "fix", "fixture", "v2"
+	};
+
+	@Test
+	void searchRanksLikeAFullScan() {
+		TaskSearchIndex index = new TaskSearchIndex();
+		Map<Integer, String> descriptions = new HashMap<>();
+		Random random = new Random(7);
+		for (int id = 1; id <= 5_000; id++) {
+			String description = randomDescription(random);
+			index.add(id, description);
+			descriptions.put(id, description);
+		}
+		for (int i = 0; i < 1_000; i++) {
+			int id = 1 + random.nextInt(5_000);
+			if (descriptions.containsKey(id)) {
+				if (random.nextBoolean()) {
+					index.remove(id, descriptions.remove(id));
+				} else {
+					String description = randomDescription(random);
+					index.replace(id, descriptions.put(id, description), description);
+				}
+			}
+		}
+
+		for (int i = 0; i < 300; i++) {
+			String query = prefix(random) + (random.nextBoolean() ? " " + prefix(random) : "");
+			List<TaskSearchIndex.Hit> hits = index.search(query, 10);
+			List<TaskSearchIndex.Hit> expected = fullScan(descriptions, query);
+			assertEquals(Math.min(10, expected.size()), hits.size(), query);
+			Map<Integer, Double> scores = new HashMap<>();
+			expected.forEach(hit -> scores.put(hit.id(), hit.score()));
+			for (int rank = 0; rank < hits.size(); rank++) {
+				assertEquals(expected.get(rank).score(), hits.get(rank).score(), 1e-9, query);
+				assertEquals(scores.get(hits.get(rank).id()), hits.get(rank).score(), 1e-9, query);
+			}
+		}
+	}
+
+	@Test
+	void managerKeepsTheIndexInStepWithMutations() {
+		ToDoManager manager = new ToDoManager();
+		int deploy = manager.addTask("Deploy the application");
+		int review = manager.addTask("Review deployment notes");
+		int other = manager.addTask("Buy milk");
+
+		assertEquals(List.of(deploy, review), ids(manager.searchTasks("deploy", 10)));
+		assertEquals(List.of(review), ids(manager.searchTasks("dep NOTES", 10)));
+
+		manager.updateTaskDescription(deploy, "Ship the application");
+		assertEquals(List.of(review), ids(manager.searchTasks("deploy", 10)));
+		assertEquals(List.of(deploy), ids(manager.searchTasks("ship", 10)));
+
+		manager.deleteTask(review);
+		assertTrue(manager.searchTasks("deploy", 10).isEmpty());
+		manager.markTaskCompleted(other);
+		assertEquals(List.of(other), ids(manager.searchTasks("milk", 10)));
+
+		manager.clearAllTasks();
+		assertTrue(manager.searchTasks("milk", 10).isEmpty());
+	}
+
+	@Tag("benchmark")
+	@Test
+	void queryLatencyAtAMillionTasks() {
+		ToDoManager manager = new ToDoManager();
+		Random random = new Random(1);
+		List<String> descriptions = new ArrayList<>();
+		for (int i = 0; i < 1_000_000; i++) {
+			descriptions.add(randomDescription(random) + " item" + i);
+		}
+		manager.addTasks(descriptions);
+
+		String[] queries = {"deploy", "dep", "alpha beta", "rev app", "item12345", "fix v2 spr", "a", "item9"};
+		for (String query : queries) {
+			for (int i = 0; i < 2_000; i++) {
+				manager.searchTasks(query, 20); // warm up
+			}
+			int runs = 10_000;
+			long start = System.nanoTime();
+			for (int i = 0; i < runs; i++) {
+				manager.searchTasks(query, 20);
+			}
+			double micros = (System.nanoTime() - start) / 1_000.0 / runs;
+			System.out.printf("search %-12s %,8.1f us/query (1,000,000 tasks)%n", "\"" + query + "\"", micros);
+		}
+	}
+
+	private static String randomDescription(Random random) {
+		StringBuilder description = new StringBuilder();
+		int words = 1 + random.nextInt(5);
+		for (int i = 0; i < words; i++) {
+			description.append(i == 0 ? "" : " ").append(WORDS[random.nextInt(WORDS.length)]);
+		}
+		return description.toString();
+	}
+
+	private static String prefix(Random random) {
+		String word = WORDS[random.nextInt(WORDS.length)];
+		return word.substring(0, 1 + random.nextInt(word.length())).toUpperCase();
+	}
+
+	private static List<TaskSearchIndex.Hit> fullScan(Map<Integer, String> descriptions, String query) {
+		Map<String, Integer> frequencies = new HashMap<>();
+		descriptions.values().forEach(description -> TaskSearchIndex.tokenize(description)
+				.forEach(word -> frequencies.merge(word, 1, Integer::sum)));
+		List<TaskSearchIndex.Hit> hits = new ArrayList<>();
+		for (Map.Entry<Integer, String> entry : descriptions.entrySet()) {
+			double score = 0;
+			for (String queryWord : TaskSearchIndex.tokenize(query)) {
+				double best = -1;
+				for (String word : TaskSearchIndex.tokenize(entry.getValue())) {
+					if (word.startsWith(queryWord)) {
+						double idf = Math.log(1 + (double) descriptions.size() / frequencies.get(word));
+						best = Math.max(best, idf * queryWord.length() / word.length());
+					}
+				}
+				if (best < 0) {
+					score = -1;
+					break;
+				}
+				score += best;
+			}
+			if (score >= 0) {
+				hits.add(new TaskSearchIndex.Hit(entry.getKey(), score));
+			}
+		}
+		hits.sort(Comparator.comparingDouble(TaskSearchIndex.Hit::score).reversed()
+				.thenComparing(Comparator.comparingInt(TaskSearchIndex.Hit::id).reversed()));
+		return hits;
+	}
+
+	private static List<Integer> ids(List<SearchHit> hits) {
+		return hits.stream().map(hit -> hit.task().getId()).toList();
+	}
+}
@@ -0,0 +1,180 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class TaskSnapshotTests {
+
+	private static final Instant DUE = Instant.parse("2030-01-01T00:00:00Z");
+
+	@TempDir
+	Path directory;
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void recoveryLoadsTheSnapshotAndReplaysOnlyLaterRecords(TaskLayout layout) throws IOException {
+		int renamed;
+		int deleted;
+		int added;
+		long version;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			for (int i = 0; i < 1_000; i++) {
+				manager.addTask("task " + i);
+			}
+			renamed = manager.addTask("before snapshot", DUE);
+			deleted = manager.addTask("deleted after snapshot");
+			manager.snapshot();
+
+			manager.updateTaskDescription(renamed, "after snapshot");
+			manager.markTaskCompleted(renamed);
+			manager.deleteTask(deleted);
+			added = manager.addTask("added after snapshot");
+			version = manager.getVersion();
+		}
+
+		assertEquals(1, count("snapshot-"));
+		assertEquals(1, count("wal-"));
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			assertEquals(1_002, manager.getTaskCount());
+			assertEquals("after snapshot", manager.findTaskById(renamed).getDescription());
+			assertEquals("Completed", manager.findTaskById(renamed).getStatus());
+			assertEquals(3, manager.findTaskById(renamed).getVersion());
+			assertEquals(DUE.toEpochMilli(), manager.findTaskById(renamed).getDueAt());
+			assertTrue(manager.findTaskById(renamed).getCreatedAt() > 0);
+			assertTrue(manager.findTaskById(renamed).getUpdatedAt() >= manager.findTaskById(renamed).getCreatedAt());
+			assertEquals(1, manager.findTaskById(added).getVersion());
+			assertTrue(manager.getVersion() >= version);
+			assertNull(manager.findTaskById(deleted));
+			assertEquals("added after snapshot", manager.findTaskById(added).getDescription());
+			assertEquals(1, manager.getCompletedTaskCount());
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {4, 72})
+	void snapshotsOfAnotherFormatOrLayoutAreRejected(int offset) throws IOException {
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0)) {
+			manager.addTask("in the snapshot");
+			manager.snapshot();
+		}
+		// Overwrite the header's format, or the first record's status length
+		Path snapshot;
+		try (Stream<Path> files = Files.list(directory)) {
+			snapshot = files.filter(file -> file.getFileName().toString().startsWith("snapshot-")).findFirst().orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.allocate(4).putInt(0, 3), offset);
+		}
+
+		assertThrows(IOException.class, () -> ToDoManager.open(directory, FsyncPolicy.BATCHED, 0).close());
+	}
+
+	@Test
+	void snapshotsFailingTheirChecksumPassNoTaskOn() throws IOException {
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0)) {
+			for (int i = 0; i < 100; i++) {
+				manager.addTask("task " + i);
+			}
+			manager.snapshot();
+		}
+		// Damage the last byte of the last task's description
+		Path snapshot;
+		try (Stream<Path> files = Files.list(directory)) {
+			snapshot = files.filter(file -> file.getFileName().toString().startsWith("snapshot-")).findFirst().orElseThrow();
+		}
+		try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {'x'}), channel.size() - 1);
+		}
+
+		List<Task> loaded = new ArrayList<>();
+		try (TaskSnapshot damaged = TaskSnapshot.openLatest(directory)) {
+			assertThrows(IOException.class, () -> damaged.forEach(loaded::add));
+		}
+		assertEquals(0, loaded.size());
+	}
+
+	@Test
+	void backgroundSnapshotsDuringConcurrentWritesLoseNothing() throws Exception {
+		List<String> expected;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.OS_MANAGED, 500)) {
+			ExecutorService pool = Executors.newFixedThreadPool(8);
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < 8; t++) {
+					futures.add(pool.submit(() -> {
+						ThreadLocalRandom random = ThreadLocalRandom.current();
+						for (int i = 0; i < 5_000; i++) {
+							int id = manager.addTask("task " + i);
+							switch (random.nextInt(4)) {
+								case 0 -> manager.updateTaskDescription(id, "renamed " + i);
+								case 1 -> manager.updateTaskStatus(id, "In Progress");
+								case 2 -> manager.deleteTask(id);
+								default -> manager.markTaskCompleted(id);
+							}
+						}
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+			expected = manager.getAllTasks().stream().map(Task::toString).toList();
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.OS_MANAGED, 0)) {
+			assertEquals(expected, manager.getAllTasks().stream().map(Task::toString).toList());
+		}
+	}
+
+	@Tag("benchmark")
+	@Test
+	void recoveryTimeForMillionsOfTasks() throws IOException {
+		int tasks = 2_000_000;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.OS_MANAGED, 0)) {
+			for (int i = 0; i < tasks; i++) {
+				manager.addTask("benchmark task number " + i);
+			}
+			manager.snapshot();
+		}
+
+		long start = System.nanoTime();
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.OS_MANAGED, 0)) {
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			assertEquals(tasks, manager.getTaskCount());
+			System.out.printf("Recovered %,d tasks from snapshot in %,d ms%n", tasks, millis);
+		}
+	}
+
+	private long count(String prefix) throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.filter(file -> file.getFileName().toString().startsWith(prefix)).count();
+		}
+	}
+}
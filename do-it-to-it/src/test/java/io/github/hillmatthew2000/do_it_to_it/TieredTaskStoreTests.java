@@ -0,0 +1,141 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class TieredTaskStoreTests {
+
+	private static final String[] STATUSES = {"Pending", "In Progress", "Completed", "completed"};
+
+	@Test
+	void matchesTheObjectStoreWhileTasksMoveBetweenTiers() {
+		TaskStore expected = new ConcurrentTaskStore(16);
+		TieredTaskStore tiered = new TieredTaskStore(16);
+		Random random = new Random(42);
+		for (int i = 0; i < 200_000; i++) {
+			// IDs span several archive pages, and some descriptions exceed an archive chunk
+			int id = 1 + random.nextInt(150_000);
+			switch (random.nextInt(6)) {
+				case 0, 1 -> {
+					String description = random.nextInt(10_000) == 0 ? "x".repeat(1_100_000) : "täsk " + i;
+					long createdAt = random.nextInt(3) == 0 ? 0 : random.nextLong(1L << 42);
+					Task task = new Task(id, description, STATUSES[random.nextInt(STATUSES.length)], 1 + random.nextInt(100),
+							createdAt, createdAt + random.nextInt(1_000), random.nextBoolean() ? 0 : random.nextLong(1L << 42));
+					assertEquals(describe(expected.put(task)), describe(tiered.put(task)));
+				}
+				case 2 -> assertEquals(describe(expected.remove(id)), describe(tiered.remove(id)));
+				case 3 -> {
+					String status = STATUSES[random.nextInt(STATUSES.length)];
+					assertEquals(describe(expected.computeIfPresent(id, task -> withStatus(task, status))),
+							describe(tiered.computeIfPresent(id, task -> withStatus(task, status))));
+				}
+				case 4 -> {
+					if (random.nextInt(100) == 0) {
+						tiered.migrateCompleted();
+					}
+					// Compaction passes interleave with every other operation
+					tiered.compact();
+				}
+				default -> assertEquals(describe(expected.get(id)), describe(tiered.get(id)));
+			}
+			assertEquals(expected.size(), tiered.size());
+		}
+		tiered.migrateCompleted();
+		int completed = 0;
+		for (int id = 0; id <= 150_001; id++) {
+			Task task = expected.get(id);
+			assertEquals(describe(task), describe(tiered.get(id)));
+			if (task != null && task.getStatus().equalsIgnoreCase("Completed")) {
+				completed++;
+			}
+		}
+		assertEquals(completed, tiered.archivedCount());
+		assertTrue(tiered.garbageBytes() > 0);
+		while (tiered.compact()) {
+			// finish the running pass
+		}
+		while (tiered.compact()) {
+			// and a full one
+		}
+		assertEquals(0, tiered.garbageBytes());
+		for (int id = 0; id <= 150_001; id++) {
+			assertEquals(describe(expected.get(id)), describe(tiered.get(id)));
+		}
+
+		tiered.clear();
+		assertEquals(0, tiered.size());
+		assertEquals(0, tiered.archivedCount());
+		assertNull(tiered.get(1));
+	}
+
+	@Test
+	void readersAlwaysFindTasksMovingBetweenTiers() throws Exception {
+		TieredTaskStore store = new TieredTaskStore(16);
+		for (int id = 1; id <= 64; id++) {
+			store.put(new Task(id, "task " + id, "Pending"));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(6);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 2; t++) {
+				futures.add(pool.submit(() -> {
+					Random random = new Random();
+					for (int i = 1; i <= 100_000; i++) {
+						String status = random.nextBoolean() ? "Completed" : "Pending";
+						store.computeIfPresent(1 + random.nextInt(64),
+								task -> new Task(task.getId(), task.getDescription(), status, task.getVersion() + 1));
+						if (i % 100 == 0) {
+							store.migrateCompleted();
+						}
+					}
+					return null;
+				}));
+			}
+			for (int t = 0; t < 4; t++) {
+				futures.add(pool.submit(() -> {
+					Random random = new Random();
+					while (running.get()) {
+						int id = 1 + random.nextInt(64);
+						Task task = store.get(id);
+						assertNotNull(task, "task " + id + " missing");
+						assertEquals("task " + id, task.getDescription());
+					}
+					return null;
+				}));
+			}
+			for (int i = 0; i < 2; i++) {
+				futures.get(i).get();
+			}
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		assertEquals(64, store.size());
+	}
+
+	private static Task withStatus(Task task, String status) {
+		return new Task(task.getId(), task.getDescription(), status, task.getVersion() + 1,
+				task.getCreatedAt(), task.getUpdatedAt() + 1, task.getDueAt());
+	}
+
+	private static String describe(Task task) {
+		return task == null ? "null" : task + " | Version: " + task.getVersion()
+				+ " | Times: " + task.getCreatedAt() + "/" + task.getUpdatedAt() + "/" + task.getDueAt();
+	}
+}
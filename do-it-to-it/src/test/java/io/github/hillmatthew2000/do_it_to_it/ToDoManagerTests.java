@@ -0,0 +1,551 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class ToDoManagerTests {
+
+	private static final int THREADS = 16;
+	private static final int TASKS_PER_THREAD = 20_000;
+
+	@Test
+	void concurrentAddTaskNeverReusesAnId() throws Exception {
+		ToDoManager manager = new ToDoManager();
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < TASKS_PER_THREAD; i++) {
+						int id = manager.addTask("task " + thread + "-" + i);
+						assertTrue(ids.add(id), "duplicate ID " + id);
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertEquals(THREADS * TASKS_PER_THREAD, ids.size());
+		assertEquals(THREADS * TASKS_PER_THREAD, manager.getTaskCount());
+		for (int id : ids) {
+			assertNotNull(manager.findTaskById(id));
+		}
+	}
+
+	@Test
+	void advanceNextIdDuringConcurrentInsertsNeverMovesBackwards() throws Exception {
+		TaskIdAllocator allocator = new TaskIdAllocator(1);
+		Set<Integer> ids = ConcurrentHashMap.newKeySet();
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(pool.submit(() -> {
+					for (int i = 0; i < TASKS_PER_THREAD / 4; i++) {
+						assertTrue(ids.add(allocator.next()));
+						// Simulate restores that lag behind the live counter
+						allocator.advanceTo(allocator.peek() - 10);
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		assertEquals(THREADS * (TASKS_PER_THREAD / 4), ids.size());
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void clearingWhileTasksAreAddedLeavesEveryIndexInStep(TaskLayout layout) throws Exception {
+		ToDoManager manager = new ToDoManager(layout);
+		ExecutorService pool = Executors.newFixedThreadPool(5);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(pool.submit(() -> {
+					for (int i = 0; i < 20_000; i++) {
+						int id = manager.addTask("racing task " + i);
+						if (i % 3 == 0) {
+							manager.markTaskCompleted(id);
+						}
+					}
+					return null;
+				}));
+			}
+			futures.add(pool.submit(() -> {
+				for (int i = 0; i < 200; i++) {
+					manager.clearAllTasks();
+					Thread.sleep(1);
+				}
+				return null;
+			}));
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		List<Task> tasks = manager.getAllTasks();
+		assertEquals(manager.getTaskCount(), tasks.size());
+		assertEquals(tasks.size(), manager.getTaskCountsByStatus().values().stream().mapToLong(Long::longValue).sum());
+		long completed = tasks.stream().filter(task -> task.getStatus().equals("Completed")).count();
+		assertEquals(completed, manager.getCompletedTaskCount());
+		int paged = 0;
+		for (TaskPage page = manager.getTasks(0, ToDoManager.MAX_PAGE_SIZE, "Completed", false); ;
+				page = manager.getTasks(page.nextCursor(), ToDoManager.MAX_PAGE_SIZE, "Completed", false)) {
+			paged += page.tasks().size();
+			if (page.nextCursor() == null) {
+				break;
+			}
+		}
+		assertEquals(completed, paged);
+		assertEquals(Math.min(tasks.size(), 50), manager.searchTasks("racing", 50).size());
+	}
+
+	@Test
+	void getTasksWalksPagesFromTheCursor() {
+		ToDoManager manager = new ToDoManager();
+		List<Integer> created = new ArrayList<>();
+		for (int i = 0; i < 150_000; i++) {
+			created.add(manager.addTask("task " + i));
+		}
+		for (int i = 0; i < created.size(); i += 3) {
+			manager.deleteTask(created.get(i));
+		}
+		manager.updateTaskStatus(created.get(149_998), "In Progress");
+
+		List<Task> all = manager.getAllTasks();
+		List<Integer> paged = new ArrayList<>();
+		Integer cursor = 0;
+		while (cursor != null) {
+			TaskPage page = manager.getTasks(cursor, 1000, null, false);
+			page.tasks().forEach(task -> paged.add(task.getId()));
+			cursor = page.nextCursor();
+		}
+		assertEquals(all.stream().map(Task::getId).toList(), paged);
+
+		TaskPage newest = manager.getTasks(0, 2, null, true);
+		assertEquals(List.of(created.get(149_999), created.get(149_998)),
+				newest.tasks().stream().map(Task::getId).toList());
+
+		TaskPage inProgress = manager.getTasks(0, 10, "in progress", false);
+		assertEquals(1, inProgress.tasks().size());
+		assertNull(inProgress.nextCursor());
+
+		// Every third task in the range was deleted, so a page of ten spans fifteen IDs
+		int from = created.get(1_000);
+		TaskPage range = manager.getTasks(0, 10, "PENDING", true, from, from + 14);
+		assertEquals(List.of(from + 13, from + 12, from + 10), range.tasks().subList(0, 3).stream().map(Task::getId).toList());
+		assertEquals(10, range.tasks().size());
+		assertNull(range.nextCursor());
+		assertNull(manager.getTasks(0, 10, "Blocked", false).nextCursor());
+		assertThrows(IllegalArgumentException.class, () -> manager.getTasks(0, 10, null, false, 5, 4));
+	}
+
+	@Test
+	void statusPagesOnlyReturnTasksThatHaveTheStatus() throws Exception {
+		ToDoManager manager = new ToDoManager();
+		int[] created = manager.addTasks(Collections.nCopies(64, "flipping"));
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < 2; t++) {
+				futures.add(pool.submit(() -> {
+					for (int i = 0; i < 50_000; i++) {
+						manager.updateTaskStatus(created[i % created.length], i % 2 == 0 ? "Completed" : "pending");
+					}
+					return null;
+				}));
+			}
+			for (int t = 0; t < 2; t++) {
+				String status = t == 0 ? "completed" : "Pending";
+				futures.add(pool.submit(() -> {
+					for (int i = 0; i < 5_000; i++) {
+						for (Task task : manager.getTasks(0, 100, status, i % 2 == 0).tasks()) {
+							assertTrue(status.equalsIgnoreCase(task.getStatus()));
+						}
+					}
+					return null;
+				}));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+		int completed = manager.getTasks(0, 100, "Completed", false).tasks().size();
+		int pending = manager.getTasks(0, 100, "Pending", false).tasks().size();
+		assertEquals(64, completed + pending);
+		assertEquals(completed, manager.getCompletedTaskCount());
+	}
+
+	@Test
+	void statisticsFollowEveryMutation() {
+		ToDoManager manager = new ToDoManager();
+		int first = manager.addTask("first");
+		int second = manager.addTask("second");
+		int third = manager.addTask("third");
+		manager.markTaskCompleted(first);
+		manager.updateTaskStatus(second, "Blocked");
+		manager.updateTaskStatus(third, "completed");
+		manager.deleteTask(first);
+
+		assertEquals(1, manager.getCompletedTaskCount());
+		assertEquals(Map.of("Blocked", 1L, "completed", 1L), manager.getTaskCountsByStatus());
+
+		manager.clearAllTasks();
+		assertEquals(0, manager.getCompletedTaskCount());
+		assertTrue(manager.getTaskCountsByStatus().isEmpty());
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void statusesBeyondTheCapAreRejectedBeforeAnyChange(TaskLayout layout, @TempDir Path directory) throws Exception {
+		int id;
+		String last = null;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, ToDoManager.DEFAULT_SNAPSHOT_THRESHOLD, layout)) {
+			List<String> statuses = new ArrayList<>();
+			for (int i = 0; i < ToDoManager.MAX_STATUSES; i++) {
+				statuses.add("status " + i);
+			}
+			int[] created = manager.addTasks(Collections.nCopies(statuses.size(), "capped"), statuses);
+			id = manager.addTask("one more");
+			long version = manager.getVersion();
+
+			assertThrows(IllegalArgumentException.class, () -> manager.updateTaskStatus(id, "one too many"));
+			assertThrows(IllegalArgumentException.class,
+				() -> manager.addTasks(List.of("rejected"), List.of("one too many")));
+			assertEquals(version, manager.getVersion());
+			assertEquals(ToDoManager.MAX_STATUSES + 1, manager.getTaskCount());
+			assertEquals("Pending", manager.findTaskById(id).getStatus());
+			assertTrue(manager.markTaskCompleted(id));
+
+			// Once statuses are unused they make room for others, and their codes are reused
+			manager.deleteTask(created[0]);
+			manager.deleteTask(created[1]);
+			for (int i = 0; i <= Short.MAX_VALUE; i++) {
+				last = "cycled " + i;
+				assertTrue(manager.updateTaskStatus(id, last));
+			}
+			assertEquals(List.of(id), manager.getTasks(0, 10, last, false).tasks().stream().map(Task::getId).toList());
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, ToDoManager.DEFAULT_SNAPSHOT_THRESHOLD, layout)) {
+			assertEquals(ToDoManager.MAX_STATUSES - 1, manager.getTaskCount());
+			assertEquals(ToDoManager.MAX_STATUSES - 1, manager.getTaskCountsByStatus().size());
+			assertEquals(last, manager.findTaskById(id).getStatus());
+			assertEquals(List.of(id), manager.getTasks(0, 10, last, false).tasks().stream().map(Task::getId).toList());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void concurrentNewStatusesNeverPassTheCap(TaskLayout layout) throws Exception {
+		ToDoManager manager = new ToDoManager(layout);
+		int statusesPerThread = ToDoManager.MAX_STATUSES / 4;
+		AtomicInteger rejected = new AtomicInteger();
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				int thread = t;
+				futures.add(pool.submit(() -> {
+					int id = manager.addTask("task " + thread);
+					start.await();
+					for (int i = 0; i < statusesPerThread; i++) {
+						String status = "status " + thread + "-" + i;
+						try {
+							if (i % 2 == 0) {
+								manager.addTasks(List.of("added"), List.of(status));
+							} else {
+								manager.updateTaskStatus(id, status);
+							}
+						} catch (IllegalArgumentException e) {
+							rejected.incrementAndGet();
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Map<String, Long> inUse = manager.getTaskCountsByStatus();
+		assertTrue(inUse.size() - (inUse.containsKey("Pending") ? 1 : 0) <= ToDoManager.MAX_STATUSES,
+			inUse.size() + " statuses in use");
+		assertTrue(rejected.get() > 0);
+		manager.close();
+	}
+
+	@Test
+	void batchMutationsReportEachItem() {
+		ToDoManager manager = new ToDoManager();
+		int[] created = manager.addTasks(List.of("first", " second ", "third"));
+		assertEquals(created[0] + 1, created[1]);
+		assertEquals(created[1] + 1, created[2]);
+		assertEquals("second", manager.findTaskById(created[1]).getDescription());
+
+		boolean[] completed = manager.markTasksCompleted(new int[] {created[0], -1, created[2]});
+		assertArrayEquals(new boolean[] {true, false, true}, completed);
+		assertEquals(2, manager.getCompletedTaskCount());
+
+		boolean[] deleted = manager.deleteTasks(new int[] {created[0], created[0], created[1]});
+		assertArrayEquals(new boolean[] {true, false, true}, deleted);
+		assertEquals(1, manager.getTaskCount());
+
+		assertThrows(IllegalArgumentException.class, () -> manager.addTasks(List.of("ok", " ")));
+		assertEquals(1, manager.getTaskCount());
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void purgingCompletedTasksSurvivesARestart(TaskLayout layout, @TempDir Path directory) throws Exception {
+		int tasks = 25_000;
+		int kept;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			kept = manager.addTask("kept");
+			for (int i = 1; i <= tasks; i++) {
+				int id = manager.addTask("task " + i);
+				if (i % 3 != 0) {
+					manager.updateTaskStatus(id, i % 3 == 1 ? "Completed" : "completed");
+				}
+			}
+			assertEquals(tasks - tasks / 3, manager.purgeCompletedTasks());
+			assertEquals(tasks / 3 + 1, manager.getTaskCount());
+			assertEquals(0, manager.getCompletedTaskCount());
+			assertEquals(0, manager.purgeCompletedTasks());
+		}
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			assertEquals(tasks / 3 + 1, manager.getTaskCount());
+			manager.forEachTask(task -> assertEquals("Pending", task.getStatus()));
+			assertEquals("kept", manager.findTaskById(kept).getDescription());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void openTasksBecomeOverdueOnceTheirDueDatePasses(TaskLayout layout, @TempDir Path directory) throws Exception {
+		Instant start = Instant.parse("2025-03-01T09:00:00Z");
+		MutableClock clock = new MutableClock(start.toEpochMilli());
+		int soon;
+		int later;
+		int completed;
+		int moved;
+		int cleared;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			manager.setClock(clock);
+			List<TaskEvent> events = new ArrayList<>();
+			manager.addChangeListener(events::add);
+			soon = manager.addTask("due soon", start.plusSeconds(5));
+			later = manager.addTask("due later", start.plusSeconds(3_600));
+			completed = manager.addTask("completed in time", start.plusSeconds(5));
+			moved = manager.addTask("moved back", start.plusSeconds(5));
+			cleared = manager.addTask("due date cleared", start.plusSeconds(5));
+			manager.addTask("no due date");
+			clock.millis += 1_000;
+			manager.markTaskCompleted(completed);
+			assertTrue(manager.setTaskDueDate(moved, start.plusSeconds(7_200), 1));
+			assertTrue(manager.setTaskDueDate(cleared, null));
+			assertThrows(IllegalArgumentException.class, () -> manager.setTaskDueDate(soon, Instant.EPOCH));
+
+			Task task = manager.findTaskById(soon);
+			assertEquals(start.toEpochMilli(), task.getCreatedAt());
+			assertEquals(start.toEpochMilli(), task.getUpdatedAt());
+			assertEquals(start.plusSeconds(5).toEpochMilli(), task.getDueAt());
+			assertEquals(start.toEpochMilli() + 1_000, manager.findTaskById(moved).getUpdatedAt());
+			assertEquals(0, manager.findTaskById(cleared).getDueAt());
+
+			clock.millis = start.plusSeconds(4).toEpochMilli();
+			assertEquals(0, manager.expireOverdueTasks());
+			clock.millis = start.plusSeconds(6).toEpochMilli();
+			events.clear();
+			assertEquals(1, manager.expireOverdueTasks());
+			assertEquals(0, manager.expireOverdueTasks());
+
+			task = manager.findTaskById(soon);
+			assertEquals(ToDoManager.OVERDUE, task.getStatus());
+			assertEquals(2, task.getVersion());
+			assertEquals(clock.millis, task.getUpdatedAt());
+			assertEquals(1, events.size());
+			assertEquals(soon, events.get(0).taskId());
+			assertEquals(ToDoManager.OVERDUE, events.get(0).task().getStatus());
+			assertEquals(Map.of("Completed", 1L, "Overdue", 1L, "Pending", 4L), manager.getTaskCountsByStatus());
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED, 0, layout)) {
+			manager.setClock(clock);
+			assertEquals(start.plusSeconds(3_600).toEpochMilli(), manager.findTaskById(later).getDueAt());
+			assertEquals(start.toEpochMilli(), manager.findTaskById(later).getCreatedAt());
+			clock.millis = start.plusSeconds(3_601).toEpochMilli();
+			assertEquals(1, manager.expireOverdueTasks());
+			assertEquals(ToDoManager.OVERDUE, manager.findTaskById(later).getStatus());
+			assertEquals("Pending", manager.findTaskById(moved).getStatus());
+			assertEquals("Completed", manager.findTaskById(completed).getStatus());
+
+			manager.deleteTask(moved);
+			clock.millis = start.plusSeconds(86_400).toEpochMilli();
+			assertEquals(0, manager.expireOverdueTasks());
+			assertEquals("Pending", manager.findTaskById(cleared).getStatus());
+		}
+	}
+
+	@ParameterizedTest
+	@EnumSource(TaskLayout.class)
+	void taskViewsKeepTheTasksAsTheyWere(TaskLayout layout) {
+		ToDoManager manager = new ToDoManager(layout);
+		int kept = manager.addTask("kept");
+		int renamed = manager.addTask("before");
+		int deleted = manager.addTask("deleted later");
+		TaskView view = manager.getTaskView();
+
+		manager.updateTaskDescription(renamed, "after");
+		manager.deleteTask(deleted);
+		int added = manager.addTask("added later");
+
+		assertEquals(3, view.size());
+		List<Integer> ids = new ArrayList<>();
+		view.forEach(task -> ids.add(task.getId()));
+		assertEquals(List.of(kept, renamed, deleted), ids);
+		assertEquals("before", view.get(renamed).getDescription());
+		assertEquals("deleted later", view.get(deleted).getDescription());
+		assertNull(view.get(added));
+		assertEquals("after", manager.getTaskView().get(renamed).getDescription());
+		assertEquals(3, manager.getTaskView().size());
+	}
+
+	@Test
+	void conditionalUpdatesNeverLoseAnIncrement() throws Exception {
+		ToDoManager manager = new ToDoManager();
+		int id = manager.addTask("0");
+		CountDownLatch start = new CountDownLatch(1);
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < 1_000; i++) {
+						while (true) {
+							Task task = manager.findTaskById(id);
+							String next = String.valueOf(Integer.parseInt(task.getDescription()) + 1);
+							try {
+								manager.updateTaskDescription(id, next, task.getVersion());
+								break;
+							} catch (TaskVersionConflictException e) {
+								// another thread got there first; read again and retry
+							}
+						}
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+
+		Task task = manager.findTaskById(id);
+		assertEquals(String.valueOf(THREADS * 1_000), task.getDescription());
+		assertEquals(1 + THREADS * 1_000, task.getVersion());
+	}
+
+	@Test
+	void updatesReplaceTasksInsteadOfModifyingThem() {
+		ToDoManager manager = new ToDoManager();
+		int id = manager.addTask("original");
+		Task before = manager.findTaskById(id);
+
+		assertTrue(manager.markTaskCompleted(id, 1));
+		TaskVersionConflictException conflict = assertThrows(TaskVersionConflictException.class,
+				() -> manager.updateTaskStatus(id, "Pending", 1));
+		assertEquals(2, conflict.getCurrentVersion());
+
+		assertEquals("Pending", before.getStatus());
+		assertEquals(1, before.getVersion());
+		assertEquals("Completed", manager.findTaskById(id).getStatus());
+		assertEquals(1, manager.getCompletedTaskCount());
+	}
+
+	/**
+	 * A clock that only moves when a test moves it.
+	 */
+	private static final class MutableClock extends Clock {
+		volatile long millis;
+
+		MutableClock(long millis) {
+			this.millis = millis;
+		}
+
+		@Override
+		public long millis() {
+			return millis;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(millis);
+		}
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,445 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.hamcrest.Matchers.hasItem;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TodoControllerTests {
+
+	private TaskEventBroadcaster events;
+	private SimpleMeterRegistry registry;
+	private TodoMetrics metrics;
+	private TaskPartitions partitions;
+	private MockMvc mvc;
+
+	@BeforeEach
+	void setUp() {
+		SingletonToDoManager.configure(null, FsyncPolicy.BATCHED, TaskLayout.OBJECTS);
+		events = new TaskEventBroadcaster(new ObjectMapper());
+		registry = new SimpleMeterRegistry();
+		metrics = new TodoMetrics(registry);
+		partitions = new TaskPartitions(SingletonToDoManager.getInstance(), events, null,
+			FsyncPolicy.BATCHED, TaskLayout.OBJECTS, 4, metrics, new ObjectMapper());
+		TaskResponseCache responses = new TaskResponseCache(TaskResponseCache.DEFAULT_MAX_BYTES, new ObjectMapper(), registry);
+		mvc = MockMvcBuilders.standaloneSetup(new TodoController(partitions, metrics, responses), new TaskPartitionController(partitions))
+			.setCustomArgumentResolvers(new TaskPartitionResolver(partitions))
+			.build();
+	}
+
+	@AfterEach
+	void tearDown() {
+		partitions.close();
+		events.close();
+		metrics.close();
+	}
+
+	@Test
+	void batchCreateReportsEveryItemInOrder() throws Exception {
+		StringBuilder body = new StringBuilder("[");
+		for (int i = 0; i < 2500; i++) {
+			body.append(i == 1200 ? "{\"description\": \" \"}," : "{\"description\": \"task " + i + "\"},");
+		}
+		body.append("\"plain\"]");
+
+		mvc.perform(post("/api/todos/batch").contentType(MediaType.APPLICATION_JSON).content(body.toString()))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.succeeded").value(2500))
+			.andExpect(jsonPath("$.failed").value(1))
+			.andExpect(jsonPath("$.results.length()").value(2501))
+			.andExpect(jsonPath("$.results[1200].success").value(false))
+			.andExpect(jsonPath("$.results[1200].error").value("Description is required"))
+			.andExpect(jsonPath("$.results[2500].index").value(2500))
+			.andExpect(jsonPath("$.results[2500].success").value(true));
+	}
+
+	@Test
+	void batchCompleteAndDeleteReportMissingTasks() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		int first = manager.addTask("first");
+		int second = manager.addTask("second");
+
+		mvc.perform(patch("/api/todos/batch/complete").contentType(MediaType.APPLICATION_JSON)
+				.content("[" + first + ", \"x\", " + second + "]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.succeeded").value(2))
+			.andExpect(jsonPath("$.results[1].error").value("Task ID must be an integer"));
+
+		mvc.perform(post("/api/todos/batch/delete").contentType(MediaType.APPLICATION_JSON)
+				.content("[" + first + ", " + first + "]"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.results[0].success").value(true))
+			.andExpect(jsonPath("$.results[1].taskId").value(first))
+			.andExpect(jsonPath("$.results[1].error").value("Task not found"));
+
+		ToDoManager fresh = partitions.get("purge");
+		int completed = fresh.addTask("done");
+		int open = fresh.addTask("open");
+		fresh.markTaskCompleted(completed);
+		mvc.perform(delete("/api/partitions/purge/todos/completed"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.deleted").value(1));
+		assertNull(fresh.findTaskById(completed));
+		assertEquals("open", fresh.findTaskById(open).getDescription());
+	}
+
+	@Test
+	void missingAndInvalidRequestsAreCountedPerEndpoint() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		int id = manager.addTask("counted");
+		manager.deleteTask(id);
+
+		mvc.perform(get("/api/todos/" + id)).andExpect(status().isNotFound());
+		mvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON).content("{\"description\": \" \"}"))
+			.andExpect(status().isBadRequest());
+		mvc.perform(post("/api/todos/batch/delete").contentType(MediaType.APPLICATION_JSON)
+				.content("[" + id + ", \"x\", " + id + "]"))
+			.andExpect(status().isOk());
+
+		assertEquals(1, registry.get("todo.requests.not.found").tag("endpoint", "getTaskById").counter().count());
+		assertEquals(1, registry.get("todo.requests.invalid").tag("endpoint", "createTask").counter().count());
+		assertEquals(2, registry.get("todo.requests.not.found").tag("endpoint", "deleteTasks").counter().count());
+		assertEquals(1, registry.get("todo.requests.invalid").tag("endpoint", "deleteTasks").counter().count());
+	}
+
+	@Test
+	void malformedBatchReportsItemsAppliedBeforeTheError() throws Exception {
+		mvc.perform(post("/api/todos/batch").contentType(MediaType.APPLICATION_JSON)
+				.content("[\"one\", \"two\", {"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.succeeded").value(2))
+			.andExpect(jsonPath("$.results.length()").value(2));
+
+		mvc.perform(post("/api/todos/batch").contentType(MediaType.APPLICATION_JSON).content("{}"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.error").value("Request body must be a JSON array"));
+	}
+
+	@Test
+	void searchReturnsRankedMatches() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		int exact = manager.addTask("Quarterly zephyr report");
+		int prefix = manager.addTask("Zephyrus migration");
+
+		mvc.perform(get("/api/todos/search").param("q", "zephyr"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.results[0].task.id").value(exact))
+			.andExpect(jsonPath("$.results[1].task.id").value(prefix));
+
+		mvc.perform(get("/api/todos/search").param("q", " "))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.error").value("Search query cannot be empty"));
+	}
+
+	@Test
+	void conditionalGetsAnswerNotModifiedUntilTheTasksChange() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		int id = manager.addTask("cached");
+
+		String listTag = mvc.perform(get("/api/todos"))
+			.andExpect(status().isOk())
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		String taskTag = mvc.perform(get("/api/todos/" + id))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.version").value(1))
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(get("/api/todos").header(HttpHeaders.IF_NONE_MATCH, listTag))
+			.andExpect(status().isNotModified())
+			.andExpect(header().string(HttpHeaders.ETAG, listTag));
+		mvc.perform(get("/api/todos/" + id).header(HttpHeaders.IF_NONE_MATCH, taskTag))
+			.andExpect(status().isNotModified());
+
+		manager.markTaskCompleted(id);
+
+		mvc.perform(get("/api/todos").header(HttpHeaders.IF_NONE_MATCH, listTag))
+			.andExpect(status().isOk());
+		mvc.perform(get("/api/todos/" + id).header(HttpHeaders.IF_NONE_MATCH, taskTag))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.version").value(2));
+	}
+
+	@Test
+	void listsAndStatsAreServedFromTheCacheUntilTheTasksChange() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		manager.clearAllTasks();
+		int id = manager.addTask("cached");
+
+		for (int i = 0; i < 3; i++) {
+			mvc.perform(get("/api/todos"))
+				.andExpect(status().isOk())
+				.andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE))
+				.andExpect(jsonPath("$[0].status").value("Pending"));
+			mvc.perform(get("/api/todos/stats"))
+				.andExpect(jsonPath("$.pendingTasks").value(1));
+			mvc.perform(get("/api/todos?limit=1&sort=desc"))
+				.andExpect(jsonPath("$.tasks[0].id").value(id));
+		}
+		assertEquals(6, registry.get("todo.response.cache.requests").tag("result", "hit").functionCounter().count());
+
+		manager.markTaskCompleted(id);
+
+		mvc.perform(get("/api/todos"))
+			.andExpect(jsonPath("$[0].status").value("Completed"));
+		mvc.perform(get("/api/todos/stats"))
+			.andExpect(jsonPath("$.completedTasks").value(1));
+		assertEquals(5, registry.get("todo.response.cache.requests").tag("result", "miss").functionCounter().count());
+	}
+
+	@Test
+	void staleVersionsAreRejectedWithConflict() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		int id = manager.addTask("contended");
+		String tag = mvc.perform(get("/api/todos/" + id))
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+		mvc.perform(put("/api/todos/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"first\", \"version\": 1}"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.task.version").value(2));
+
+		mvc.perform(put("/api/todos/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"second\", \"version\": 1}"))
+			.andExpect(status().isConflict())
+			.andExpect(jsonPath("$.currentVersion").value(2));
+		mvc.perform(patch("/api/todos/" + id + "/complete").header(HttpHeaders.IF_MATCH, tag))
+			.andExpect(status().isConflict());
+		mvc.perform(put("/api/todos/" + id).contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"third\", \"version\": \"x\"}"))
+			.andExpect(status().isBadRequest());
+
+		String current = mvc.perform(get("/api/todos/" + id))
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		mvc.perform(patch("/api/todos/" + id + "/complete").header(HttpHeaders.IF_MATCH, current))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.task.status").value("Completed"));
+	}
+
+	@Test
+	void dueDatesAreSetClearedAndValidated() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		String taskId = mvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"file taxes\", \"dueAt\": \"2030-04-15T23:59:00Z\"}"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.task.dueAt").value(Instant.parse("2030-04-15T23:59:00Z").toEpochMilli()))
+			.andReturn().getResponse().getContentAsString().replaceAll(".*\"taskId\":(\\d+).*", "$1");
+		int id = Integer.parseInt(taskId);
+		mvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"bad\", \"dueAt\": \"next tuesday\"}"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.error").value("Invalid due date: next tuesday"));
+
+		mvc.perform(put("/api/todos/" + id + "/due").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"dueAt\": \"1900000000000\", \"version\": 1}"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.task.dueAt").value(1_900_000_000_000L))
+			.andExpect(jsonPath("$.task.version").value(2));
+		mvc.perform(put("/api/todos/" + id + "/due").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"dueAt\": \"2031-01-01T00:00:00Z\", \"version\": 1}"))
+			.andExpect(status().isConflict());
+		mvc.perform(put("/api/todos/" + id + "/due").contentType(MediaType.APPLICATION_JSON).content("{}"))
+			.andExpect(status().isBadRequest());
+
+		mvc.perform(delete("/api/todos/" + id + "/due"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.task.dueAt").doesNotExist());
+		assertEquals(0, manager.findTaskById(id).getDueAt());
+		manager.deleteTask(id);
+		mvc.perform(delete("/api/todos/" + id + "/due")).andExpect(status().isNotFound());
+	}
+
+	@Test
+	void exportedTasksImportAsNewTasksWithTheirStatus() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		manager.clearAllTasks();
+		int first = manager.addTask("Exported \"quoted\" task", Instant.parse("2030-01-01T00:00:00Z"));
+		int second = manager.addTask("Exported completed task");
+		manager.markTaskCompleted(second);
+
+		String export = mvc.perform(get("/api/todos/export"))
+			.andExpect(status().isOk())
+			.andExpect(header().string(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_NDJSON_VALUE))
+			.andReturn().getResponse().getContentAsString();
+		Task pending = manager.findTaskById(first);
+		Task done = manager.findTaskById(second);
+		assertEquals("{\"id\":" + first + ",\"description\":\"Exported \\\"quoted\\\" task\",\"status\":\"Pending\",\"version\":1"
+			+ ",\"createdAt\":" + pending.getCreatedAt() + ",\"updatedAt\":" + pending.getUpdatedAt() + ",\"dueAt\":" + pending.getDueAt() + "}\n"
+			+ "{\"id\":" + second + ",\"description\":\"Exported completed task\",\"status\":\"Completed\",\"version\":2"
+			+ ",\"createdAt\":" + done.getCreatedAt() + ",\"updatedAt\":" + done.getUpdatedAt() + "}\n",
+			export);
+
+		manager.clearAllTasks();
+		mvc.perform(post("/api/todos/import").contentType(MediaType.APPLICATION_NDJSON)
+				.content(export + "[1, 2]\n{\"description\": \" \"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.imported").value(2))
+			.andExpect(jsonPath("$.failed").value(2))
+			.andExpect(jsonPath("$.errors[0].line").value(3))
+			.andExpect(jsonPath("$.errors[1].error").value("Description is required"));
+
+		assertEquals(2, manager.getTaskCount());
+		assertEquals(1, manager.getCompletedTaskCount());
+		assertEquals(null, manager.findTaskById(first));
+		manager.forEachTask(task -> assertEquals(task.getStatus().equals("Pending") ? pending.getDueAt() : 0, task.getDueAt()));
+
+		mvc.perform(post("/api/todos/import").contentType(MediaType.APPLICATION_NDJSON)
+				.content("{\"description\": \"kept\"}\n{\"description\": "))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.imported").value(1));
+	}
+
+	@Test
+	void importedDueDatesOutOfRangeFailOnlyTheirLine() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		manager.clearAllTasks();
+		mvc.perform(post("/api/todos/import").contentType(MediaType.APPLICATION_NDJSON)
+				.content("{\"description\": \"kept\", \"dueAt\": \"2030-01-01T00:00:00Z\"}\n"
+					+ "{\"description\": \"epoch\", \"dueAt\": 0}\n"
+					+ "{\"description\": \"past\", \"dueAt\": \"1969-07-20T20:17:00Z\"}\n"
+					+ "{\"description\": \"far\", \"dueAt\": \"+300000000-01-01T00:00:00Z\"}\n"
+					+ "{\"description\": \"also kept\"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.imported").value(2))
+			.andExpect(jsonPath("$.failed").value(3))
+			.andExpect(jsonPath("$.errors[0].line").value(2))
+			.andExpect(jsonPath("$.errors[0].error").value("Due date must be after 1970-01-01T00:00:00Z"))
+			.andExpect(jsonPath("$.errors[1].line").value(3))
+			.andExpect(jsonPath("$.errors[2].line").value(4))
+			.andExpect(jsonPath("$.errors[2].error").value("Invalid due date: +300000000-01-01T00:00:00Z"));
+		assertEquals(2, manager.getTaskCount());
+
+		mvc.perform(post("/api/todos").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"far\", \"dueAt\": \"+300000000-01-01T00:00:00Z\"}"))
+			.andExpect(status().isBadRequest());
+		manager.clearAllTasks();
+	}
+
+	@Test
+	void importsBringingInTooManyStatusesAreRejected() throws Exception {
+		ToDoManager manager = SingletonToDoManager.getInstance();
+		manager.clearAllTasks();
+		StringBuilder lines = new StringBuilder();
+		for (int i = 0; i <= ToDoManager.MAX_STATUSES; i++) {
+			lines.append("{\"description\": \"task\", \"status\": \"status ").append(i).append("\"}\n");
+		}
+
+		mvc.perform(post("/api/todos/import").contentType(MediaType.APPLICATION_NDJSON).content(lines.toString()))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.imported").value(ToDoManager.MAX_STATUSES))
+			.andExpect(jsonPath("$.failed").value(1))
+			.andExpect(jsonPath("$.error").value("Too many distinct task statuses: at most "
+				+ ToDoManager.MAX_STATUSES + " may be in use"));
+		assertEquals(ToDoManager.MAX_STATUSES, manager.getTaskCount());
+		manager.clearAllTasks();
+	}
+
+	@Test
+	void partitionsAreNamedByPathOrHeaderAndKeepTheirTasksApart() throws Exception {
+		int shared = SingletonToDoManager.getInstance().getTaskCount();
+
+		mvc.perform(post("/api/partitions/team-a/todos").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"for team a\"}"))
+			.andExpect(status().isOk());
+		mvc.perform(post("/api/todos").header(TaskPartitions.HEADER, "team-b").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"for team b\"}"))
+			.andExpect(status().isOk());
+
+		mvc.perform(get("/api/todos").header(TaskPartitions.HEADER, "team-a"))
+			.andExpect(status().isOk())
+			.andExpect(header().stringValues(HttpHeaders.VARY, hasItem(TaskPartitions.HEADER)))
+			.andExpect(jsonPath("$.length()").value(1))
+			.andExpect(jsonPath("$[0].description").value("for team a"));
+		mvc.perform(get("/api/partitions/team-b/todos/stats"))
+			.andExpect(jsonPath("$.totalTasks").value(1));
+		assertEquals(shared, SingletonToDoManager.getInstance().getTaskCount());
+
+		// Both partitions are at version 1, so their ETags must still differ
+		String tagA = mvc.perform(get("/api/partitions/team-a/todos"))
+			.andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+		mvc.perform(get("/api/partitions/team-b/todos").header(HttpHeaders.IF_NONE_MATCH, tagA))
+			.andExpect(status().isOk());
+
+		mvc.perform(get("/api/partitions"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.length()").value(3))
+			.andExpect(jsonPath("$[0].name").value("default"))
+			.andExpect(jsonPath("$[1].name").value("team-a"))
+			.andExpect(jsonPath("$[1].totalTasks").value(1))
+			.andExpect(jsonPath("$[2].name").value("team-b"));
+	}
+
+	@Test
+	void invalidConflictingOrMissingPartitionsAreRejected() throws Exception {
+		mvc.perform(get("/api/partitions/no.dots/todos"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.error").value("Partition names must be 1 to 64 letters, digits, '-' or '_'"));
+		mvc.perform(get("/api/partitions/one/todos").header(TaskPartitions.HEADER, "two"))
+			.andExpect(status().isBadRequest());
+
+		// Reads never create a partition
+		mvc.perform(get("/api/todos").header(TaskPartitions.HEADER, "ghost"))
+			.andExpect(status().isNotFound())
+			.andExpect(jsonPath("$.error").value("Partition 'ghost' does not exist"));
+		mvc.perform(get("/api/partitions/ghost/todos/events"))
+			.andExpect(status().isNotFound());
+		mvc.perform(delete("/api/partitions/ghost/todos/1"))
+			.andExpect(status().isNotFound());
+		// Nor do requests that add no tasks
+		mvc.perform(post("/api/partitions/ghost/todos/batch/delete").contentType(MediaType.APPLICATION_JSON)
+				.content("[1]"))
+			.andExpect(status().isNotFound());
+		mvc.perform(post("/api/partitions/ghost/todos/import").content("{\"status\": \"no description\"}\n"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.imported").value(0));
+		mvc.perform(post("/api/partitions/ghost/todos").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"\"}"))
+			.andExpect(status().isBadRequest());
+		assertNull(partitions.find("ghost"));
+
+		mvc.perform(post("/api/todos").header(TaskPartitions.HEADER, "one").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"creates one\"}"))
+			.andExpect(status().isOk());
+		mvc.perform(put("/api/partitions/two"))
+			.andExpect(status().isCreated())
+			.andExpect(jsonPath("$.totalTasks").value(0));
+		mvc.perform(put("/api/partitions/TWO"))
+			.andExpect(status().isOk())
+			.andExpect(jsonPath("$.name").value("two"));
+		mvc.perform(get("/api/partitions/Two/todos").header(TaskPartitions.HEADER, "two"))
+			.andExpect(status().isOk());
+		mvc.perform(put("/api/partitions/three"))
+			.andExpect(status().isCreated());
+		mvc.perform(post("/api/todos").header(TaskPartitions.HEADER, "four").contentType(MediaType.APPLICATION_JSON)
+				.content("{\"description\": \"one too many\"}"))
+			.andExpect(status().isBadRequest())
+			.andExpect(jsonPath("$.error").value("There are already 4 partitions"));
+		mvc.perform(put("/api/partitions/four"))
+			.andExpect(status().isBadRequest());
+
+		assertEquals(List.of("default", "one", "three", "two"), List.copyOf(partitions.all().keySet()));
+		assertEquals(3, registry.get("todo.requests.invalid").tag("endpoint", "partition").counter().count());
+		assertEquals(4, registry.get("todo.requests.not.found").tag("endpoint", "partition").counter().count());
+	}
+}
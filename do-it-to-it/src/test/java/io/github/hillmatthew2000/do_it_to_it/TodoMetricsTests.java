@@ -0,0 +1,105 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class TodoMetricsTests {
+
+	private ToDoManager manager;
+	private SimpleMeterRegistry registry;
+	private TodoMetrics metrics;
+
+	@BeforeEach
+	void setUp() {
+		manager = new ToDoManager();
+		registry = new SimpleMeterRegistry();
+		metrics = new TodoMetrics(manager, registry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		metrics.close();
+		manager.close();
+	}
+
+	@Test
+	void everyOperationIsTimedUnderItsMethodName() {
+		int id = manager.addTask("timed");
+		manager.findTaskById(id);
+		manager.findTaskById(-1);
+		manager.markTaskCompleted(id);
+
+		assertEquals(1, registry.get("todo.manager.operations").tag("operation", "addTask").timer().count());
+		assertEquals(2, registry.get("todo.manager.operations").tag("operation", "findTaskById").timer().count());
+		assertEquals(1, registry.get("todo.manager.operations").tag("operation", "markTaskCompleted").timer().count());
+		assertEquals(0, registry.get("todo.manager.operations").tag("operation", "deleteTask").timer().count());
+		assertTrue(registry.get("todo.manager.operations").tag("operation", "addTask").timer()
+			.totalTime(TimeUnit.NANOSECONDS) > 0);
+	}
+
+	@Test
+	void gaugesFollowTheManager() {
+		int first = manager.addTask("first");
+		manager.addTask("second");
+		manager.markTaskCompleted(first);
+		metrics.refreshStatusGauges();
+
+		assertEquals(2, registry.get("todo.tasks").gauge().value());
+		assertEquals(1, registry.get("todo.tasks.completed").gauge().value());
+		assertEquals(1, registry.get("todo.tasks.by.status").tag("status", "Completed").gauge().value());
+		assertEquals(1, registry.get("todo.tasks.by.status").tag("status", "Pending").gauge().value());
+	}
+
+	@Test
+	void gaugesAreTaggedWithTheirPartition() {
+		manager.addTask("in the default partition");
+		ToDoManager work = new ToDoManager();
+		try {
+			metrics.track("work", work);
+			work.markTaskCompleted(work.addTask("at work"));
+			work.addTask("more work");
+			metrics.refreshStatusGauges();
+
+			assertEquals(1, registry.get("todo.tasks").tag("partition", TaskPartitions.DEFAULT_PARTITION).gauge().value());
+			assertEquals(2, registry.get("todo.tasks").tag("partition", "work").gauge().value());
+			assertEquals(1, registry.get("todo.tasks.completed").tag("partition", "work").gauge().value());
+			assertEquals(1, registry.get("todo.tasks.by.status").tags("partition", "work", "status", "Completed").gauge().value());
+			assertEquals(1, registry.get("todo.manager.operations").tag("operation", "markTaskCompleted").timer().count());
+		} finally {
+			work.close();
+		}
+	}
+
+	@Test
+	void statusGaugesAreCappedWithTheRestAsOther() {
+		// Custom statuses sorting before the built-in ones must not push them out
+		for (int i = 0; i < TodoMetrics.MAX_STATUS_GAUGES + 5; i++) {
+			manager.updateTaskStatus(manager.addTask("task " + i), "Awaiting " + i);
+		}
+		manager.markTaskCompleted(manager.addTask("done"));
+		metrics.refreshStatusGauges();
+
+		assertEquals(TodoMetrics.BUILT_IN_STATUSES.size() + TodoMetrics.MAX_STATUS_GAUGES + 1,
+			registry.find("todo.tasks.by.status").gauges().size());
+		assertEquals(5, registry.get("todo.tasks.by.status").tag("status", "other").gauge().value());
+		assertEquals(1, registry.get("todo.tasks.by.status").tag("status", "Completed").gauge().value());
+		assertEquals(0, registry.get("todo.tasks.by.status").tag("status", "Pending").gauge().value());
+		assertEquals(0, registry.get("todo.tasks.by.status").tag("status", "Overdue").gauge().value());
+	}
+
+	@Test
+	void closingDetachesTheRecorder() {
+		metrics.close();
+		manager.addTask("untimed");
+
+		assertEquals(0, registry.get("todo.manager.operations").tag("operation", "addTask").timer().count());
+	}
+}
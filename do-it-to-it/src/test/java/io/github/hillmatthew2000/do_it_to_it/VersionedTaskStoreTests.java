@@ -0,0 +1,136 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class VersionedTaskStoreTests {
+
+	private static final String[] STATUSES = {"Pending", "In Progress", "Completed"};
+
+	@Test
+	void matchesTheObjectStoreWhileOldViewsStayAsTheyWere() {
+		TaskStore expected = new ConcurrentTaskStore(16);
+		VersionedTaskStore versioned = new VersionedTaskStore();
+		Random random = new Random(42);
+		TreeMap<Integer, String> atView = new TreeMap<>();
+		TaskView view = versioned.view();
+		for (int i = 0; i < 200_000; i++) {
+			// IDs span several trie levels
+			int id = random.nextInt(4) == 0 ? 1 + random.nextInt(2_000_000) : 1 + random.nextInt(5_000);
+			switch (random.nextInt(5)) {
+				case 0, 1 -> {
+					Task task = new Task(id, "täsk " + i, STATUSES[random.nextInt(STATUSES.length)]);
+					assertEquals(describe(expected.put(task)), describe(versioned.put(task)));
+				}
+				case 2 -> assertEquals(describe(expected.remove(id)), describe(versioned.remove(id)));
+				case 3 -> {
+					String status = "status " + random.nextInt(20);
+					assertEquals(describe(expected.computeIfPresent(id, task -> withStatus(task, status))),
+							describe(versioned.computeIfPresent(id, task -> withStatus(task, status))));
+				}
+				default -> assertEquals(describe(expected.get(id)), describe(versioned.get(id)));
+			}
+			assertEquals(expected.size(), versioned.size());
+			if (i % 50_000 == 0) {
+				assertEquals(atView, contents(view));
+				view = versioned.view();
+				atView = contents(view);
+			}
+		}
+		assertEquals(atView, contents(view));
+		for (int id = 0; id <= 5_001; id++) {
+			assertEquals(describe(expected.get(id)), describe(versioned.get(id)));
+		}
+
+		TaskView last = versioned.view();
+		versioned.clear();
+		assertEquals(0, versioned.size());
+		assertNull(versioned.get(1));
+		assertEquals(expected.size(), last.size());
+		assertEquals(last.size(), contents(last).size());
+	}
+
+	@Test
+	void viewsAreConsistentCutsOfConcurrentWrites() throws Exception {
+		int tasks = 256;
+		VersionedTaskStore store = new VersionedTaskStore();
+		for (int id = 1; id <= tasks; id++) {
+			store.put(new Task(id, "0", "Pending"));
+		}
+		AtomicBoolean running = new AtomicBoolean(true);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<?>> futures = new ArrayList<>();
+			// Each round updates every task in ID order, so any single moment shows
+			// tasks [1, k] at round r and tasks after k at round r - 1
+			futures.add(pool.submit(() -> {
+				for (int round = 1; round <= 2_000; round++) {
+					String description = Integer.toString(round);
+					for (int id = 1; id <= tasks; id++) {
+						store.computeIfPresent(id, task -> new Task(task.getId(), description, "Pending", task.getVersion() + 1));
+					}
+				}
+				return null;
+			}));
+			for (int t = 0; t < 3; t++) {
+				futures.add(pool.submit(() -> {
+					while (running.get()) {
+						int first = -1;
+						int previous = Integer.MAX_VALUE;
+						int count = 0;
+						for (Task task : store.view()) {
+							int round = Integer.parseInt(task.getDescription());
+							first = first < 0 ? round : first;
+							assertTrue(round <= previous && first - round <= 1, "inconsistent view");
+							previous = round;
+							count++;
+						}
+						assertEquals(tasks, count);
+					}
+					return null;
+				}));
+			}
+			futures.get(0).get();
+			running.set(false);
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static TreeMap<Integer, String> contents(TaskView view) {
+		TreeMap<Integer, String> contents = new TreeMap<>();
+		int previous = -1;
+		for (Task task : view) {
+			assertTrue(task.getId() > previous);
+			previous = task.getId();
+			contents.put(task.getId(), describe(task));
+			assertSame(task, view.get(task.getId()));
+		}
+		assertEquals(view.size(), contents.size());
+		return contents;
+	}
+
+	private static Task withStatus(Task task, String status) {
+		return new Task(task.getId(), task.getDescription(), status, task.getVersion() + 1);
+	}
+
+	private static String describe(Task task) {
+		return task == null ? "null" : task + " | Version: " + task.getVersion();
+	}
+}
@@ -0,0 +1,108 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+class WebThreadModeTests {
+
+	private static final int CONNECTIONS = 1_000;
+	private static final long WARMUP_NANOS = 3_000_000_000L;
+	private static final long MEASURE_NANOS = 10_000_000_000L;
+
+	@TempDir
+	Path directory;
+
+	/**
+	 * Creates tasks over many concurrent connections against a persistent store,
+	 * where every request waits for its group commit. Tomcat's platform pool
+	 * caps the requests waiting at once, and with it the size of each commit.
+	 */
+	@Tag("benchmark")
+	@ParameterizedTest
+	@ValueSource(booleans = {false, true})
+	void createThroughputUnderConcurrentConnections(boolean virtualThreads) throws Exception {
+		try (ConfigurableApplicationContext context = new SpringApplicationBuilder(DoItToItApplication.class)
+				.run("--server.port=0",
+					"--management.server.port=0",
+					"--todo.storage.directory=" + directory,
+					"--todo.storage.fsync=BATCHED",
+					"--spring.threads.virtual.enabled=" + virtualThreads)) {
+			int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+			URI uri = URI.create("http://localhost:" + port + "/api/todos");
+			AtomicBoolean virtualHandlers = new AtomicBoolean(true);
+			SingletonToDoManager.getInstance().addChangeListener(
+				event -> virtualHandlers.compareAndSet(true, Thread.currentThread().isVirtual()));
+
+			ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+			try (HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(clients).build()) {
+				long start = System.nanoTime();
+				long measureFrom = start + WARMUP_NANOS;
+				long end = measureFrom + MEASURE_NANOS;
+				List<Future<long[]>> futures = new ArrayList<>();
+				for (int c = 0; c < CONNECTIONS; c++) {
+					int connection = c;
+					futures.add(clients.submit(() -> {
+						long[] latencies = new long[1024];
+						int count = 0;
+						for (int i = 0; ; i++) {
+							HttpRequest request = HttpRequest.newBuilder(uri)
+								.header("Content-Type", "application/json")
+								.POST(HttpRequest.BodyPublishers.ofString(
+									"{\"description\": \"load " + connection + "-" + i + "\"}"))
+								.build();
+							long sent = System.nanoTime();
+							if (sent >= end) {
+								return Arrays.copyOf(latencies, count);
+							}
+							HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+							assertEquals(200, response.statusCode());
+							if (sent >= measureFrom) {
+								if (count == latencies.length) {
+									latencies = Arrays.copyOf(latencies, count * 2);
+								}
+								latencies[count++] = System.nanoTime() - sent;
+							}
+						}
+					}));
+				}
+
+				long[] all = new long[0];
+				for (Future<long[]> future : futures) {
+					long[] latencies = future.get();
+					int offset = all.length;
+					all = Arrays.copyOf(all, offset + latencies.length);
+					System.arraycopy(latencies, 0, all, offset, latencies.length);
+				}
+				Arrays.sort(all);
+				assertTrue(all.length > 0);
+				assertEquals(virtualThreads, virtualHandlers.get());
+				System.out.printf("%-8s threads, %,d connections: %,9.0f creates/s, p50 %,7.2f ms, p99 %,7.2f ms, max %,7.2f ms%n",
+						virtualThreads ? "virtual" : "platform", CONNECTIONS, all.length / (MEASURE_NANOS / 1e9),
+						all[all.length / 2] / 1e6, all[(int) (all.length * 0.99)] / 1e6, all[all.length - 1] / 1e6);
+			} finally {
+				clients.shutdownNow();
+			}
+		}
+	}
+}
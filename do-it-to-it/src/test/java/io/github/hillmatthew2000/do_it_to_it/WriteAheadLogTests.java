@@ -0,0 +1,143 @@
+package io.github.hillmatthew2000.do_it_to_it;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class WriteAheadLogTests {
+
+	@TempDir
+	Path directory;
+
+	@ParameterizedTest
+	@EnumSource(FsyncPolicy.class)
+	void reopenRestoresEveryMutation(FsyncPolicy policy) throws IOException {
+		int kept;
+		int completed;
+		int deleted;
+		try (ToDoManager manager = ToDoManager.open(directory, policy)) {
+			manager.addTask("cleared");
+			manager.clearAllTasks();
+			kept = manager.addTask("original");
+			completed = manager.addTask("finish me");
+			deleted = manager.addTask("delete me");
+			manager.updateTaskDescription(kept, "renamed");
+			manager.updateTaskStatus(kept, "In Progress");
+			manager.markTaskCompleted(completed);
+			manager.deleteTask(deleted);
+		}
+
+		try (ToDoManager manager = ToDoManager.open(directory, policy)) {
+			assertEquals(2, manager.getTaskCount());
+			assertEquals("renamed", manager.findTaskById(kept).getDescription());
+			assertEquals("In Progress", manager.findTaskById(kept).getStatus());
+			assertEquals("Completed", manager.findTaskById(completed).getStatus());
+			assertNull(manager.findTaskById(deleted));
+			assertEquals(1, manager.getCompletedTaskCount());
+			assertTrue(manager.getNextId() > deleted);
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {40, 1 << 20, 1 << 30, Integer.MAX_VALUE})
+	void tornRecordAtTheTailIsDiscarded(int length) throws IOException {
+		int id;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			id = manager.addTask("survives");
+		}
+		// Simulate a crash in the middle of writing the next record, whose length may be garbage
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+		}
+		byte[] tail = ByteBuffer.allocate(11).putInt(length).put(new byte[] {1, 2, 3, 4, 5, 6, 7}).array();
+		Files.write(segment, tail, StandardOpenOption.APPEND);
+
+		int added;
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			assertEquals(1, manager.getTaskCount());
+			assertEquals("survives", manager.findTaskById(id).getDescription());
+			added = manager.addTask("after repair");
+		}
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			assertEquals("after repair", manager.findTaskById(added).getDescription());
+		}
+	}
+
+	@Test
+	void intactRecordsOfAnotherLayoutAreRejected() throws IOException {
+		try (ToDoManager manager = ToDoManager.open(directory, FsyncPolicy.BATCHED)) {
+			manager.addTask("logged");
+		}
+		// A well-framed record that ends after the version, without the task times
+		byte[] status = "Pending".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer payload = ByteBuffer.allocate(1 + 8 + 4 + 4 + 4 + status.length + 8)
+			.put(WriteAheadLog.ADD).putLong(2).putInt(2).putInt(-1).putInt(status.length).put(status).putLong(1);
+		CRC32C crc = new CRC32C();
+		crc.update(payload.array());
+		byte[] record = ByteBuffer.allocate(8 + payload.capacity())
+			.putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array()).array();
+		Path segment;
+		try (Stream<Path> files = Files.list(directory)) {
+			segment = files.filter(file -> file.getFileName().toString().endsWith(".log")).findFirst().orElseThrow();
+		}
+		Files.write(segment, record, StandardOpenOption.APPEND);
+
+		assertThrows(IOException.class, () -> ToDoManager.open(directory, FsyncPolicy.BATCHED).close());
+	}
+
+	@Tag("benchmark")
+	@ParameterizedTest
+	@EnumSource(FsyncPolicy.class)
+	void concurrentWriteThroughput(FsyncPolicy policy) throws Exception {
+		int threads = 32;
+		int writesPerThread = policy == FsyncPolicy.EVERY_WRITE ? 200 : 2_000;
+		try (ToDoManager manager = ToDoManager.open(directory, policy)) {
+			ExecutorService pool = Executors.newFixedThreadPool(threads);
+			long start = System.nanoTime();
+			try {
+				List<Future<?>> futures = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					futures.add(pool.submit(() -> {
+						for (int i = 0; i < writesPerThread; i++) {
+							int id = manager.addTask("benchmark task " + i);
+							manager.updateTaskStatus(id, "In Progress");
+						}
+						return null;
+					}));
+				}
+				for (Future<?> future : futures) {
+					future.get();
+				}
+			} finally {
+				pool.shutdownNow();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			long writes = 2L * threads * writesPerThread;
+			System.out.printf("WAL %-11s %,10.0f writes/s (%d writes, %d threads)%n",
+				policy, writes / seconds, writes, threads);
+		}
+	}
+}